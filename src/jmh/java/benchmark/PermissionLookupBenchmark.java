@@ -0,0 +1,134 @@
+package benchmark;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.manager.GroupManager;
+import io.github.rysefoxx.manager.GroupMemberManager;
+import io.github.rysefoxx.model.GroupMemberModel;
+import io.github.rysefoxx.model.GroupModel;
+import io.github.rysefoxx.model.GroupPermissionModel;
+import io.github.rysefoxx.permission.LegendPermissibleBase;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the lookups which run on every permission query of other plugins. <br>
+ * The groups are saved like in the unit tests, the members and permissions are only added to the cache, so the database does not have to hold millions of rows.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PermissionLookupBenchmark {
+
+    private static final int PROBES = 1024;
+
+    @Param({"1", "10"})
+    private int groupCount;
+
+    @Param({"1000", "100000", "1000000"})
+    private int membersPerGroup;
+
+    @Param({"10", "100", "1000"})
+    private int permissionsPerGroup;
+
+    private GroupManager groupManager;
+    private GroupMemberManager groupMemberManager;
+    private LegendPermissibleBase permissibleBase;
+    private final List<GroupModel> groups = new ArrayList<>();
+
+    private final String[] permissionProbes = new String[PROBES];
+    private final UUID[] memberProbes = new UUID[PROBES];
+    private final String[] groupProbes = new String[PROBES];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ServerMock server = MockBukkit.mock();
+        PlayLegendPermission plugin = MockBukkit.load(PlayLegendPermission.class);
+        this.groupManager = plugin.getGroupManager();
+        this.groupMemberManager = plugin.getGroupMemberManager();
+
+        String run = UUID.randomUUID().toString().substring(0, 5);
+        for (int groupIndex = 0; groupIndex < this.groupCount; groupIndex++) {
+            GroupModel groupModel = new GroupModel("bench" + run + groupIndex, "Bench" + groupIndex, groupIndex);
+
+            for (int permissionIndex = 0; permissionIndex < this.permissionsPerGroup; permissionIndex++) {
+                groupModel.addPermission(new GroupPermissionModel("bench.node" + permissionIndex + ".use", groupModel));
+            }
+
+            for (int memberIndex = 0; memberIndex < this.membersPerGroup; memberIndex++) {
+                groupModel.getMembers().add(new GroupMemberModel(new UUID(groupIndex, memberIndex), null, groupModel));
+            }
+
+            // Saving resolves the permissions of the group.
+            this.groupManager.save(groupModel);
+            this.groups.add(groupModel);
+        }
+
+        PlayerMock player = server.addPlayer();
+        GroupModel playerGroup = this.groups.get(0);
+        playerGroup.getMembers().add(new GroupMemberModel(player.getUniqueId(), null, playerGroup));
+        this.groupMemberManager.rebuildIndex();
+        plugin.getGroupPermissionManager().loadEffectivePermissions(player.getUniqueId(), List.of(playerGroup));
+        this.permissibleBase = new LegendPermissibleBase(player, plugin.getGroupPermissionManager());
+
+        Random random = new Random(42);
+        for (int i = 0; i < PROBES; i++) {
+            // Every second permission does not exist, so hits and misses are measured.
+            int node = random.nextInt(this.permissionsPerGroup * 2);
+            this.permissionProbes[i] = "bench.node" + node + ".use";
+
+            this.memberProbes[i] = new UUID(random.nextInt(this.groupCount), random.nextInt(this.membersPerGroup));
+
+            String name = this.groups.get(random.nextInt(this.groupCount)).getName();
+            this.groupProbes[i] = random.nextBoolean() ? name.toUpperCase(Locale.ROOT) : name;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.groups.forEach(this.groupManager::delete);
+        this.groups.clear();
+        MockBukkit.unmock();
+    }
+
+    @Benchmark
+    public boolean hasPermission(Cursor cursor) {
+        return this.permissibleBase.hasPermission(this.permissionProbes[cursor.next()]);
+    }
+
+    @Benchmark
+    public GroupMemberModel getGroup(Cursor cursor) {
+        return this.groupMemberManager.getGroup(this.memberProbes[cursor.next()]);
+    }
+
+    @Benchmark
+    public Optional<GroupModel> findByName(Cursor cursor) {
+        return this.groupManager.findByName(this.groupProbes[cursor.next()]);
+    }
+
+    /**
+     * Walks through the probes, so every invocation looks up a different value without paying for a random number.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        public int next() {
+            this.index = (this.index + 1) & (PROBES - 1);
+            return this.index;
+        }
+    }
+}
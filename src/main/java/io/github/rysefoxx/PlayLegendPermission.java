@@ -1,15 +1,17 @@
 package io.github.rysefoxx;
 
 import io.github.rysefoxx.command.CommandGroup;
-import io.github.rysefoxx.database.AsyncDatabaseManager;
-import io.github.rysefoxx.database.ConnectionManager;
-import io.github.rysefoxx.database.DatabaseTableManager;
+import io.github.rysefoxx.database.*;
 import io.github.rysefoxx.listener.ConnectionListener;
+import io.github.rysefoxx.listener.InvalidationListener;
 import io.github.rysefoxx.listener.SignListener;
 import io.github.rysefoxx.manager.*;
+import io.github.rysefoxx.metrics.MetricsExporter;
+import io.github.rysefoxx.metrics.MetricsRegistry;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -18,6 +20,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.util.Objects;
+import java.util.logging.Level;
 
 /**
  * @author Rysefoxx
@@ -33,24 +36,46 @@ public class PlayLegendPermission extends JavaPlugin {
     private ConnectionManager connectionManager;
     private AsyncDatabaseManager asyncDatabaseManager;
     private DatabaseTableManager databaseTableManager;
+    private WriteBehindQueue writeBehindQueue;
+    private InvalidationBus invalidationBus;
 
     private GroupManager groupManager;
     private LanguageManager languageManager;
     private GroupMemberManager groupMemberManager;
     private GroupPermissionManager groupPermissionManager;
     private ScoreboardManager scoreboardManager;
+    private ProfileManager profileManager;
+
+    private MetricsRegistry metricsRegistry;
+    private MetricsExporter metricsExporter;
 
     @Override
     public void onEnable() {
-        initializeManagers();
+        try {
+            initializeManagers();
+        } catch (IllegalStateException e) {
+            getLogger().log(Level.SEVERE, "Failed to load the data, disabling the plugin!", e);
+            // Without the groups, every player would be put into a new default group, so we do not keep running.
+            Bukkit.getPluginManager().disablePlugin(this);
+            return;
+        }
+        initializeMetrics();
         initializeCommands();
         initializeListeners();
     }
 
+    /**
+     * Stops everything that has been started. If the plugin is disabled because it failed to enable, some managers do not exist.
+     */
     @Override
     public void onDisable() {
-        this.connectionManager.closeConnection();
-        this.asyncDatabaseManager.shutdownExecutorService();
+        if (this.metricsExporter != null) this.metricsExporter.shutdown();
+        if (this.groupMemberManager != null) this.groupMemberManager.stopExpiryScheduler();
+        if (this.profileManager != null) this.profileManager.shutdown();
+        if (this.invalidationBus != null) this.invalidationBus.shutdown();
+        if (this.writeBehindQueue != null) this.writeBehindQueue.shutdown();
+        if (this.connectionManager != null) this.connectionManager.closeConnection();
+        if (this.asyncDatabaseManager != null) this.asyncDatabaseManager.shutdownExecutorService();
     }
 
     /**
@@ -71,14 +96,53 @@ public class PlayLegendPermission extends JavaPlugin {
      * Initializes all managers.
      */
     private void initializeManagers() {
+        saveDefaultConfig();
         this.connectionManager = new ConnectionManager(this);
-        this.asyncDatabaseManager = new AsyncDatabaseManager();
+        this.asyncDatabaseManager = new AsyncDatabaseManager(this);
         this.databaseTableManager = new DatabaseTableManager(this);
+        this.writeBehindQueue = new WriteBehindQueue(this);
+        this.invalidationBus = createInvalidationBus();
         this.languageManager = new LanguageManager(this);
         this.groupPermissionManager = new GroupPermissionManager(this);
         this.groupManager = new GroupManager(this);
         this.groupMemberManager = new GroupMemberManager(this);
         this.scoreboardManager = new ScoreboardManager(this);
+        this.profileManager = new ProfileManager(this);
+
+        this.invalidationBus.subscribe(new InvalidationListener(this));
+        this.invalidationBus.start();
+    }
+
+    /**
+     * Registers the runtime numbers of all managers and starts the exporter which is configured in the config.yml.
+     */
+    private void initializeMetrics() {
+        this.metricsRegistry = new MetricsRegistry(getLogger());
+        this.metricsRegistry.register(this.connectionManager);
+        this.metricsRegistry.register(this.connectionManager.getQueryProfiler());
+        this.metricsRegistry.register(this.asyncDatabaseManager);
+        this.metricsRegistry.register(this.writeBehindQueue);
+        this.metricsRegistry.register(this.groupManager);
+        this.metricsRegistry.register(this.groupMemberManager);
+        this.metricsRegistry.register(this.groupPermissionManager);
+        this.metricsRegistry.register(this.scoreboardManager);
+        this.metricsRegistry.register(this.profileManager);
+
+        ConfigurationSection config = getConfig().getConfigurationSection("metrics.exporter");
+        if (config == null) config = getConfig().createSection("metrics.exporter");
+        this.metricsExporter = new MetricsExporter(this.metricsRegistry, config, getDataFolder(), getLogger());
+    }
+
+    /**
+     * Creates the {@link InvalidationBus} which is configured in the database.yml.
+     *
+     * @return The invalidation bus.
+     */
+    private @NotNull InvalidationBus createInvalidationBus() {
+        String type = this.connectionManager.getConfig().getString("invalidation.type", "database");
+        if (type.equalsIgnoreCase("memory")) return new InMemoryInvalidationBus(this);
+
+        return new DatabaseInvalidationBus(this);
     }
 
     /**
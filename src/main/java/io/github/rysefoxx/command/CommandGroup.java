@@ -33,11 +33,15 @@ public class CommandGroup implements CommandExecutor, TabCompleter {
         this.groupManager = plugin.getGroupManager();
         this.operations.put("create", new GroupCreateCommand(groupManager, languageManager));
         this.operations.put("delete", new GroupDeleteCommand(groupManager, groupMemberManager, languageManager, scoreboardManager));
-        this.operations.put("user", new GroupUserCommand(groupMemberManager, groupManager, languageManager, scoreboardManager));
+        this.operations.put("user", new GroupUserCommand(plugin, groupMemberManager, groupManager, languageManager, scoreboardManager,
+                new GroupUserBulkCommand(plugin, groupMemberManager, groupManager, languageManager, scoreboardManager)));
         this.operations.put("info", new GroupInformationCommand(groupMemberManager, languageManager));
         this.operations.put("prefix", new GroupPrefixCommand(groupManager, languageManager, scoreboardManager));
         this.operations.put("permission", new GroupPermissionCommand(groupManager, groupPermissionManager, languageManager));
         this.operations.put("weight", new GroupWeightCommand(groupManager, languageManager));
+        this.operations.put("parent", new GroupParentCommand(groupManager, languageManager));
+        this.operations.put("reload", new GroupReloadCommand(plugin, groupManager, languageManager));
+        this.operations.put("debug", new GroupDebugCommand(groupPermissionManager, plugin.getConnectionManager().getQueryProfiler(), languageManager));
     }
 
     @Override
@@ -54,9 +58,16 @@ public class CommandGroup implements CommandExecutor, TabCompleter {
                     "/Group weight <Name> <Weight>",
                     "/Group user add <Name> <User> (<Dauer> Format: 1d2h3m4s)",
                     "/Group user remove <Name> <User>",
+                    "/Group user bulkadd <Name> <Datei|Selektor> (<Dauer> Format: 1d2h3m4s)",
+                    "/Group user bulkremove <Name> <Datei|Selektor>",
                     "/Group permission add <Name> <Permission>",
                     "/Group permission remove <Name> <Permission>",
-                    "/Group info");
+                    "/Group parent add <Name> <Parent>",
+                    "/Group parent remove <Name> <Parent>",
+                    "/Group info",
+                    "/Group reload",
+                    "/Group debug perms (on|off|reset|top <Anzahl>)",
+                    "/Group debug queries");
         }
         return false;
     }
@@ -64,7 +75,7 @@ public class CommandGroup implements CommandExecutor, TabCompleter {
     @Override
     public @Nullable List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
         if (args.length == 1) {
-            return List.of("create", "delete", "user", "info", "prefix", "weight", "permission");
+            return List.of("create", "delete", "user", "info", "prefix", "weight", "permission", "parent", "reload", "debug");
         }
 
         List<GroupModel> groupCache = this.groupManager.getGroupCache();
@@ -80,9 +91,17 @@ public class CommandGroup implements CommandExecutor, TabCompleter {
                     return groupNames;
             }
 
-            if (args[0].equalsIgnoreCase("user") || args[0].equalsIgnoreCase("permission")) {
+            if (args[0].equalsIgnoreCase("user")) {
+                return List.of("add", "remove", "bulkadd", "bulkremove");
+            }
+
+            if (args[0].equalsIgnoreCase("permission") || args[0].equalsIgnoreCase("parent")) {
                 return List.of("add", "remove");
             }
+
+            if (args[0].equalsIgnoreCase("debug")) {
+                return List.of("perms", "queries");
+            }
         }
 
         if (args.length == 3) {
@@ -93,14 +112,25 @@ public class CommandGroup implements CommandExecutor, TabCompleter {
                     return List.of("<Weight>");
                 case "user":
                 case "permission":
+                case "parent":
                     return groupNames;
+                case "debug":
+                    if (args[1].equalsIgnoreCase("perms")) {
+                        return List.of("on", "off", "reset", "top");
+                    }
+                    return List.of();
             }
         }
 
         if (args.length == 4) {
             switch (args[0].toLowerCase()) {
                 case "user":
+                    if (args[1].toLowerCase().startsWith("bulk")) {
+                        return List.of("<Datei>", "@a");
+                    }
                     return null;
+                case "parent":
+                    return groupNames;
                 case "permission":
                     if (args[1].equalsIgnoreCase("add")) {
                         return List.of("<Permission>");
@@ -115,7 +145,11 @@ public class CommandGroup implements CommandExecutor, TabCompleter {
             }
         }
 
-        if (args.length == 5 && args[0].equalsIgnoreCase("user") && args[1].equalsIgnoreCase("add")) {
+        if (args.length == 4 && args[0].equalsIgnoreCase("debug") && args[1].equalsIgnoreCase("perms") && args[2].equalsIgnoreCase("top")) {
+            return List.of("<Anzahl>");
+        }
+
+        if (args.length == 5 && args[0].equalsIgnoreCase("user") && (args[1].equalsIgnoreCase("add") || args[1].equalsIgnoreCase("bulkadd"))) {
             return List.of("<Dauer>");
         }
 
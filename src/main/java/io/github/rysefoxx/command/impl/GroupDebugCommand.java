@@ -0,0 +1,205 @@
+package io.github.rysefoxx.command.impl;
+
+import io.github.rysefoxx.command.GroupOperation;
+import io.github.rysefoxx.database.QueryProfiler;
+import io.github.rysefoxx.manager.GroupPermissionManager;
+import io.github.rysefoxx.manager.LanguageManager;
+import io.github.rysefoxx.metrics.LatencyHistogram;
+import io.github.rysefoxx.metrics.PermissionMetrics;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Shows runtime numbers to diagnose lag. <br>
+ * {@code /group debug perms} shows which permission nodes are checked the most and which plugins check them. {@code /group debug perms on|off} toggles the {@link PermissionMetrics},
+ * {@code /group debug perms reset} removes the counted checks and {@code /group debug perms [top] [N]} shows the N hottest nodes and callers. <br>
+ * {@code /group debug queries} shows the latest slow statements of the {@link QueryProfiler}.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+@RequiredArgsConstructor
+public class GroupDebugCommand implements GroupOperation {
+
+    private static final int DEFAULT_TOP = 10;
+    private static final int MAX_TOP = 100;
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final GroupPermissionManager groupPermissionManager;
+    private final QueryProfiler queryProfiler;
+    private final LanguageManager languageManager;
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        if (!(sender instanceof Player player)) return false;
+
+        return switch (args[1].toLowerCase(Locale.ROOT)) {
+            case "perms" -> perms(player, args);
+            case "queries" -> queries(player);
+            default -> false;
+        };
+    }
+
+    /**
+     * Toggles, resets or shows the {@link PermissionMetrics}.
+     *
+     * @param player The player who executed the command.
+     * @param args   The arguments of the command.
+     * @return true, as the command is always handled.
+     */
+    private boolean perms(@NotNull Player player, @NotNull String[] args) {
+        PermissionMetrics permissionMetrics = this.groupPermissionManager.getPermissionMetrics();
+        String action = args.length > 2 ? args[2].toLowerCase(Locale.ROOT) : "top";
+
+        switch (action) {
+            case "on" -> {
+                permissionMetrics.setEnabled(true);
+                this.languageManager.sendTranslatedMessage(player, "group_debug_perms_enabled");
+            }
+            case "off" -> {
+                permissionMetrics.setEnabled(false);
+                this.languageManager.sendTranslatedMessage(player, "group_debug_perms_disabled");
+            }
+            case "reset" -> {
+                permissionMetrics.reset();
+                this.languageManager.sendTranslatedMessage(player, "group_debug_perms_reset");
+            }
+            default -> {
+                // Both "/group debug perms top 5" and "/group debug perms 5" are accepted.
+                String limit = action.equals("top") ? (args.length > 3 ? args[3] : null) : action;
+                Integer top = parseTop(limit);
+                if (top == null) {
+                    this.languageManager.sendTranslatedMessage(player, "group_debug_perms_invalid_top");
+                    return true;
+                }
+
+                sendReport(player, permissionMetrics, top);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sends the time threads wait for a connection and the latest slow statements, the newest first.
+     *
+     * @param player The player who executed the command.
+     * @return true, as the command is always handled.
+     */
+    private boolean queries(@NotNull Player player) {
+        if (!this.queryProfiler.isEnabled()) {
+            this.languageManager.sendTranslatedMessage(player, "group_debug_queries_disabled");
+            return true;
+        }
+
+        LatencyHistogram acquireLatency = this.queryProfiler.getAcquireLatency();
+        player.sendMessage(this.languageManager.getTranslatedMessage(player, "group_debug_queries_acquire",
+                String.format(Locale.ROOT, "%.2f", acquireLatency.getCount() == 0 ? 0D : acquireLatency.getSumMillis() / acquireLatency.getCount()),
+                String.format(Locale.ROOT, "%.0f", acquireLatency.getPercentileMillis(0.99)),
+                String.valueOf(acquireLatency.getCount())));
+
+        List<QueryProfiler.SlowQuery> slowQueries = this.queryProfiler.getSlowQueries();
+        String threshold = String.valueOf(this.queryProfiler.getSlowThresholdMillis());
+        if (slowQueries.isEmpty()) {
+            player.sendMessage(this.languageManager.getTranslatedMessage(player, "group_debug_queries_empty", threshold));
+            return true;
+        }
+
+        player.sendMessage(this.languageManager.getTranslatedMessage(player, "group_debug_queries_header", String.valueOf(slowQueries.size()), threshold));
+        for (QueryProfiler.SlowQuery slowQuery : slowQueries) {
+            player.sendMessage(this.languageManager.getTranslatedMessage(player, "group_debug_queries_entry",
+                    TIME_FORMATTER.format(slowQuery.time()),
+                    String.valueOf(slowQuery.millis()),
+                    slowQuery.rows() < 0 ? "?" : String.valueOf(slowQuery.rows()),
+                    slowQuery.thread(),
+                    slowQuery.template()));
+        }
+        return true;
+    }
+
+    /**
+     * Sends the counted checks, the hottest nodes and the hottest callers.
+     *
+     * @param player            The player to send the report to.
+     * @param permissionMetrics The metrics to report.
+     * @param top               The amount of nodes and callers to show.
+     */
+    private void sendReport(@NotNull Player player, @NotNull PermissionMetrics permissionMetrics, int top) {
+        if (!permissionMetrics.isEnabled()) this.languageManager.sendTranslatedMessage(player, "group_debug_perms_off_hint");
+
+        long checks = permissionMetrics.getChecks();
+        long lookups = permissionMetrics.getHits() + permissionMetrics.getMisses();
+        LatencyHistogram latency = permissionMetrics.getLatency();
+        player.sendMessage(this.languageManager.getTranslatedMessage(player, "group_debug_perms_summary",
+                String.valueOf(checks),
+                String.valueOf(permissionMetrics.getHits()),
+                String.valueOf(permissionMetrics.getMisses()),
+                percent(permissionMetrics.getHits(), lookups),
+                String.valueOf(permissionMetrics.getOpChecks())));
+        player.sendMessage(this.languageManager.getTranslatedMessage(player, "group_debug_perms_latency",
+                micros(latency.getCount() == 0 ? 0 : latency.getSumMillis() / latency.getCount()),
+                micros(latency.getPercentileMillis(0.99)),
+                String.valueOf(latency.getCount()),
+                String.valueOf(permissionMetrics.getSampleRate())));
+
+        this.languageManager.sendTranslatedMessage(player, "group_debug_perms_nodes");
+        sendEntries(player, permissionMetrics.getTopNodes(top), checks);
+        if (permissionMetrics.getUntrackedChecks() > 0) {
+            player.sendMessage(this.languageManager.getTranslatedMessage(player, "group_debug_perms_untracked",
+                    String.valueOf(permissionMetrics.getUntrackedChecks())));
+        }
+
+        List<Map.Entry<String, Long>> callers = permissionMetrics.getTopCallers(top);
+        this.languageManager.sendTranslatedMessage(player, "group_debug_perms_callers");
+        sendEntries(player, callers, callers.stream().mapToLong(Map.Entry::getValue).sum());
+    }
+
+    /**
+     * Sends one line per entry with its rank, count and share.
+     *
+     * @param player  The player to send the lines to.
+     * @param entries The entries in descending order.
+     * @param total   The total the shares are calculated from.
+     */
+    private void sendEntries(@NotNull Player player, @NotNull List<Map.Entry<String, Long>> entries, long total) {
+        for (int i = 0; i < entries.size(); i++) {
+            Map.Entry<String, Long> entry = entries.get(i);
+            player.sendMessage(this.languageManager.getTranslatedMessage(player, "group_debug_perms_entry",
+                    String.valueOf(i + 1),
+                    entry.getKey(),
+                    String.valueOf(entry.getValue()),
+                    percent(entry.getValue(), total)));
+        }
+    }
+
+    /**
+     * @param value The value to parse or null for the default.
+     * @return The amount of entries to show, capped at {@value #MAX_TOP}, or null if the value is not a positive number.
+     */
+    private @Nullable Integer parseTop(@Nullable String value) {
+        if (value == null) return DEFAULT_TOP;
+        try {
+            int top = Integer.parseInt(value);
+            return top < 1 ? null : Math.min(top, MAX_TOP);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private @NotNull String percent(long part, long total) {
+        return String.format(Locale.ROOT, "%.1f", total == 0 ? 0D : part * 100D / total);
+    }
+
+    private @NotNull String micros(double millis) {
+        if (Double.isInfinite(millis)) return ">1000";
+        return String.format(Locale.ROOT, "%.2f", millis * 1000D);
+    }
+}
@@ -47,14 +47,13 @@ public class GroupDeleteCommand implements GroupOperation {
         }
 
 
-        List<GroupMemberModel> members = groupModel.getMembers();
-        //No for each loop because of concurrent modification
-        for (int i = 0; i < members.size(); i++) {
-            GroupMemberModel member = members.get(i);
+        //Copy because removing the member modifies the list
+        for (GroupMemberModel member : List.copyOf(groupModel.getMembers())) {
+            this.groupMemberManager.removeMember(member.getUuid(), groupModel.getName());
             this.groupMemberManager.addToDefaultGroup(member.getUuid());
             Player target = Bukkit.getPlayer(member.getUuid());
             if (target != null) {
-                this.scoreboardManager.update(target);
+                this.scoreboardManager.markDirty(target);
                 this.languageManager.sendTranslatedMessage(target, "group_user_reset");
             }
         }
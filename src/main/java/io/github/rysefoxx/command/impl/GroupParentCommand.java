@@ -0,0 +1,100 @@
+package io.github.rysefoxx.command.impl;
+
+import io.github.rysefoxx.command.GroupOperation;
+import io.github.rysefoxx.manager.GroupManager;
+import io.github.rysefoxx.manager.LanguageManager;
+import io.github.rysefoxx.model.GroupModel;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Optional;
+
+/**
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+@RequiredArgsConstructor
+public class GroupParentCommand implements GroupOperation {
+
+    private final GroupManager groupManager;
+    private final LanguageManager languageManager;
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        if (!(sender instanceof Player player)) return false;
+
+        Optional<GroupModel> optional = this.groupManager.findByName(args[2]);
+        Optional<GroupModel> parentOptional = this.groupManager.findByName(args[3]);
+
+        if (optional.isEmpty() || parentOptional.isEmpty()) {
+            this.languageManager.sendTranslatedMessage(player, "group_not_found");
+            return false;
+        }
+
+        GroupModel groupModel = optional.get();
+        GroupModel parent = parentOptional.get();
+
+        switch (args[1].toLowerCase()) {
+            case "add":
+                addParent(player, groupModel, parent);
+                break;
+            case "remove":
+                removeParent(player, groupModel, parent);
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * This method adds a parent to a group. If the group already inherits from the parent or the parent inherits from the group, the player will be informed.
+     *
+     * @param player     The player who executed the command.
+     * @param groupModel The group which should inherit the permissions.
+     * @param parent     The group whose permissions should be inherited.
+     */
+    private void addParent(@NotNull Player player, @NotNull GroupModel groupModel, @NotNull GroupModel parent) {
+        if (isParent(groupModel, parent)) {
+            this.languageManager.sendTranslatedMessage(player, "group_parent_already_exists");
+            return;
+        }
+
+        if (groupModel == parent || this.groupManager.inheritsFrom(parent, groupModel)) {
+            this.languageManager.sendTranslatedMessage(player, "group_parent_cycle");
+            return;
+        }
+
+        this.groupManager.addParent(groupModel, parent);
+        this.languageManager.sendTranslatedMessage(player, "group_parent_added");
+    }
+
+    /**
+     * This method removes a parent from a group. If the group does not inherit from the parent, the player will be informed.
+     *
+     * @param player     The player who executed the command.
+     * @param groupModel The group which should no longer inherit the permissions.
+     * @param parent     The group whose permissions should no longer be inherited.
+     */
+    private void removeParent(@NotNull Player player, @NotNull GroupModel groupModel, @NotNull GroupModel parent) {
+        if (!isParent(groupModel, parent)) {
+            this.languageManager.sendTranslatedMessage(player, "group_parent_not_exists");
+            return;
+        }
+
+        this.groupManager.removeParent(groupModel, parent);
+        this.languageManager.sendTranslatedMessage(player, "group_parent_removed");
+    }
+
+    /**
+     * Checks if a group is a direct parent of another group.
+     *
+     * @param groupModel The group.
+     * @param parent     The possible parent.
+     * @return true if the group directly inherits from the parent, otherwise false.
+     */
+    private boolean isParent(@NotNull GroupModel groupModel, @NotNull GroupModel parent) {
+        return groupModel.getParents().stream().anyMatch(parentName -> parentName.equalsIgnoreCase(parent.getName()));
+    }
+}
@@ -37,12 +37,7 @@ public class GroupPrefixCommand implements GroupOperation {
         groupModel.setPrefix(args[2]);
         this.groupManager.save(groupModel);
 
-        groupModel.getMembers().forEach(member -> {
-            Player target = player.getServer().getPlayer(member.getUuid());
-            if (target != null) {
-                this.scoreboardManager.update(target);
-            }
-        });
+        this.scoreboardManager.markDirty(groupModel);
 
         this.languageManager.sendTranslatedMessage(player, "group_prefix_set");
 
@@ -0,0 +1,47 @@
+package io.github.rysefoxx.command.impl;
+
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.command.GroupOperation;
+import io.github.rysefoxx.manager.GroupManager;
+import io.github.rysefoxx.manager.LanguageManager;
+import io.github.rysefoxx.util.Util;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the changes of other servers immediately. Only the rows which changed since the last seen revision are read.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+@RequiredArgsConstructor
+public class GroupReloadCommand implements GroupOperation {
+
+    private final PlayLegendPermission plugin;
+    private final GroupManager groupManager;
+    private final LanguageManager languageManager;
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        if (!(sender instanceof Player player)) return false;
+
+        long startedAt = System.nanoTime();
+        this.groupManager.synchronize().whenComplete((changes, throwable) -> Util.runSync(this.plugin, () -> {
+            if (throwable != null) {
+                this.languageManager.sendTranslatedMessage(player, "group_reload_failed");
+                return;
+            }
+
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            player.sendMessage(this.languageManager.getTranslatedMessage(player, "group_reloaded",
+                    String.valueOf(changes),
+                    String.valueOf(duration)));
+        }));
+        return true;
+    }
+}
@@ -0,0 +1,263 @@
+package io.github.rysefoxx.command.impl;
+
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.command.GroupOperation;
+import io.github.rysefoxx.manager.GroupManager;
+import io.github.rysefoxx.manager.GroupMemberManager;
+import io.github.rysefoxx.manager.LanguageManager;
+import io.github.rysefoxx.manager.ScoreboardManager;
+import io.github.rysefoxx.util.TimeUtil;
+import io.github.rysefoxx.util.Util;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * Adds or removes many users at once, e.g. for a seasonal reset. <br>
+ * The users are read from a file in the plugin folder, with one name or uuid per line, or selected with an entity selector like {@code @a}.
+ * Names are resolved in parallel, in batches which fit into the queue of the async executor. The memberships are then changed in one pass on the main thread
+ * and written in one transaction. The progress and throughput are reported while the command runs.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+@RequiredArgsConstructor
+public class GroupUserBulkCommand implements GroupOperation {
+
+    /**
+     * The amount of users which are resolved at the same time.
+     */
+    private static final int RESOLVE_BATCH_SIZE = 100;
+    private static final long PROGRESS_INTERVAL_TICKS = 40L;
+
+    private final PlayLegendPermission plugin;
+    private final GroupMemberManager groupMemberManager;
+    private final GroupManager groupManager;
+    private final LanguageManager languageManager;
+    private final ScoreboardManager scoreboardManager;
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        if (!(sender instanceof Player player)) return false;
+
+        boolean add = args[1].equalsIgnoreCase("bulkadd");
+        String groupName = args[2];
+        String source = args[3];
+
+        if (this.groupManager.findByName(groupName).isEmpty()) {
+            this.languageManager.sendTranslatedMessage(player, "group_not_found");
+            return true;
+        }
+
+        if (!add && groupName.equalsIgnoreCase("default")) {
+            this.languageManager.sendTranslatedMessage(player, "group_user_remove_default");
+            return true;
+        }
+
+        LocalDateTime expiration = add && args.length == 5 ? TimeUtil.parseDuration(args[4]) : null;
+        long startedAt = System.nanoTime();
+
+        readTargets(player, source).whenComplete((targets, throwable) -> {
+            if (throwable != null) {
+                this.plugin.getLogger().log(Level.WARNING, "Failed to read the users of " + source + "!", throwable);
+                Util.runSync(this.plugin, () -> this.languageManager.sendTranslatedMessage(player, "group_user_bulk_invalid_source"));
+                return;
+            }
+
+            resolve(player, targets, startedAt).whenComplete((resolved, failure) -> Util.runSync(this.plugin, () -> {
+                if (failure != null) {
+                    this.plugin.getLogger().log(Level.WARNING, "Failed to resolve the users of " + source + "!", failure);
+                    this.languageManager.sendTranslatedMessage(player, "group_user_bulk_failed");
+                    return;
+                }
+
+                apply(player, resolved, groupName, add, expiration, startedAt);
+            }));
+        });
+        return true;
+    }
+
+    /**
+     * Reads the names and uuids of the users. Selectors are evaluated on the main thread, files are read async.
+     *
+     * @param player The player who executed the command.
+     * @param source The path of a file in the plugin folder or an entity selector.
+     * @return A future which is completed with one name or uuid per user.
+     */
+    private @NotNull CompletableFuture<List<String>> readTargets(@NotNull Player player, @NotNull String source) {
+        if (source.startsWith("@")) {
+            try {
+                List<String> targets = new ArrayList<>();
+                for (Entity entity : Bukkit.selectEntities(player, source)) {
+                    if (entity instanceof Player target) targets.add(target.getUniqueId().toString());
+                }
+                return CompletableFuture.completedFuture(targets);
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        return this.plugin.getAsyncDatabaseManager().supplyAsync(() -> {
+            try {
+                File dataFolder = this.plugin.getDataFolder().getCanonicalFile();
+                File file = new File(dataFolder, source).getCanonicalFile();
+                // The file must not be outside the plugin folder.
+                if (!file.toPath().startsWith(dataFolder.toPath())) throw new IOException(source + " is outside the plugin folder!");
+
+                return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).stream()
+                        .map(String::trim)
+                        .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                        .toList();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Resolves the uuids of the users in parallel. With lazy members, the memberships of the users are loaded as well.
+     * The batches are chained without blocking a thread, so a small executor cannot deadlock.
+     *
+     * @param player    The player who executed the command. The progress is reported to this player.
+     * @param targets   The names and uuids of the users.
+     * @param startedAt The start of the command in nanoseconds.
+     * @return A future which is completed with the uuid of every target, which is null if the user does not exist.
+     */
+    private @NotNull CompletableFuture<Map<String, UUID>> resolve(@NotNull Player player, @NotNull List<String> targets, long startedAt) {
+        Map<String, UUID> resolved = Collections.synchronizedMap(new LinkedHashMap<>());
+        AtomicInteger done = new AtomicInteger();
+        BukkitTask progressTask = Bukkit.getScheduler().runTaskTimer(this.plugin, () -> player.sendMessage(this.languageManager.getTranslatedMessage(player, "group_user_bulk_progress",
+                String.valueOf(done.get()),
+                String.valueOf(targets.size()),
+                String.valueOf(perSecond(done.get(), startedAt)))), PROGRESS_INTERVAL_TICKS, PROGRESS_INTERVAL_TICKS);
+
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (int start = 0; start < targets.size(); start += RESOLVE_BATCH_SIZE) {
+            List<String> batch = targets.subList(start, Math.min(start + RESOLVE_BATCH_SIZE, targets.size()));
+            Map<String, UUID> batchResolved = new ConcurrentHashMap<>();
+            chain = chain.thenCompose(ignored -> CompletableFuture.allOf(batch.stream()
+                            .map(target -> resolve(target).thenAccept(uuid -> {
+                                if (uuid != null) batchResolved.put(target, uuid);
+                            }))
+                            .toArray(CompletableFuture[]::new)))
+                    .thenCompose(ignored -> ensureLoaded(batchResolved.values()))
+                    .thenAccept(loaded -> batch.forEach(target -> {
+                        resolved.put(target, loaded ? batchResolved.get(target) : null);
+                        done.incrementAndGet();
+                    }));
+        }
+
+        return chain.handle((ignored, throwable) -> {
+            progressTask.cancel();
+            if (throwable != null) throw new IllegalStateException(throwable);
+            return resolved;
+        });
+    }
+
+    /**
+     * Resolves the uuid of a user.
+     *
+     * @param target The name or uuid of the user.
+     * @return A future which is completed with the uuid or null if the user does not exist.
+     */
+    private @NotNull CompletableFuture<UUID> resolve(@NotNull String target) {
+        return parseUUID(target)
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> this.plugin.getProfileManager().resolveUUID(target));
+    }
+
+    /**
+     * Makes sure the memberships of a batch of users are cached, with one query and one task on the main thread for the whole batch.
+     *
+     * @param uuids The uuids of the users.
+     * @return A future which is completed with false if the memberships could not be loaded.
+     */
+    private @NotNull CompletableFuture<Boolean> ensureLoaded(@NotNull Collection<UUID> uuids) {
+        if (!this.groupManager.isLazyMembers() || uuids.isEmpty()) return CompletableFuture.completedFuture(true);
+
+        List<UUID> copy = List.copyOf(uuids);
+        return this.plugin.getAsyncDatabaseManager().supplyAsync(() -> this.groupMemberManager.ensureLoaded(copy));
+    }
+
+    /**
+     * Changes the memberships and writes them in one transaction. This is called on the main thread.
+     *
+     * @param player     The player who executed the command.
+     * @param resolved   The resolved uuids by their name or uuid. Users who do not exist are mapped to null.
+     * @param groupName  The group to change.
+     * @param add        Whether the users are added or removed.
+     * @param expiration The expiration of added memberships or null if they are permanent.
+     * @param startedAt  The start of the command in nanoseconds.
+     */
+    private void apply(@NotNull Player player, @NotNull Map<String, UUID> resolved, @NotNull String groupName, boolean add, @Nullable LocalDateTime expiration, long startedAt) {
+        Collection<UUID> uuids = resolved.values().stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        long missing = resolved.values().stream().filter(Objects::isNull).count();
+        int changed = add
+                ? this.groupMemberManager.addMembers(uuids, groupName, expiration)
+                : this.groupMemberManager.removeMembers(uuids, groupName);
+
+        for (UUID uuid : uuids) {
+            Player target = Bukkit.getPlayer(uuid);
+            if (target != null) this.scoreboardManager.markDirty(target);
+            this.groupMemberManager.evictLater(uuid);
+        }
+
+        this.plugin.getAsyncDatabaseManager().executeAsync(this.plugin.getWriteBehindQueue()::flush)
+                .whenComplete((ignored, throwable) -> Util.runSync(this.plugin, () -> {
+                    if (throwable != null) {
+                        this.languageManager.sendTranslatedMessage(player, "group_user_bulk_failed");
+                        return;
+                    }
+
+                    player.sendMessage(this.languageManager.getTranslatedMessage(player, "group_user_bulk_done",
+                            String.valueOf(changed),
+                            String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)),
+                            String.valueOf(perSecond(changed, startedAt)),
+                            String.valueOf(missing)));
+                }));
+    }
+
+    /**
+     * @param target The name or uuid of a user.
+     * @return The uuid or empty if the target is a name.
+     */
+    private @NotNull Optional<UUID> parseUUID(@NotNull String target) {
+        if (target.length() != 36) return Optional.empty();
+        try {
+            return Optional.of(UUID.fromString(target));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param amount    The amount of processed users.
+     * @param startedAt The start of the command in nanoseconds.
+     * @return The processed users per second.
+     */
+    private long perSecond(int amount, long startedAt) {
+        long elapsed = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        return amount * 1000L / elapsed;
+    }
+}
@@ -1,12 +1,12 @@
 package io.github.rysefoxx.command.impl;
 
+import io.github.rysefoxx.PlayLegendPermission;
 import io.github.rysefoxx.command.GroupOperation;
 import io.github.rysefoxx.manager.GroupManager;
 import io.github.rysefoxx.manager.GroupMemberManager;
 import io.github.rysefoxx.manager.LanguageManager;
 import io.github.rysefoxx.manager.ScoreboardManager;
 import io.github.rysefoxx.util.TimeUtil;
-import io.github.rysefoxx.util.UUIDFetcher;
 import lombok.RequiredArgsConstructor;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
@@ -19,6 +19,7 @@ import org.jetbrains.annotations.Nullable;
 import java.time.LocalDateTime;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 
 /**
  * @author Rysefoxx
@@ -27,20 +28,26 @@ import java.util.concurrent.atomic.AtomicReference;
 @RequiredArgsConstructor
 public class GroupUserCommand implements GroupOperation {
 
+    private final PlayLegendPermission plugin;
     private final GroupMemberManager groupMemberManager;
     private final GroupManager groupManager;
     private final LanguageManager languageManager;
     private final ScoreboardManager scoreboardManager;
+    private final GroupUserBulkCommand bulkCommand;
 
     @Override
     public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
         if (!(sender instanceof Player player)) return false;
 
+        if (args[1].equalsIgnoreCase("bulkadd") || args[1].equalsIgnoreCase("bulkremove")) {
+            return this.bulkCommand.onCommand(sender, command, label, args);
+        }
+
         String groupName = args[2];
         Player target = Bukkit.getPlayerExact(args[3]);
         AtomicReference<UUID> targetUuid = new AtomicReference<>();
         if (target == null) {
-            UUIDFetcher.getUUID(args[3], uuid -> {
+            this.plugin.getProfileManager().resolveUUID(args[3]).thenAccept(uuid -> {
                 if (uuid == null) {
                     this.languageManager.sendTranslatedMessage(player, "user_not_found");
                     return;
@@ -51,8 +58,23 @@ public class GroupUserCommand implements GroupOperation {
                     return;
                 }
 
-                targetUuid.set(uuid);
-                processCommand(player, args, targetUuid, groupName, null);
+                // The group of an offline player may not be cached. Loading it blocks, so it never runs on the main thread, even if the uuid was cached.
+                this.plugin.getAsyncDatabaseManager().executeAsync(() -> {
+                    if (!this.groupMemberManager.ensureLoaded(uuid)) {
+                        this.languageManager.sendTranslatedMessage(player, "group_user_load_failed");
+                        return;
+                    }
+
+                    targetUuid.set(uuid);
+                    Bukkit.getScheduler().runTask(this.plugin, () -> {
+                        processCommand(player, args, targetUuid, groupName, null);
+                        this.groupMemberManager.evictLater(uuid);
+                    });
+                }).exceptionally(throwable -> {
+                    this.plugin.getLogger().log(Level.SEVERE, "Failed to load the groups of " + uuid + "!", throwable);
+                    this.languageManager.sendTranslatedMessage(player, "group_user_load_failed");
+                    return null;
+                });
             });
         } else {
             targetUuid.set(target.getUniqueId());
@@ -108,7 +130,7 @@ public class GroupUserCommand implements GroupOperation {
         this.languageManager.sendTranslatedMessage(player, "group_user_removed");
 
         if (target == null) return;
-        this.scoreboardManager.update(target);
+        this.scoreboardManager.markDirty(target);
     }
 
 
@@ -143,6 +165,6 @@ public class GroupUserCommand implements GroupOperation {
         this.languageManager.sendTranslatedMessage(player, "group_user_added");
 
         if (target == null) return;
-        this.scoreboardManager.update(target);
+        this.scoreboardManager.markDirty(target);
     }
 }
\ No newline at end of file
@@ -1,39 +1,160 @@
 package io.github.rysefoxx.database;
 
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.metrics.LatencyHistogram;
+import io.github.rysefoxx.metrics.MetricsSource;
+import io.github.rysefoxx.metrics.MetricsWriter;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
 
 /**
+ * Runs database tasks on a bounded thread pool. <br>
+ * The pool has as many threads as the connection pool has connections by default, so tasks never wait for a connection inside a thread.
+ * Tasks which do not fit into the queue do not spawn more threads. They run on the calling thread instead, which slows down the caller until the
+ * queue has room again. Only the main thread must not block, so its tasks are rejected and their future fails. <br>
+ * Failures of tasks are not logged here. They complete the returned future exceptionally and are logged by the caller, which knows what failed.
+ *
  * @author Rysefoxx
  * @since 02.01.2024
  */
-public class AsyncDatabaseManager {
+public class AsyncDatabaseManager implements MetricsSource {
 
-    private static final ExecutorService EXECUTOR_SERVICE = Executors.newCachedThreadPool();
+    private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    private final Logger logger;
+    private final ThreadPoolExecutor executorService;
+    private final LongAdder rejectedTasks = new LongAdder();
+
+    /**
+     * The time tasks waited in the queue until a thread picked them up.
+     */
+    @Getter
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+
+    /**
+     * The time tasks took to run.
+     */
+    @Getter
+    private final LatencyHistogram executionLatency = new LatencyHistogram();
+
+    public AsyncDatabaseManager(@NotNull PlayLegendPermission plugin) {
+        this.logger = plugin.getLogger();
+
+        ConnectionManager connectionManager = plugin.getConnectionManager();
+        YamlConfiguration config = connectionManager.getConfig();
+        int threads = Math.max(1, config.getInt("executor.threads", connectionManager.getMaximumPoolSize()));
+        int queueCapacity = Math.max(1, config.getInt("executor.queue-capacity", DEFAULT_QUEUE_CAPACITY));
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executorService = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "PlayLegendPermission-Database-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (runnable, executor) -> {
+            this.rejectedTasks.increment();
+            if (executor.isShutdown()) throw new RejectedExecutionException("The async database executor is shut down!");
+            if (Bukkit.isPrimaryThread()) throw new RejectedExecutionException("The async database queue is full!");
+            runnable.run();
+        });
+        this.executorService.allowCoreThreadTimeOut(true);
+    }
 
     /***
-     * Executes a runnable async. If a callback is provided, it will be called on success or failure.
+     * Executes a runnable async. Failures complete the returned future exceptionally.
      * @param runnable The runnable to execute.
+     * @return A future which is completed when the runnable has finished.
      */
-    public void executeAsync(@NotNull Runnable runnable) {
-        EXECUTOR_SERVICE.submit(() -> {
-            try {
-                runnable.run();
-            } catch (Throwable throwable) {
-                throwable.printStackTrace();
-            }
+    public @NotNull CompletableFuture<Void> executeAsync(@NotNull Runnable runnable) {
+        return supplyAsync(() -> {
+            runnable.run();
+            return null;
         });
     }
 
     /**
-     * Shuts down the executor service.
+     * Executes a supplier async. Failures complete the returned future exceptionally. <br>
+     * When the queue is full, the supplier runs on the calling thread. On the main thread or after the shutdown the task is rejected instead,
+     * and the future is completed with a {@link RejectedExecutionException}.
+     *
+     * @param supplier The supplier to execute.
+     * @param <T>      The type of the result.
+     * @return A future which is completed with the result of the supplier.
+     */
+    public <T> @NotNull CompletableFuture<T> supplyAsync(@NotNull Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long submittedAt = System.nanoTime();
+
+        try {
+            this.executorService.execute(() -> {
+                long startedAt = System.nanoTime();
+                this.queueLatency.record(startedAt - submittedAt);
+                try {
+                    future.complete(supplier.get());
+                } catch (Throwable throwable) {
+                    future.completeExceptionally(throwable);
+                } finally {
+                    this.executionLatency.record(System.nanoTime() - startedAt);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            future.completeExceptionally(exception);
+        }
+
+        return future;
+    }
+
+    /**
+     * @return The amount of tasks waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return this.executorService.getQueue().size();
+    }
+
+    /**
+     * @return The amount of tasks which are currently running.
+     */
+    public int getActiveTasks() {
+        return this.executorService.getActiveCount();
+    }
+
+    /**
+     * @return The amount of tasks which did not fit into the queue since the start, whether they ran on the calling thread or were rejected.
+     */
+    public long getRejectedTasks() {
+        return this.rejectedTasks.sum();
+    }
+
+    @Override
+    public void collect(@NotNull MetricsWriter writer) {
+        writer.gauge("legend_async_queue_depth", "Async database tasks waiting for a thread.", getQueueDepth());
+        writer.gauge("legend_async_active_tasks", "Async database tasks which are currently running.", getActiveTasks());
+        writer.counter("legend_async_rejected_tasks_total", "Async database tasks which did not fit into the queue and ran on the calling thread or were rejected.", getRejectedTasks());
+        writer.histogram("legend_async_queue_wait_seconds", "Time async database tasks waited for a thread.", this.queueLatency);
+        writer.histogram("legend_async_execution_seconds", "Time async database tasks took to run.", this.executionLatency);
+    }
+
+    /**
+     * Shuts down the executor service and waits for the running tasks to finish.
      */
     public void shutdownExecutorService() {
-        if (EXECUTOR_SERVICE.isShutdown()) return;
-        EXECUTOR_SERVICE.shutdown();
+        if (this.executorService.isShutdown()) return;
+        this.executorService.shutdown();
+
+        try {
+            if (!this.executorService.awaitTermination(10, TimeUnit.SECONDS)) {
+                this.logger.warning("The async database tasks did not finish in time!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-}
\ No newline at end of file
+}
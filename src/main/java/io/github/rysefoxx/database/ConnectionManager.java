@@ -2,7 +2,13 @@ package io.github.rysefoxx.database;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.database.dialect.MariaDbDialect;
+import io.github.rysefoxx.database.dialect.MySqlDialect;
+import io.github.rysefoxx.database.dialect.StorageDialect;
+import io.github.rysefoxx.metrics.MetricsSource;
+import io.github.rysefoxx.metrics.MetricsWriter;
 import lombok.Getter;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.YamlConfiguration;
@@ -10,24 +16,39 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
+import java.sql.*;
+import java.util.Locale;
+import java.util.logging.Level;
 
 /**
  * @author Rysefoxx
  * @since 02.01.2024
  */
-public class ConnectionManager {
+public class ConnectionManager implements MetricsSource {
+
+    private static final int DEFAULT_POOL_SIZE = 20;
 
     private final PlayLegendPermission plugin;
     @Getter
     private HikariDataSource dataSource;
+    @Getter
+    private YamlConfiguration config;
+    /**
+     * The dialect of the database, which is configured as type in the database.yml.
+     */
+    @Getter
+    private StorageDialect dialect = new MariaDbDialect();
+    /**
+     * Measures the connections and statements, which is configured as profiling in the database.yml.
+     */
+    @Getter
+    private final QueryProfiler queryProfiler;
 
     public ConnectionManager(@NotNull PlayLegendPermission plugin) {
         this.plugin = plugin;
         saveDefaultConfig();
         setupHikariCP();
+        this.queryProfiler = new QueryProfiler(plugin.getLogger(), this.config.getConfigurationSection("profiling"));
     }
 
     /**
@@ -52,6 +73,16 @@ public class ConnectionManager {
     private void setupHikariCP() {
         File file = new File(this.plugin.getDataFolder(), "database.yml");
         YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        this.config = config;
+
+        try {
+            this.dialect = StorageDialect.fromType(config.getString("type", "mariadb"));
+        } catch (IllegalArgumentException e) {
+            this.plugin.getLogger().severe(e.getMessage());
+            // Without a database, nothing works, so we shut down the server.
+            Bukkit.shutdown();
+            return;
+        }
 
         if (!isValidConfig(config)) {
             this.plugin.getLogger().severe("Failed to load database.yml!");
@@ -60,17 +91,21 @@ public class ConnectionManager {
             return;
         }
 
-        String url = buildJdbcUrl(config);
+        String url = this.dialect.buildJdbcUrl(config, this.plugin.getDataFolder());
         setupDataSource(url, config);
     }
 
     /**
-     * Checks if the database config is valid. Its valid when all required fields are set.
+     * Checks if the database config is valid. Its valid when all required fields are set. An embedded database needs no server, so only the credentials are required.
      *
      * @param config The config to check.
      * @return true if valid, false if not.
      */
     private boolean isValidConfig(@NotNull YamlConfiguration config) {
+        if (this.dialect.isEmbedded()) {
+            return config.getString("username") != null && config.getString("password") != null;
+        }
+
         return config.getString("host") != null
                 && config.getString("port") != null
                 && config.getString("database") != null
@@ -78,19 +113,6 @@ public class ConnectionManager {
                 && config.getString("password") != null;
     }
 
-    /**
-     * Builds the jdbc url from the config.
-     *
-     * @param config The config to build the url from.
-     * @return The jdbc url.
-     */
-    private @NotNull String buildJdbcUrl(@NotNull YamlConfiguration config) {
-        String host = config.getString("host");
-        String port = config.getString("port");
-        String database = config.getString("database");
-        return String.format("jdbc:mariadb://%s:%s/%s?useSSL=false", host, port, database);
-    }
-
     /**
      * Sets up the datasource with the given hikari config.
      *
@@ -102,10 +124,51 @@ public class ConnectionManager {
         hikariConfig.setJdbcUrl(url);
         hikariConfig.setUsername(config.getString("username"));
         hikariConfig.setPassword(config.getString("password"));
-        hikariConfig.setDriverClassName("org.mariadb.jdbc.Driver");
-        hikariConfig.setMaximumPoolSize(20);
+        hikariConfig.setDriverClassName(this.dialect.getDriverClassName());
+        hikariConfig.setMaximumPoolSize(getMaximumPoolSize());
 
         this.dataSource = new HikariDataSource(hikariConfig);
+        detectMySql();
+    }
+
+    /**
+     * The MariaDB driver also connects to MySQL servers. If the configured MariaDB server turns out to be a MySQL server, the MySQL dialect is used,
+     * so the migrations and upserts match the server.
+     */
+    private void detectMySql() {
+        if (!(this.dialect instanceof MariaDbDialect) || this.dialect instanceof MySqlDialect) return;
+
+        try (Connection connection = this.dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String product = metaData.getDatabaseProductName() + " " + metaData.getDatabaseProductVersion();
+            if (product.toLowerCase(Locale.ROOT).contains("mariadb")) return;
+
+            this.plugin.getLogger().info("Detected a MySQL server, using the MySQL dialect!");
+            this.dialect = new MySqlDialect();
+        } catch (SQLException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "Failed to detect the database server!", e);
+        }
+    }
+
+    /**
+     * @return The maximum amount of connections in the pool.
+     */
+    public int getMaximumPoolSize() {
+        return Math.max(1, this.config.getInt("pool-size", DEFAULT_POOL_SIZE));
+    }
+
+    @Override
+    public void collect(@NotNull MetricsWriter writer) {
+        writer.gauge("legend_db_pool_connections_max", "Maximum amount of connections in the pool.", getMaximumPoolSize());
+        if (this.dataSource == null || this.dataSource.isClosed()) return;
+
+        // The pool is started with the first connection, before that there are no stats.
+        HikariPoolMXBean pool = this.dataSource.getHikariPoolMXBean();
+        if (pool == null) return;
+
+        writer.gauge("legend_db_pool_connections", "Connections in the pool by state.", pool.getActiveConnections(), "state", "active");
+        writer.gauge("legend_db_pool_connections", "Connections in the pool by state.", pool.getIdleConnections(), "state", "idle");
+        writer.gauge("legend_db_pool_threads_awaiting", "Threads waiting for a connection from the pool.", pool.getThreadsAwaitingConnection());
     }
 
     /**
@@ -122,15 +185,35 @@ public class ConnectionManager {
     }
 
     /**
-     * Gets a connection from the datasource.
+     * Prepares a forward-only, read-only statement which streams its result in chunks instead of loading it into memory at once.
+     *
+     * @param query     The query to execute.
+     * @param fetchSize The amount of rows to fetch at once.
+     * @return the prepared statement or null if an error occurred.
+     */
+    public @Nullable PreparedStatement prepareStreamingStatement(@Nullable Connection connection, @NotNull String query, int fetchSize) throws SQLException {
+        if (connection == null) {
+            this.plugin.getLogger().severe("The connection for the prepared statement is null!");
+            return null;
+        }
+
+        PreparedStatement preparedStatement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        preparedStatement.setFetchSize(fetchSize);
+        return preparedStatement;
+    }
+
+    /**
+     * Gets a connection from the datasource. The connection is measured by the {@link QueryProfiler}.
      *
      * @return The connection or null if an error occurred.
      */
     public @Nullable Connection getConnection() {
         try {
-            return this.dataSource.getConnection();
+            long startedAt = System.nanoTime();
+            Connection connection = this.dataSource.getConnection();
+            return this.queryProfiler.wrap(connection, System.nanoTime() - startedAt);
         } catch (Exception exception) {
-            this.plugin.getLogger().severe("Failed to get connection from datasource!");
+            this.plugin.getLogger().log(Level.SEVERE, "Failed to get connection from datasource!", exception);
             return null;
         }
     }
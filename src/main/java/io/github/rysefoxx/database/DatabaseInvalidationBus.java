@@ -0,0 +1,258 @@
+package io.github.rysefoxx.database;
+
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.database.dialect.StorageDialect;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * An {@link InvalidationBus} which uses the change_log table. <br>
+ * Events are written through the {@link WriteBehindQueue}, so they are committed in the same transaction as the change they describe.
+ * The id of a row is the revision of the change. Every server polls the rows after the last revision it has seen with one range query on the primary key,
+ * ignores its own rows and applies every changed row only once, even if it changed several times. Old rows are removed after the configured retention. <br>
+ * Ids are assigned when a row is inserted, but become visible when its transaction commits, so a smaller id can appear after a larger one.
+ * The revision therefore does not move past a missing id for {@link #GAP_TIMEOUT_SECONDS}, and the rows after it are read again until the gap is
+ * filled or timed out. The ids of these rows are remembered, so they are applied only once, even if every id is a gap, e.g. with an
+ * auto_increment_increment above 1.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class DatabaseInvalidationBus implements InvalidationBus {
+
+    private static final long DEFAULT_POLL_INTERVAL_MILLIS = 1000L;
+    private static final long DEFAULT_RETENTION_SECONDS = 3600L;
+    private static final int POLL_LIMIT = 1000;
+    private static final long PURGE_INTERVAL_MILLIS = 60_000L;
+    private static final long GAP_TIMEOUT_SECONDS = 10L;
+
+    private final PlayLegendPermission plugin;
+    private final ConnectionManager connectionManager;
+    private final WriteBehindQueue writeBehindQueue;
+    private final StorageDialect dialect;
+    private final ScheduledExecutorService executorService;
+    private final List<Function<InvalidationEvent, CompletableFuture<Void>>> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Identifies the rows written by this server.
+     */
+    private final UUID origin = UUID.randomUUID();
+    private final AtomicLong sequence = new AtomicLong();
+    private final long pollInterval;
+    private final long retentionSeconds;
+
+    /**
+     * The id of the last row which has been read, without a gap before it. It is read before the caches are loaded, so no change between loading and the first poll is missed.
+     */
+    private volatile long revision;
+    private long lastPurge;
+
+    /**
+     * The ids after the {@link #revision} which have already been read. They are removed once the revision has moved past them. Only the executor accesses it.
+     */
+    private final NavigableSet<Long> readIds = new TreeSet<>();
+
+    public DatabaseInvalidationBus(@NotNull PlayLegendPermission plugin) {
+        this.plugin = plugin;
+        this.connectionManager = plugin.getConnectionManager();
+        this.writeBehindQueue = plugin.getWriteBehindQueue();
+        this.dialect = this.connectionManager.getDialect();
+
+        YamlConfiguration config = this.connectionManager.getConfig();
+        this.pollInterval = Math.max(1L, config.getLong("invalidation.poll-interval-millis", DEFAULT_POLL_INTERVAL_MILLIS));
+        this.retentionSeconds = Math.max(1L, config.getLong("invalidation.retention-seconds", DEFAULT_RETENTION_SECONDS));
+        this.revision = queryLatestId();
+
+        this.executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PlayLegendPermission-Invalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void publish(@NotNull InvalidationEvent event) {
+        // Every event gets its own key, so events are never coalesced and stay behind the change they describe.
+        this.writeBehindQueue.enqueue(new PendingWrite("change:" + this.sequence.incrementAndGet(),
+                "change_log_insert",
+                "INSERT INTO legend.change_log (origin, type, name, uuid) VALUES (?, ?, ?, ?)",
+                false,
+                statement -> {
+                    this.dialect.setUUID(statement, 1, this.origin);
+                    statement.setString(2, event.type().name());
+                    statement.setString(3, event.group());
+                    this.dialect.setUUID(statement, 4, event.uuid());
+                }));
+    }
+
+    @Override
+    public void subscribe(@NotNull Function<InvalidationEvent, CompletableFuture<Void>> subscriber) {
+        this.subscribers.add(subscriber);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Integer> synchronize() {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        try {
+            // The poll runs on the executor, so it never overlaps with the scheduled poll.
+            this.executorService.execute(() -> {
+                try {
+                    Set<InvalidationEvent> events = readChanges();
+                    CompletableFuture.allOf(dispatch(events).toArray(CompletableFuture[]::new))
+                            .whenComplete((ignored, throwable) -> {
+                                if (throwable != null) future.completeExceptionally(throwable);
+                                else future.complete(events.size());
+                            });
+                } catch (SQLException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public long getRevision() {
+        return this.revision;
+    }
+
+    @Override
+    public void start() {
+        this.executorService.scheduleWithFixedDelay(this::poll, this.pollInterval, this.pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        this.executorService.shutdownNow();
+    }
+
+    /**
+     * Reads the rows which have been added since the last poll and passes the events of other servers to the subscribers.
+     */
+    private void poll() {
+        try {
+            dispatch(readChanges());
+            purge();
+        } catch (SQLException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "Failed to poll the change log!", e);
+        }
+    }
+
+    /**
+     * Reads all rows after the {@link #revision} and advances it. Rows which have been read before are skipped.
+     *
+     * @return The distinct events of other servers, in the order of their first change.
+     * @throws SQLException If the rows could not be read.
+     */
+    private @NotNull Set<InvalidationEvent> readChanges() throws SQLException {
+        Set<InvalidationEvent> events = new LinkedHashSet<>();
+        List<Long> newIds = new ArrayList<>();
+        long after = this.revision;
+        int rows;
+        do {
+            rows = 0;
+            try (Connection connection = this.connectionManager.getConnection();
+                 PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection,
+                         "SELECT id, origin, type, name, uuid, TIMESTAMPDIFF(SECOND, created_at, NOW()) AS age " +
+                                 "FROM legend.change_log WHERE id > ? ORDER BY id LIMIT " + POLL_LIMIT)) {
+                if (preparedStatement == null) throw new SQLException("The prepared statement is null!");
+
+                preparedStatement.setLong(1, after);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        rows++;
+                        long id = resultSet.getLong("id");
+                        // Only move the revision while no id is missing, or the missing id is too old to still be committed.
+                        if (after == this.revision && (id == after + 1 || resultSet.getLong("age") >= GAP_TIMEOUT_SECONDS)) {
+                            this.revision = id;
+                        }
+                        after = id;
+
+                        if (this.readIds.contains(id)) continue;
+                        newIds.add(id);
+                        if (this.origin.equals(this.dialect.getUUID(resultSet, "origin"))) continue;
+
+                        InvalidationEvent.Type type = InvalidationEvent.Type.valueOf(resultSet.getString("type"));
+                        events.add(new InvalidationEvent(type, resultSet.getString("name"), this.dialect.getUUID(resultSet, "uuid")));
+                    }
+                }
+            }
+        } while (rows == POLL_LIMIT);
+
+        // The ids are only remembered after all rows have been read, so rows of a failed poll are read again.
+        this.readIds.addAll(newIds);
+        this.readIds.headSet(this.revision, true).clear();
+        return events;
+    }
+
+    /**
+     * Passes the events to all subscribers. A failing subscriber does not stop the others.
+     *
+     * @param events The events to pass.
+     * @return The futures of the subscribers, which are completed when the events have been applied.
+     */
+    private @NotNull List<CompletableFuture<Void>> dispatch(@NotNull Collection<InvalidationEvent> events) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (InvalidationEvent event : events) {
+            for (Function<InvalidationEvent, CompletableFuture<Void>> subscriber : this.subscribers) {
+                try {
+                    futures.add(subscriber.apply(event).exceptionally(throwable -> {
+                        this.plugin.getLogger().log(Level.SEVERE, "Failed to apply " + event + "!", throwable);
+                        return null;
+                    }));
+                } catch (Exception e) {
+                    this.plugin.getLogger().log(Level.SEVERE, "Failed to apply " + event + "!", e);
+                }
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * Removes the rows which are older than the retention. This runs at most once per minute.
+     *
+     * @throws SQLException If the rows could not be removed.
+     */
+    private void purge() throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - this.lastPurge < PURGE_INTERVAL_MILLIS) return;
+        this.lastPurge = now;
+
+        try (Connection connection = this.connectionManager.getConnection();
+             PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection,
+                     "DELETE FROM legend.change_log WHERE created_at < ?")) {
+            if (preparedStatement == null) return;
+
+            preparedStatement.setObject(1, LocalDateTime.now().minusSeconds(this.retentionSeconds));
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * @return The id of the latest row of the change log or 0 if it is empty.
+     */
+    private long queryLatestId() {
+        try (Connection connection = this.connectionManager.getConnection();
+             PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection,
+                     "SELECT COALESCE(MAX(id), 0) FROM legend.change_log");
+             ResultSet resultSet = preparedStatement == null ? null : preparedStatement.executeQuery()) {
+            if (resultSet != null && resultSet.next()) return resultSet.getLong(1);
+        } catch (SQLException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "Failed to read the latest change!", e);
+        }
+        return 0L;
+    }
+}
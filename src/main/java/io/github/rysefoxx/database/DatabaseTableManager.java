@@ -1,66 +1,304 @@
 package io.github.rysefoxx.database;
 
 import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.database.dialect.StorageDialect;
 import org.apache.commons.io.IOUtils;
 import org.bukkit.Bukkit;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.util.Objects;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 
 /**
+ * Creates and updates the tables with versioned migrations. <br>
+ * Every migration is a script in the folder of the {@link StorageDialect} and is applied once, in the order of its version. The applied versions are stored in the schema_version table.
+ * A dialect which has no script for a version has nothing to change in it, for example because its first script already creates the current layout.
+ * A lock prevents two servers from migrating at the same time. An embedded database can only be opened by one server, so it needs no lock. <br>
+ * MariaDB, MySQL and H2 commit schema changes implicitly, so a migration can not be rolled back. Instead, every statement of a migration is recorded
+ * in the schema_migration_step table as soon as it succeeded. If a migration fails, it is continued with the failed statement on the next start
+ * and the statements before it are not run again. Therefore, the statements of a released script must never be added, removed or reordered. When all statements succeeded,
+ * the version is stored and its steps are removed in one transaction. <br>
+ * Only a crash between a statement and the record of its step runs the statement again, so the statements are guarded with {@code IF NOT EXISTS}
+ * and {@code INSERT IGNORE} where the database allows it.
+ *
  * @author Rysefoxx
  * @since 02.01.2024
  */
 public class DatabaseTableManager {
 
+    /**
+     * All migrations in the order they are applied. New migrations are appended with the next version.
+     */
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create tables", "V1__create_tables.sql"),
+            new Migration(2, "Member and permission indexes", "V2__member_and_permission_indexes.sql"),
+            new Migration(3, "Compact storage layout", "V3__compact_storage_layout.sql"),
+            new Migration(4, "Player profiles", "V4__player_profiles.sql")
+    );
+
+    private static final String LOCK_NAME = "legend_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
     private final PlayLegendPermission plugin;
     private final ConnectionManager connectionManager;
 
     public DatabaseTableManager(@NotNull PlayLegendPermission plugin) {
         this.plugin = plugin;
         this.connectionManager = plugin.getConnectionManager();
-        createDefaultTables();
+        migrate();
     }
 
     /**
-     * Executes the queries from data.sql. If data.sql is not found, the server is shut down. <br>
-     * The creation takes place synchronously, as there are no users on the server when the plugin is started and the users should only join when the tables have been created.
+     * Applies all migrations which have not been applied yet. If a migration fails, the server is shut down. <br>
+     * The migration takes place synchronously, as there are no users on the server when the plugin is started and the users should only join when the tables are up to date.
      */
-    private void createDefaultTables() {
-        String[] data;
+    private void migrate() {
+        try (Connection connection = this.connectionManager.getConnection()) {
+            if (connection == null) {
+                this.plugin.getLogger().severe("Failed to get connection from datasource!");
+                return;
+            }
+
+            StorageDialect dialect = this.connectionManager.getDialect();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(dialect.getCreateSchemaQuery());
+                statement.execute("CREATE TABLE IF NOT EXISTS legend.schema_version " +
+                        "(version INT PRIMARY KEY NOT NULL, description VARCHAR(100) NOT NULL, applied_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+                statement.execute("CREATE TABLE IF NOT EXISTS legend.schema_migration_step " +
+                        "(version INT NOT NULL, step INT NOT NULL, PRIMARY KEY (version, step))");
+            }
+
+            if (!dialect.isEmbedded() && !acquireLock(connection)) {
+                this.plugin.getLogger().severe("Could not acquire the migration lock, another server may be migrating the database!");
+                // Without the current tables, nothing works, so we shut down the server.
+                Bukkit.shutdown();
+                return;
+            }
 
-        try (InputStream inputStream = Objects.requireNonNull(getClass().getClassLoader()
-                .getResourceAsStream("data.sql"))) {
-            data = IOUtils.toString(inputStream, StandardCharsets.UTF_8).split(";");
-        } catch (IOException e) {
-            this.plugin.getLogger().log(Level.SEVERE, "Could not load data.sql", e);
+            try {
+                int currentVersion = getCurrentVersion(connection);
+                for (Migration migration : MIGRATIONS) {
+                    if (migration.version() <= currentVersion) continue;
 
-            // Without a database, nothing works, so we shut down the server.
+                    apply(connection, migration);
+                    this.plugin.getLogger().info("Applied migration " + migration.version() + " (" + migration.description() + ")!");
+                }
+            } finally {
+                if (!dialect.isEmbedded()) releaseLock(connection);
+            }
+        } catch (SQLException | IOException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "Failed to migrate the database!", e);
+
+            // Without the current tables, nothing works, so we shut down the server.
             Bukkit.shutdown();
-            return;
         }
+    }
 
-        for (String query : data) {
-            if (query == null || query.isEmpty() || query.isBlank()) continue;
+    /**
+     * Applies the statements of a migration which have not been applied yet and records each of them. Afterward, the version is stored.
+     *
+     * @param connection The connection to use.
+     * @param migration  The migration to apply.
+     * @throws SQLException If a statement fails.
+     * @throws IOException  If the script could not be read.
+     */
+    private void apply(@NotNull Connection connection, @NotNull Migration migration) throws SQLException, IOException {
+        String script = readScript(this.connectionManager.getDialect().getMigrationFolder() + migration.script());
+        List<String> queries = script == null ? List.of() : splitStatements(script);
+        Set<Integer> appliedSteps = getAppliedSteps(connection, migration.version());
+        if (!appliedSteps.isEmpty()) {
+            this.plugin.getLogger().info("Continuing migration " + migration.version() + " after " + appliedSteps.size() + " of " + queries.size() + " statements!");
+        }
 
-            try (Connection connection = this.connectionManager.getConnection()) {
-                if(connection == null)  {
-                    this.plugin.getLogger().severe("Failed to get connection from datasource!");
-                    break;
+        try (Statement statement = connection.createStatement();
+             PreparedStatement stepStatement = connection.prepareStatement("INSERT INTO legend.schema_migration_step (version, step) VALUES (?, ?)")) {
+            for (int step = 0; step < queries.size(); step++) {
+                if (appliedSteps.contains(step)) continue;
+
+                try {
+                    statement.execute(queries.get(step));
+                } catch (SQLException e) {
+                    throw new SQLException("Migration " + migration.version() + " (" + migration.description() + ") failed at statement " + (step + 1)
+                            + ", it is continued with this statement on the next start!", e);
                 }
 
-                PreparedStatement statement = connection.prepareStatement(query);
-                statement.execute();
-            } catch (SQLException e) {
-                this.plugin.getLogger().log(Level.SEVERE, "Failed to execute query: " + query, e);
+                stepStatement.setInt(1, migration.version());
+                stepStatement.setInt(2, step);
+                stepStatement.executeUpdate();
             }
         }
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement versionStatement = connection.prepareStatement("INSERT INTO legend.schema_version (version, description) VALUES (?, ?)");
+             PreparedStatement stepStatement = connection.prepareStatement("DELETE FROM legend.schema_migration_step WHERE version = ?")) {
+            versionStatement.setInt(1, migration.version());
+            versionStatement.setString(2, migration.description());
+            versionStatement.executeUpdate();
+
+            stepStatement.setInt(1, migration.version());
+            stepStatement.executeUpdate();
+
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Failed to store the version of migration " + migration.version() + " (" + migration.description() + ")!", e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * @param connection The connection to use.
+     * @param version    The version of the migration.
+     * @return The indexes of the statements of the migration which have already been applied.
+     * @throws SQLException If the steps could not be read.
+     */
+    private @NotNull Set<Integer> getAppliedSteps(@NotNull Connection connection, int version) throws SQLException {
+        Set<Integer> steps = new HashSet<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT step FROM legend.schema_migration_step WHERE version = ?")) {
+            preparedStatement.setInt(1, version);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    steps.add(resultSet.getInt(1));
+                }
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Splits a script into its statements. A semicolon only ends a statement outside of quotes, identifiers and comments.
+     *
+     * @param script The content of the script.
+     * @return The statements without the terminating semicolons. Statements which only consist of whitespace or comments are skipped.
+     */
+    private static @NotNull List<String> splitStatements(@NotNull String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean code = false;
+        char quote = 0;
+
+        for (int i = 0; i < script.length(); i++) {
+            char character = script.charAt(i);
+            char next = i + 1 < script.length() ? script.charAt(i + 1) : 0;
+
+            if (quote != 0) {
+                current.append(character);
+                // A doubled quote is an escaped quote, a backslash escapes the next character in MariaDB and MySQL strings.
+                if (character == '\\' && quote != '`' && next != 0) {
+                    current.append(next);
+                    i++;
+                } else if (character == quote) {
+                    if (next == quote) {
+                        current.append(next);
+                        i++;
+                    } else {
+                        quote = 0;
+                    }
+                }
+                continue;
+            }
+
+            if (character == '-' && next == '-') {
+                int end = script.indexOf('\n', i);
+                i = end == -1 ? script.length() : end;
+                current.append('\n');
+                continue;
+            }
+            if (character == '/' && next == '*') {
+                int end = script.indexOf("*/", i + 2);
+                i = end == -1 ? script.length() : end + 1;
+                current.append(' ');
+                continue;
+            }
+
+            if (character == ';') {
+                if (code) statements.add(current.toString().trim());
+                current.setLength(0);
+                code = false;
+                continue;
+            }
+
+            if (character == '\'' || character == '"' || character == '`') quote = character;
+            if (!Character.isWhitespace(character)) code = true;
+            current.append(character);
+        }
+
+        if (code) statements.add(current.toString().trim());
+        return statements;
+    }
+
+    /**
+     * @param connection The connection to use.
+     * @return The highest applied version or 0 if no migration has been applied.
+     * @throws SQLException If the version could not be read.
+     */
+    private int getCurrentVersion(@NotNull Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM legend.schema_version")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Acquires the named lock of the migration, so only one server migrates at a time.
+     *
+     * @param connection The connection which holds the lock.
+     * @return true if the lock has been acquired, false if it timed out.
+     * @throws SQLException If the lock could not be requested.
+     */
+    private boolean acquireLock(@NotNull Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            preparedStatement.setString(1, LOCK_NAME);
+            preparedStatement.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) == 1;
+            }
+        }
+    }
+
+    /**
+     * Releases the named lock of the migration.
+     *
+     * @param connection The connection which holds the lock.
+     * @throws SQLException If the lock could not be released.
+     */
+    private void releaseLock(@NotNull Connection connection) throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            preparedStatement.setString(1, LOCK_NAME);
+            preparedStatement.execute();
+        }
+    }
+
+    /**
+     * Reads a migration script from the resources.
+     *
+     * @param script The path of the script.
+     * @return The content of the script or null if the dialect has no script for the migration.
+     * @throws IOException If the script could not be read.
+     */
+    private @Nullable String readScript(@NotNull String script) throws IOException {
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(script)) {
+            if (inputStream == null) return null;
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A versioned change of the tables.
+     *
+     * @param version     The version, which is unique and increases with every migration.
+     * @param description A short description, which is stored in the schema_version table.
+     * @param script      The file name of the script in the folder of the dialect.
+     */
+    private record Migration(int version, @NotNull String description, @NotNull String script) {
     }
-}
\ No newline at end of file
+}
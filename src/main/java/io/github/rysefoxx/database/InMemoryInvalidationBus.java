@@ -0,0 +1,147 @@
+package io.github.rysefoxx.database;
+
+import io.github.rysefoxx.PlayLegendPermission;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * An {@link InvalidationBus} which delivers the events to the linked buses in the same JVM. <br>
+ * It is used by single servers and by tests, which link two buses to simulate two servers. <br>
+ * Like the change_log of the {@link DatabaseInvalidationBus}, an event is only delivered after the {@link WriteBehindQueue} has written the change it describes,
+ * so the linked buses never read the state before the change. The events are delivered in the order they were published, by a thread of the publishing bus.
+ * Without linked buses, nothing is delivered and the queue is not flushed.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class InMemoryInvalidationBus implements InvalidationBus {
+
+    private final PlayLegendPermission plugin;
+    private final WriteBehindQueue writeBehindQueue;
+    private final ExecutorService executorService;
+    private final List<Function<InvalidationEvent, CompletableFuture<Void>>> subscribers = new CopyOnWriteArrayList<>();
+    private final List<InMemoryInvalidationBus> linkedBuses = new CopyOnWriteArrayList<>();
+    private final AtomicLong revision = new AtomicLong();
+
+    /**
+     * The events of linked buses which are still being applied by the subscribers of this bus.
+     */
+    private final Set<CompletableFuture<Void>> applying = ConcurrentHashMap.newKeySet();
+
+    /**
+     * All events which have been published on this bus.
+     */
+    @Getter
+    private final List<InvalidationEvent> published = new CopyOnWriteArrayList<>();
+
+    public InMemoryInvalidationBus(@NotNull PlayLegendPermission plugin) {
+        this.plugin = plugin;
+        this.writeBehindQueue = plugin.getWriteBehindQueue();
+        this.executorService = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PlayLegendPermission-Invalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Links this bus with another bus, so both receive the events of each other.
+     *
+     * @param other The other bus.
+     */
+    public void link(@NotNull InMemoryInvalidationBus other) {
+        if (other == this || this.linkedBuses.contains(other)) return;
+
+        this.linkedBuses.add(other);
+        other.linkedBuses.add(this);
+    }
+
+    @Override
+    public void publish(@NotNull InvalidationEvent event) {
+        this.published.add(event);
+        if (this.linkedBuses.isEmpty()) return;
+
+        try {
+            this.executorService.execute(() -> {
+                // The change has been queued before the event, so it is written before the event is delivered.
+                this.writeBehindQueue.flush();
+                this.linkedBuses.forEach(bus -> bus.apply(event));
+            });
+        } catch (RejectedExecutionException e) {
+            // The bus is shut down, so it is no longer linked.
+        }
+    }
+
+    @Override
+    public void subscribe(@NotNull Function<InvalidationEvent, CompletableFuture<Void>> subscriber) {
+        this.subscribers.add(subscriber);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Integer> synchronize() {
+        long before = this.revision.get();
+
+        // The events which the linked buses published so far are delivered before these tasks run.
+        List<CompletableFuture<Void>> delivered = new ArrayList<>();
+        for (InMemoryInvalidationBus bus : this.linkedBuses) {
+            try {
+                delivered.add(CompletableFuture.runAsync(() -> {
+                }, bus.executorService));
+            } catch (RejectedExecutionException e) {
+                // The linked bus is shut down, so it does not deliver anything anymore.
+            }
+        }
+
+        return CompletableFuture.allOf(delivered.toArray(CompletableFuture[]::new))
+                .thenCompose(ignored -> CompletableFuture.allOf(this.applying.toArray(CompletableFuture[]::new)))
+                .thenApply(ignored -> (int) (this.revision.get() - before));
+    }
+
+    @Override
+    public long getRevision() {
+        return this.revision.get();
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void shutdown() {
+        this.linkedBuses.forEach(bus -> bus.linkedBuses.remove(this));
+        this.linkedBuses.clear();
+        this.executorService.shutdown();
+    }
+
+    /**
+     * Passes an event of a linked bus to the subscribers of this bus. This is called by the thread of the linked bus.
+     *
+     * @param event The event to pass.
+     */
+    private void apply(@NotNull InvalidationEvent event) {
+        this.revision.incrementAndGet();
+        for (Function<InvalidationEvent, CompletableFuture<Void>> subscriber : this.subscribers) {
+            CompletableFuture<Void> future;
+            try {
+                future = subscriber.apply(event).exceptionally(throwable -> {
+                    this.plugin.getLogger().log(Level.SEVERE, "Failed to apply " + event + "!", throwable);
+                    return null;
+                });
+            } catch (Exception e) {
+                this.plugin.getLogger().log(Level.SEVERE, "Failed to apply " + event + "!", e);
+                continue;
+            }
+
+            this.applying.add(future);
+            future.whenComplete((ignored, throwable) -> this.applying.remove(future));
+        }
+    }
+}
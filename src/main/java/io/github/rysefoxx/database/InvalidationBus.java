@@ -0,0 +1,52 @@
+package io.github.rysefoxx.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Sends {@link InvalidationEvent}s to the other servers which share the database, so they can update their caches without a restart. <br>
+ * Subscribers only receive the events of other servers. They may be called on any thread.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public interface InvalidationBus {
+
+    /**
+     * Sends an event to the other servers. This must be called after the change has been queued in the {@link WriteBehindQueue}.
+     *
+     * @param event The event to send.
+     */
+    void publish(@NotNull InvalidationEvent event);
+
+    /**
+     * Registers a subscriber for the events of the other servers.
+     *
+     * @param subscriber The subscriber. It returns a future which is completed when the event has been applied.
+     */
+    void subscribe(@NotNull Function<InvalidationEvent, CompletableFuture<Void>> subscriber);
+
+    /**
+     * Applies all changes of other servers which have not been received yet, without waiting for the next scheduled poll.
+     *
+     * @return A future which is completed with the amount of applied changes, after they have been applied.
+     */
+    @NotNull CompletableFuture<Integer> synchronize();
+
+    /**
+     * @return The revision of the latest change which has been received.
+     */
+    long getRevision();
+
+    /**
+     * Starts receiving events. This is called after all caches have been loaded.
+     */
+    void start();
+
+    /**
+     * Stops receiving events. This is called when the plugin is disabled.
+     */
+    void shutdown();
+}
@@ -0,0 +1,68 @@
+package io.github.rysefoxx.database;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * A change of a cached row, which is sent to the other servers over the {@link InvalidationBus}. <br>
+ * The event only names the changed rows. The receiving servers read the current state of those rows from the database,
+ * so events can be applied in any order and more than once.
+ *
+ * @param type  The kind of the changed rows.
+ * @param group The name of the group the rows belong to.
+ * @param uuid  The {@link UUID} of the member, only set for {@link Type#MEMBER}.
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public record InvalidationEvent(@NotNull Type type, @NotNull String group, @Nullable UUID uuid) {
+
+    /**
+     * Creates an event for the row of a group, e.g. when it was created, deleted or its prefix or weight changed.
+     *
+     * @param group The name of the group.
+     * @return The event.
+     */
+    public static @NotNull InvalidationEvent group(@NotNull String group) {
+        return new InvalidationEvent(Type.GROUP, group, null);
+    }
+
+    /**
+     * Creates an event for the permissions of a group.
+     *
+     * @param group The name of the group.
+     * @return The event.
+     */
+    public static @NotNull InvalidationEvent permissions(@NotNull String group) {
+        return new InvalidationEvent(Type.PERMISSION, group, null);
+    }
+
+    /**
+     * Creates an event for the parents of a group.
+     *
+     * @param group The name of the group.
+     * @return The event.
+     */
+    public static @NotNull InvalidationEvent parents(@NotNull String group) {
+        return new InvalidationEvent(Type.PARENT, group, null);
+    }
+
+    /**
+     * Creates an event for the memberships of a player.
+     *
+     * @param group The name of the group whose membership changed.
+     * @param uuid  The {@link UUID} of the member.
+     * @return The event.
+     */
+    public static @NotNull InvalidationEvent member(@NotNull String group, @NotNull UUID uuid) {
+        return new InvalidationEvent(Type.MEMBER, group, uuid);
+    }
+
+    public enum Type {
+        GROUP,
+        PERMISSION,
+        PARENT,
+        MEMBER
+    }
+}
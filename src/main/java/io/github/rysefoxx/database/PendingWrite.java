@@ -0,0 +1,17 @@
+package io.github.rysefoxx.database;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A mutation which is queued in the {@link WriteBehindQueue}.
+ *
+ * @param key       The primary key of the changed row, e.g. {@code member:<uuid>:<group>}. Writes with the same key and query are coalesced.
+ * @param operation The name of the operation in the metrics, e.g. {@code member_save}.
+ * @param query     The query to execute. Writes with the same query are executed as one batch.
+ * @param barrier   Whether other writes may not be reordered across this write. This is used for the groups table, because the other tables reference it.
+ * @param binder    Binds the parameters of the query.
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public record PendingWrite(@NotNull String key, @NotNull String operation, @NotNull String query, boolean barrier, @NotNull StatementBinder binder) {
+}
@@ -0,0 +1,388 @@
+package io.github.rysefoxx.database;
+
+import io.github.rysefoxx.metrics.LatencyHistogram;
+import io.github.rysefoxx.metrics.MetricsSource;
+import io.github.rysefoxx.metrics.MetricsWriter;
+import lombok.Getter;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntToLongFunction;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the time to get a connection from the pool and the time and rows of every prepared statement per query. <br>
+ * The connections of the {@link ConnectionManager} are wrapped in proxies, so every query of the plugin is measured without changing the callers.
+ * Queries are grouped by their template, which is the SQL with the placeholders, so the values of the parameters are never stored. <br>
+ * For a query, the time includes reading the rows, because the rows of a streaming statement are only fetched while they are read.
+ * Statements and connection waits which take longer than the threshold are logged and the latest ones are kept for {@code /group debug queries}. <br>
+ * Every call on a statement and its rows goes through a proxy, which costs time on large reads like the startup, so profiling is disabled by default.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class QueryProfiler implements MetricsSource {
+
+    private static final long DEFAULT_SLOW_THRESHOLD_MILLIS = 250L;
+    private static final int DEFAULT_SLOW_HISTORY_SIZE = 20;
+
+    /**
+     * The maximum amount of measured templates. Further templates are measured together.
+     */
+    private static final int MAX_TEMPLATES = 200;
+    private static final String OTHER_TEMPLATE = "other";
+    private static final String ACQUIRE_TEMPLATE = "<connection acquire>";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Long lists of placeholders, e.g. of an IN clause with one placeholder per value, are collapsed so they do not create a template per length.
+     */
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?){9,}");
+
+    private final Logger logger;
+
+    /**
+     * Whether connections are wrapped. Without profiling, which is the default, the connections of the pool are returned as they are.
+     */
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final long slowThresholdMillis;
+    private final long slowThresholdNanos;
+    private final int slowHistorySize;
+
+    /**
+     * The time threads waited for a connection from the pool.
+     */
+    @Getter
+    private final LatencyHistogram acquireLatency = new LatencyHistogram();
+    private final Map<String, TemplateStats> templates = new ConcurrentHashMap<>();
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+    private final LongAdder slowCount = new LongAdder();
+
+    /**
+     * @param logger The logger for slow statements.
+     * @param config The section {@code profiling} of the database.yml or null for the defaults.
+     */
+    public QueryProfiler(@NotNull Logger logger, @Nullable ConfigurationSection config) {
+        this.logger = logger;
+        this.enabled = config != null && config.getBoolean("enabled", false);
+        this.slowThresholdMillis = Math.max(0L, config == null ? DEFAULT_SLOW_THRESHOLD_MILLIS : config.getLong("slow-threshold-millis", DEFAULT_SLOW_THRESHOLD_MILLIS));
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(this.slowThresholdMillis);
+        this.slowHistorySize = Math.max(1, config == null ? DEFAULT_SLOW_HISTORY_SIZE : config.getInt("slow-history-size", DEFAULT_SLOW_HISTORY_SIZE));
+    }
+
+    /**
+     * Records the wait for a connection and wraps it, so its prepared statements are measured.
+     *
+     * @param connection   The connection of the pool.
+     * @param acquireNanos The time it took to get the connection in nanoseconds.
+     * @return The wrapped connection or the connection itself if profiling is disabled.
+     */
+    public @NotNull Connection wrap(@NotNull Connection connection, long acquireNanos) {
+        if (!this.enabled) return connection;
+
+        this.acquireLatency.record(acquireNanos);
+        if (acquireNanos >= this.slowThresholdNanos) reportSlow(ACQUIRE_TEMPLATE, acquireNanos, -1, 0);
+
+        return (Connection) Proxy.newProxyInstance(QueryProfiler.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    /**
+     * @return The latest slow statements, the newest first.
+     */
+    public @NotNull List<SlowQuery> getSlowQueries() {
+        synchronized (this.slowQueries) {
+            return new ArrayList<>(this.slowQueries);
+        }
+    }
+
+    @Override
+    public void collect(@NotNull MetricsWriter writer) {
+        if (!this.enabled) return;
+
+        writer.histogram("legend_db_acquire_seconds", "Time threads waited for a connection from the pool.", this.acquireLatency);
+        writer.counter("legend_db_slow_queries_total", "Statements and connection waits which exceeded the slow threshold.", this.slowCount.sum());
+        this.templates.forEach((template, stats) -> {
+            writer.histogram("legend_db_query_seconds", "Time of prepared statements per query, including reading the rows.", stats.latency, "query", template);
+            writer.counter("legend_db_query_rows_total", "Rows read or changed by prepared statements per query.", stats.rows.sum(), "query", template);
+        });
+    }
+
+    /**
+     * Records a finished statement.
+     *
+     * @param template   The template of the query.
+     * @param nanos      The time of the statement in nanoseconds.
+     * @param rows       The read or changed rows or -1 if they are unknown.
+     * @param parameters The amount of bound parameters.
+     */
+    private void record(@NotNull String template, long nanos, long rows, int parameters) {
+        TemplateStats stats = this.templates.get(template);
+        if (stats == null) {
+            String key = this.templates.size() < MAX_TEMPLATES ? template : OTHER_TEMPLATE;
+            stats = this.templates.computeIfAbsent(key, ignored -> new TemplateStats());
+        }
+        stats.latency.record(nanos);
+        if (rows > 0) stats.rows.add(rows);
+
+        if (nanos >= this.slowThresholdNanos) reportSlow(template, nanos, rows, parameters);
+    }
+
+    /**
+     * Logs a slow statement and keeps it for {@code /group debug queries}. Only the template is logged, the parameters are redacted.
+     *
+     * @param template   The template of the query.
+     * @param nanos      The time of the statement in nanoseconds.
+     * @param rows       The read or changed rows or -1 if they are unknown.
+     * @param parameters The amount of bound parameters.
+     */
+    private void reportSlow(@NotNull String template, long nanos, long rows, int parameters) {
+        SlowQuery slowQuery = new SlowQuery(LocalDateTime.now(), template, TimeUnit.NANOSECONDS.toMillis(nanos), rows, parameters, Thread.currentThread().getName());
+        this.slowCount.increment();
+        synchronized (this.slowQueries) {
+            this.slowQueries.addFirst(slowQuery);
+            while (this.slowQueries.size() > this.slowHistorySize) {
+                this.slowQueries.removeLast();
+            }
+        }
+
+        this.logger.warning("Slow query on " + slowQuery.thread() + " took " + slowQuery.millis() + "ms"
+                + (rows < 0 ? "" : " (" + rows + " rows)") + ": " + template
+                + (parameters == 0 ? "" : " [" + parameters + " parameters redacted]"));
+    }
+
+    /**
+     * @param sql The SQL of a statement.
+     * @return The SQL without redundant whitespace and with long placeholder lists collapsed.
+     */
+    private static @NotNull String toTemplate(@NotNull String sql) {
+        String template = WHITESPACE.matcher(sql).replaceAll(" ").trim();
+        return PLACEHOLDER_LIST.matcher(template).replaceAll("?, ...");
+    }
+
+    /**
+     * Calls a method of the wrapped object and rethrows its exception instead of the reflection wrapper.
+     */
+    private static Object invoke(@NotNull Object target, @NotNull Method method, Object @Nullable [] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A statement which took longer than the threshold.
+     *
+     * @param time       The point in time when the statement finished.
+     * @param template   The template of the query, without the values of the parameters.
+     * @param millis     The time of the statement in milliseconds.
+     * @param rows       The read or changed rows or -1 if they are unknown.
+     * @param parameters The amount of redacted parameters.
+     * @param thread     The name of the thread which ran the statement.
+     */
+    public record SlowQuery(@NotNull LocalDateTime time, @NotNull String template, long millis, long rows, int parameters, @NotNull String thread) {
+    }
+
+    /**
+     * The measured statements of one template.
+     */
+    private static final class TemplateStats {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+    }
+
+    /**
+     * Wraps the prepared statements of a connection. Every other method is passed to the connection.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private ConnectionHandler(@NotNull Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("equals")) return proxy == args[0];
+            if (method.getName().equals("hashCode")) return System.identityHashCode(proxy);
+
+            Object result = QueryProfiler.invoke(this.connection, method, args);
+            if (!method.getName().equals("prepareStatement") || !(result instanceof PreparedStatement statement)) return result;
+
+            return Proxy.newProxyInstance(QueryProfiler.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                    new StatementHandler(statement, toTemplate((String) args[0])));
+        }
+    }
+
+    /**
+     * Measures the executions of a prepared statement. Every other method is passed to the statement.
+     */
+    private final class StatementHandler implements InvocationHandler {
+
+        private final PreparedStatement statement;
+        private final String template;
+        private int parameters;
+        private int batchSize;
+        private ResultSetHandler openResultSet;
+
+        private StatementHandler(@NotNull PreparedStatement statement, @NotNull String template) {
+            this.statement = statement;
+            this.template = template;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) return proxy == args[0];
+            if (name.equals("hashCode")) return System.identityHashCode(proxy);
+
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                this.parameters = Math.max(this.parameters, index);
+            } else if (name.equals("clearParameters")) {
+                this.parameters = 0;
+            } else if (name.equals("addBatch") && args == null) {
+                this.batchSize++;
+            } else if (name.equals("clearBatch")) {
+                this.batchSize = 0;
+            } else if (name.equals("close")) {
+                finishResultSet();
+            } else if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+
+            return QueryProfiler.invoke(this.statement, method, args);
+        }
+
+        /**
+         * Runs and measures an execution. The rows of a query are counted while they are read, so the query is recorded when its result set is closed.
+         */
+        private Object execute(@NotNull Method method, Object[] args) throws Throwable {
+            finishResultSet();
+            // Statement.execute(String) and its variants run the given SQL instead of the prepared one.
+            String executed = args != null && args.length > 0 && args[0] instanceof String sql ? toTemplate(sql) : this.template;
+
+            long startedAt = System.nanoTime();
+            Object result;
+            try {
+                result = QueryProfiler.invoke(this.statement, method, args);
+            } catch (Throwable throwable) {
+                record(executed, System.nanoTime() - startedAt, -1, this.parameters);
+                throw throwable;
+            }
+            long nanos = System.nanoTime() - startedAt;
+
+            if (result instanceof ResultSet resultSet) {
+                this.openResultSet = new ResultSetHandler(resultSet, executed, nanos, this.parameters);
+                return Proxy.newProxyInstance(QueryProfiler.class.getClassLoader(), new Class<?>[]{ResultSet.class}, this.openResultSet);
+            }
+
+            record(executed, nanos, rows(result), this.parameters);
+            if (method.getName().contains("Batch")) this.batchSize = 0;
+            return result;
+        }
+
+        /**
+         * @param result The result of an execution.
+         * @return The changed rows or -1 if they are unknown.
+         */
+        private long rows(@Nullable Object result) {
+            if (result instanceof Integer count) return Math.max(0, count);
+            if (result instanceof Long count) return Math.max(0, count);
+            if (result instanceof int[] counts) return sumBatch(counts.length, index -> counts[index]);
+            if (result instanceof long[] counts) return sumBatch(counts.length, index -> counts[index]);
+            return -1;
+        }
+
+        /**
+         * Sums the update counts of a batch. Drivers may not report the count of each statement, in which case every statement is counted as one row.
+         */
+        private long sumBatch(int length, @NotNull IntToLongFunction count) {
+            long rows = 0;
+            for (int i = 0; i < length; i++) {
+                long value = count.applyAsLong(i);
+                rows += value == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, value);
+            }
+            return rows;
+        }
+
+        private void finishResultSet() {
+            if (this.openResultSet == null) return;
+
+            this.openResultSet.finish();
+            this.openResultSet = null;
+        }
+    }
+
+    /**
+     * Counts the rows of a query and the time it takes to read them. Every other method is passed to the result set.
+     */
+    private final class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet resultSet;
+        private final String template;
+        private final int parameters;
+        private long nanos;
+        private long rows;
+        private boolean finished;
+
+        private ResultSetHandler(@NotNull ResultSet resultSet, @NotNull String template, long executeNanos, int parameters) {
+            this.resultSet = resultSet;
+            this.template = template;
+            this.nanos = executeNanos;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) return proxy == args[0];
+            if (name.equals("hashCode")) return System.identityHashCode(proxy);
+
+            if (name.equals("next")) {
+                long startedAt = System.nanoTime();
+                Object result = QueryProfiler.invoke(this.resultSet, method, args);
+                this.nanos += System.nanoTime() - startedAt;
+                if (Boolean.TRUE.equals(result)) this.rows++;
+                return result;
+            }
+
+            if (name.equals("close")) finish();
+            return QueryProfiler.invoke(this.resultSet, method, args);
+        }
+
+        /**
+         * Records the query once, when the result set or its statement is closed.
+         */
+        private void finish() {
+            if (this.finished) return;
+
+            this.finished = true;
+            record(this.template, this.nanos, this.rows, this.parameters);
+        }
+    }
+}
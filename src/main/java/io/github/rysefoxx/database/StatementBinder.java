@@ -0,0 +1,24 @@
+package io.github.rysefoxx.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds the parameters of a {@link PendingWrite} to a prepared statement.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+@FunctionalInterface
+public interface StatementBinder {
+
+    /**
+     * Sets the parameters of the statement.
+     *
+     * @param statement The statement to bind the parameters to.
+     * @throws SQLException If a parameter could not be set.
+     */
+    void bind(@NotNull PreparedStatement statement) throws SQLException;
+}
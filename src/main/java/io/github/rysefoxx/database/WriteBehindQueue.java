@@ -0,0 +1,367 @@
+package io.github.rysefoxx.database;
+
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.metrics.LatencyHistogram;
+import io.github.rysefoxx.metrics.MetricsSource;
+import io.github.rysefoxx.metrics.MetricsWriter;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+/**
+ * Collects all database mutations and writes them in batches. <br>
+ * A write replaces the previous write with the same key, as long as both use the same query and no barrier was queued in between,
+ * so only the latest state of a row is written.
+ * The queue is flushed when it reaches the configured size, after the configured interval and when the plugin is disabled.
+ * Every flush runs in one transaction and executes writes with the same query as one JDBC batch. <br>
+ * The order of the writes for a key is always preserved. <br>
+ * The latency of the statements is recorded per {@link PendingWrite#operation()}.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class WriteBehindQueue implements MetricsSource {
+
+    private static final int DEFAULT_FLUSH_SIZE = 500;
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000L;
+
+    private final PlayLegendPermission plugin;
+    private final ConnectionManager connectionManager;
+    private final ScheduledExecutorService executorService;
+    private final int flushSize;
+
+    private final Object queueLock = new Object();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private List<PendingWrite> pending = new ArrayList<>();
+    private Map<String, Integer> latestIndexByKey = new HashMap<>();
+    private int lastBarrierIndex = -1;
+
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> statementLatency = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> writtenRows = new ConcurrentHashMap<>();
+    private final LongAdder failedWrites = new LongAdder();
+
+    public WriteBehindQueue(@NotNull PlayLegendPermission plugin) {
+        this.plugin = plugin;
+        this.connectionManager = plugin.getConnectionManager();
+
+        YamlConfiguration config = this.connectionManager.getConfig();
+        this.flushSize = Math.max(1, config.getInt("write-behind.flush-size", DEFAULT_FLUSH_SIZE));
+        long flushInterval = Math.max(1L, config.getLong("write-behind.flush-interval-millis", DEFAULT_FLUSH_INTERVAL_MILLIS));
+
+        this.executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PlayLegendPermission-WriteBehind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executorService.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a write. If the latest queued write for the same key uses the same query and no barrier was queued after it, it is replaced by the new one.
+     *
+     * @param write The write to queue.
+     */
+    public void enqueue(@NotNull PendingWrite write) {
+        enqueueAll(List.of(write));
+    }
+
+    /**
+     * Queues several writes at once. They are added together, so the next flush writes all of them in the same transaction.
+     *
+     * @param writes The writes to queue, in the order they are executed.
+     */
+    public void enqueueAll(@NotNull List<PendingWrite> writes) {
+        int size;
+        synchronized (this.queueLock) {
+            for (PendingWrite write : writes) {
+                add(write);
+            }
+            size = this.pending.size();
+        }
+
+        if (size < this.flushSize || !this.flushRequested.compareAndSet(false, true)) return;
+
+        try {
+            this.executorService.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // The queue is shut down, the remaining writes are flushed by shutdown().
+            this.flushRequested.set(false);
+        }
+    }
+
+    /**
+     * Adds a write to the queue. If the latest queued write for the same key uses the same query, it is replaced by the new one. <br>
+     * A write is never moved in front of a barrier, e.g. a member which is saved again after its group was deleted and created again
+     * would otherwise be written before the delete and removed by it. Therefore, the write is appended if a barrier was queued after
+     * the previous write or if the write is a barrier itself. The caller has to hold the queue lock.
+     *
+     * @param write The write to add.
+     */
+    private void add(@NotNull PendingWrite write) {
+        Integer index = this.latestIndexByKey.get(write.key());
+        if (index != null && index > this.lastBarrierIndex && !write.barrier() && this.pending.get(index).query().equals(write.query())) {
+            this.pending.set(index, write);
+            return;
+        }
+
+        if (write.barrier()) this.lastBarrierIndex = this.pending.size();
+        this.latestIndexByKey.put(write.key(), this.pending.size());
+        this.pending.add(write);
+    }
+
+    /**
+     * Writes all queued writes in one transaction. Flushes never run concurrently, so the order between two flushes is preserved as well.
+     */
+    public void flush() {
+        synchronized (this.flushLock) {
+            this.flushRequested.set(false);
+
+            List<PendingWrite> writes;
+            synchronized (this.queueLock) {
+                if (this.pending.isEmpty()) return;
+
+                writes = this.pending;
+                this.pending = new ArrayList<>();
+                this.latestIndexByKey = new HashMap<>();
+                this.lastBarrierIndex = -1;
+            }
+
+            long startedAt = System.nanoTime();
+            write(writes);
+            this.flushLatency.record(System.nanoTime() - startedAt);
+        }
+    }
+
+    /**
+     * Writes the queued writes up to the last write whose key matches, so a following read sees them. The writes before it are written as well,
+     * because a write may depend on them, e.g. a member on its group. If no write matches, nothing is written and no lock is held for the database.
+     *
+     * @param keyFilter Matches the keys of the writes which have to be written.
+     */
+    public void flush(@NotNull Predicate<String> keyFilter) {
+        synchronized (this.queueLock) {
+            if (!containsKey(keyFilter)) return;
+        }
+
+        synchronized (this.flushLock) {
+            List<PendingWrite> writes;
+            synchronized (this.queueLock) {
+                int last = this.pending.size() - 1;
+                while (last >= 0 && !keyFilter.test(this.pending.get(last).key())) {
+                    last--;
+                }
+                // A concurrent flush may have written the matching writes in the meantime.
+                if (last < 0) return;
+
+                writes = new ArrayList<>(this.pending.subList(0, last + 1));
+                this.pending = new ArrayList<>(this.pending.subList(last + 1, this.pending.size()));
+                this.latestIndexByKey = new HashMap<>();
+                this.lastBarrierIndex = -1;
+                for (int i = 0; i < this.pending.size(); i++) {
+                    PendingWrite write = this.pending.get(i);
+                    this.latestIndexByKey.put(write.key(), i);
+                    if (write.barrier()) this.lastBarrierIndex = i;
+                }
+            }
+
+            long startedAt = System.nanoTime();
+            write(writes);
+            this.flushLatency.record(System.nanoTime() - startedAt);
+        }
+    }
+
+    /**
+     * The caller has to hold the queue lock.
+     *
+     * @param keyFilter Matches the keys of the writes.
+     * @return Whether a queued write matches.
+     */
+    private boolean containsKey(@NotNull Predicate<String> keyFilter) {
+        for (String key : this.latestIndexByKey.keySet()) {
+            if (keyFilter.test(key)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stops the scheduled flushes and writes everything that is still queued. This is called when the plugin is disabled.
+     */
+    public void shutdown() {
+        this.executorService.shutdown();
+        try {
+            if (!this.executorService.awaitTermination(10, TimeUnit.SECONDS)) {
+                this.plugin.getLogger().warning("The write-behind queue did not finish in time!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+    }
+
+    /**
+     * @return The amount of queued writes.
+     */
+    public int size() {
+        synchronized (this.queueLock) {
+            return this.pending.size();
+        }
+    }
+
+    @Override
+    public void collect(@NotNull MetricsWriter writer) {
+        writer.gauge("legend_write_behind_pending", "Writes waiting for the next flush.", size());
+        writer.histogram("legend_write_behind_flush_seconds", "Time of a flush of the write-behind queue.", this.flushLatency);
+        writer.counter("legend_db_failed_writes_total", "Writes which could not be written to the database.", this.failedWrites.sum());
+        this.statementLatency.forEach((operation, histogram) ->
+                writer.histogram("legend_db_statement_seconds", "Time of a write statement or batch per operation.", histogram, "operation", operation));
+        this.writtenRows.forEach((operation, rows) ->
+                writer.counter("legend_db_statement_rows_total", "Rows sent to the database per operation, including retried rows.", rows.sum(), "operation", operation));
+    }
+
+    /**
+     * Records the execution of a statement or batch.
+     *
+     * @param operation The operation of the writes.
+     * @param rows      The amount of writes in the batch.
+     * @param nanos     The time of the execution in nanoseconds.
+     */
+    private void recordStatement(@NotNull String operation, int rows, long nanos) {
+        this.statementLatency.computeIfAbsent(operation, key -> new LatencyHistogram()).record(nanos);
+        this.writtenRows.computeIfAbsent(operation, key -> new LongAdder()).add(rows);
+    }
+
+    /**
+     * Executes the writes in one transaction. If the transaction fails, it is rolled back and the writes are retried one by one,
+     * so a single invalid write does not discard the others.
+     *
+     * @param writes The writes in the order they were queued.
+     */
+    private void write(@NotNull List<PendingWrite> writes) {
+        try (Connection connection = this.connectionManager.getConnection()) {
+            if (connection == null) {
+                this.plugin.getLogger().severe("Failed to flush " + writes.size() + " writes, because the connection is null!");
+                this.failedWrites.add(writes.size());
+                return;
+            }
+
+            connection.setAutoCommit(false);
+            try {
+                int segmentStart = 0;
+                for (int i = 0; i <= writes.size(); i++) {
+                    if (i < writes.size() && !writes.get(i).barrier()) continue;
+
+                    executeBatched(connection, reorderSegment(writes.subList(segmentStart, i)));
+                    if (i < writes.size()) executeBatched(connection, List.of(writes.get(i)));
+                    segmentStart = i + 1;
+                }
+
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                this.plugin.getLogger().log(Level.WARNING, "Failed to flush " + writes.size() + " writes as batch, retrying them one by one!", e);
+                connection.setAutoCommit(true);
+                executeIndividually(connection, writes);
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "Failed to flush " + writes.size() + " writes to the database!", e);
+            this.failedWrites.add(writes.size());
+        }
+    }
+
+    /**
+     * Executes every write on its own in the order they were queued.
+     *
+     * @param connection The connection in auto-commit mode.
+     * @param writes     The writes to execute.
+     */
+    private void executeIndividually(@NotNull Connection connection, @NotNull List<PendingWrite> writes) {
+        for (PendingWrite write : writes) {
+            try (PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection, write.query())) {
+                if (preparedStatement == null) {
+                    this.plugin.getLogger().severe("Failed to write " + write.key() + ", because the prepared statement is null!");
+                    this.failedWrites.increment();
+                    continue;
+                }
+
+                write.binder().bind(preparedStatement);
+                long startedAt = System.nanoTime();
+                preparedStatement.executeUpdate();
+                recordStatement(write.operation(), 1, System.nanoTime() - startedAt);
+            } catch (SQLException e) {
+                this.plugin.getLogger().log(Level.SEVERE, "Failed to write " + write.key() + " to the database!", e);
+                this.failedWrites.increment();
+            }
+        }
+    }
+
+    /**
+     * Reorders the writes between two barriers so that writes with the same query are next to each other. <br>
+     * Writes for different keys are independent, so only the order per key has to be kept. Every write gets the number of writes
+     * for its key before it as generation. Sorting by generation first keeps the order per key.
+     *
+     * @param segment The writes between two barriers.
+     * @return The reordered writes.
+     */
+    private @NotNull List<PendingWrite> reorderSegment(@NotNull List<PendingWrite> segment) {
+        if (segment.size() < 2) return segment;
+
+        Map<String, Integer> generations = new HashMap<>();
+        List<Map.Entry<Integer, PendingWrite>> ordered = new ArrayList<>(segment.size());
+        for (PendingWrite write : segment) {
+            int generation = generations.merge(write.key(), 1, Integer::sum) - 1;
+            ordered.add(Map.entry(generation, write));
+        }
+
+        // The sort is stable, so writes with the same generation and query stay in their original order.
+        ordered.sort(Map.Entry.<Integer, PendingWrite>comparingByKey()
+                .thenComparing(entry -> entry.getValue().query()));
+        return ordered.stream().map(Map.Entry::getValue).toList();
+    }
+
+    /**
+     * Executes the writes. Consecutive writes with the same query are executed as one batch.
+     *
+     * @param connection The connection of the transaction.
+     * @param writes     The writes to execute.
+     * @throws SQLException If a write fails.
+     */
+    private void executeBatched(@NotNull Connection connection, @NotNull List<PendingWrite> writes) throws SQLException {
+        int index = 0;
+        while (index < writes.size()) {
+            String query = writes.get(index).query();
+            String operation = writes.get(index).operation();
+            int batchStart = index;
+
+            try (PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection, query)) {
+                if (preparedStatement == null) {
+                    throw new SQLException("The prepared statement for " + query + " is null!");
+                }
+
+                while (index < writes.size() && writes.get(index).query().equals(query)) {
+                    writes.get(index).binder().bind(preparedStatement);
+                    preparedStatement.addBatch();
+                    index++;
+                }
+
+                long startedAt = System.nanoTime();
+                preparedStatement.executeBatch();
+                recordStatement(operation, index - batchStart, System.nanoTime() - startedAt);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.rysefoxx.database.dialect;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The dialect of an embedded H2 database, which is stored in the plugin folder. It is meant for a single server,
+ * as every query runs in the server process without a round-trip over the network. <br>
+ * H2 has a native uuid type and uses {@code MERGE} instead of {@code ON DUPLICATE KEY UPDATE}.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class H2Dialect implements StorageDialect {
+
+    private static final String DEFAULT_FILE = "legend";
+
+    @Override
+    public @NotNull String getName() {
+        return "h2";
+    }
+
+    @Override
+    public @NotNull String getDriverClassName() {
+        return "org.h2.Driver";
+    }
+
+    @Override
+    public @NotNull String buildJdbcUrl(@NotNull YamlConfiguration config, @NotNull File dataFolder) {
+        File file = new File(dataFolder, config.getString("h2.file", DEFAULT_FILE));
+        // GROUPS is a keyword in H2, but the name of a table here.
+        return "jdbc:h2:file:" + file.getAbsolutePath() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=GROUPS";
+    }
+
+    @Override
+    public boolean isEmbedded() {
+        return true;
+    }
+
+    @Override
+    public @NotNull String getMigrationFolder() {
+        return "migrations/h2/";
+    }
+
+    @Override
+    public @NotNull String getCreateSchemaQuery() {
+        return "CREATE SCHEMA IF NOT EXISTS legend";
+    }
+
+    @Override
+    public @NotNull String upsert(@NotNull String table, @NotNull List<String> columns, @NotNull String values, @NotNull List<String> keyColumns) {
+        return "MERGE INTO " + table + " (" + String.join(", ", columns) + ") KEY (" + String.join(", ", keyColumns) + ") VALUES (" + values + ")";
+    }
+
+    @Override
+    public @NotNull String insertIgnore(@NotNull String table, @NotNull List<String> columns, @NotNull String values) {
+        // All columns form the key, so merging an existing row does not change it.
+        return upsert(table, columns, values, columns);
+    }
+
+    @Override
+    public void setUUID(@NotNull PreparedStatement statement, int index, @Nullable UUID uuid) throws SQLException {
+        if (uuid == null) statement.setNull(index, Types.OTHER);
+        else statement.setObject(index, uuid);
+    }
+
+    @Override
+    public @Nullable UUID getUUID(@NotNull ResultSet resultSet, @NotNull String column) throws SQLException {
+        return resultSet.getObject(column, UUID.class);
+    }
+}
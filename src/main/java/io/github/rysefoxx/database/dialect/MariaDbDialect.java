@@ -0,0 +1,77 @@
+package io.github.rysefoxx.database.dialect;
+
+import io.github.rysefoxx.util.UUIDConverter;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * The dialect of MariaDB. Uuids are stored as BINARY(16) and upserts use {@code ON DUPLICATE KEY UPDATE}.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class MariaDbDialect implements StorageDialect {
+
+    @Override
+    public @NotNull String getName() {
+        return "mariadb";
+    }
+
+    @Override
+    public @NotNull String getDriverClassName() {
+        return "org.mariadb.jdbc.Driver";
+    }
+
+    @Override
+    public @NotNull String buildJdbcUrl(@NotNull YamlConfiguration config, @NotNull File dataFolder) {
+        return String.format("jdbc:%s://%s:%s/%s?useSSL=false", getName(), config.getString("host"), config.getString("port"), config.getString("database"));
+    }
+
+    @Override
+    public boolean isEmbedded() {
+        return false;
+    }
+
+    @Override
+    public @NotNull String getMigrationFolder() {
+        return "migrations/" + getName() + "/";
+    }
+
+    @Override
+    public @NotNull String getCreateSchemaQuery() {
+        return "CREATE DATABASE IF NOT EXISTS legend";
+    }
+
+    @Override
+    public @NotNull String upsert(@NotNull String table, @NotNull List<String> columns, @NotNull String values, @NotNull List<String> keyColumns) {
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + values + ") ON DUPLICATE KEY UPDATE " +
+                columns.stream()
+                        .filter(column -> !keyColumns.contains(column))
+                        .map(column -> column + " = VALUES(" + column + ")")
+                        .collect(Collectors.joining(", "));
+    }
+
+    @Override
+    public @NotNull String insertIgnore(@NotNull String table, @NotNull List<String> columns, @NotNull String values) {
+        return "INSERT IGNORE INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + values + ")";
+    }
+
+    @Override
+    public void setUUID(@NotNull PreparedStatement statement, int index, @Nullable UUID uuid) throws SQLException {
+        statement.setBytes(index, UUIDConverter.toBytes(uuid));
+    }
+
+    @Override
+    public @Nullable UUID getUUID(@NotNull ResultSet resultSet, @NotNull String column) throws SQLException {
+        return UUIDConverter.fromBytes(resultSet.getBytes(column));
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.rysefoxx.database.dialect;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The dialect of MySQL 8. It stores the data like MariaDB, but uses the MySQL driver and refers to the new row of an upsert by an alias,
+ * because the {@code VALUES()} function is deprecated since MySQL 8.0.20. <br>
+ * Connector/J ignores the fetch size and loads the whole result into memory, unless cursor fetching is enabled in the url.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class MySqlDialect extends MariaDbDialect {
+
+    @Override
+    public @NotNull String getName() {
+        return "mysql";
+    }
+
+    @Override
+    public @NotNull String getDriverClassName() {
+        return "com.mysql.cj.jdbc.Driver";
+    }
+
+    @Override
+    public @NotNull String buildJdbcUrl(@NotNull YamlConfiguration config, @NotNull File dataFolder) {
+        return super.buildJdbcUrl(config, dataFolder) + "&useCursorFetch=true";
+    }
+
+    @Override
+    public @NotNull String upsert(@NotNull String table, @NotNull List<String> columns, @NotNull String values, @NotNull List<String> keyColumns) {
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + values + ") AS new ON DUPLICATE KEY UPDATE " +
+                columns.stream()
+                        .filter(column -> !keyColumns.contains(column))
+                        .map(column -> column + " = new." + column)
+                        .collect(Collectors.joining(", "));
+    }
+}
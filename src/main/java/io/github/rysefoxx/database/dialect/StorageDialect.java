@@ -0,0 +1,113 @@
+package io.github.rysefoxx.database.dialect;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Supplies everything which differs between the supported database engines: the connection, the migration scripts, the syntax of upserts and how uuids are stored. <br>
+ * The managers only write standard SQL themselves and ask the dialect for the rest, so every engine runs the same code.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public interface StorageDialect {
+
+    /**
+     * @return The name of the dialect, as it is used as type in the database.yml.
+     */
+    @NotNull String getName();
+
+    /**
+     * @return The class name of the JDBC driver.
+     */
+    @NotNull String getDriverClassName();
+
+    /**
+     * @param config     The database config.
+     * @param dataFolder The folder of the plugin, in which embedded databases are stored.
+     * @return The jdbc url.
+     */
+    @NotNull String buildJdbcUrl(@NotNull YamlConfiguration config, @NotNull File dataFolder);
+
+    /**
+     * An embedded database runs in the server process and stores its data in a file, which only this server can open.
+     * It does not need a host and no lock against other servers.
+     *
+     * @return true if the database is embedded, false if it is a server.
+     */
+    boolean isEmbedded();
+
+    /**
+     * @return The folder in the resources which contains the migration scripts of the dialect.
+     */
+    @NotNull String getMigrationFolder();
+
+    /**
+     * @return The statement which creates the legend schema if it does not exist.
+     */
+    @NotNull String getCreateSchemaQuery();
+
+    /**
+     * Builds an insert which updates the existing row instead, if a row with the same key exists.
+     *
+     * @param table      The table, including the schema.
+     * @param columns    The columns to insert.
+     * @param values     The values of the columns, e.g. {@code ?, ?}. Subqueries are allowed.
+     * @param keyColumns The columns of the unique key. All other columns are updated.
+     * @return The query.
+     */
+    @NotNull String upsert(@NotNull String table, @NotNull List<String> columns, @NotNull String values, @NotNull List<String> keyColumns);
+
+    /**
+     * Builds an insert which does nothing, if the same row exists.
+     *
+     * @param table   The table, including the schema.
+     * @param columns The columns to insert, which form the unique key.
+     * @param values  The values of the columns, e.g. {@code ?, ?}. Subqueries are allowed.
+     * @return The query.
+     */
+    @NotNull String insertIgnore(@NotNull String table, @NotNull List<String> columns, @NotNull String values);
+
+    /**
+     * Binds a uuid in the format the dialect stores it.
+     *
+     * @param statement The statement.
+     * @param index     The index of the parameter.
+     * @param uuid      The uuid or null.
+     * @throws SQLException If the parameter could not be set.
+     */
+    void setUUID(@NotNull PreparedStatement statement, int index, @Nullable UUID uuid) throws SQLException;
+
+    /**
+     * Reads a uuid in the format the dialect stores it.
+     *
+     * @param resultSet The result set.
+     * @param column    The name of the column.
+     * @return The uuid or null if the column is null.
+     * @throws SQLException If the column could not be read.
+     */
+    @Nullable UUID getUUID(@NotNull ResultSet resultSet, @NotNull String column) throws SQLException;
+
+    /**
+     * @param type The type from the database.yml.
+     * @return The dialect of the type.
+     * @throws IllegalArgumentException If the type is unknown.
+     */
+    static @NotNull StorageDialect fromType(@NotNull String type) {
+        return switch (type.toLowerCase(Locale.ROOT)) {
+            case "mariadb" -> new MariaDbDialect();
+            case "mysql" -> new MySqlDialect();
+            case "h2" -> new H2Dialect();
+            default -> throw new IllegalArgumentException("Unknown database type " + type + "!");
+        };
+    }
+}
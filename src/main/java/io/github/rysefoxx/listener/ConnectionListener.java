@@ -4,6 +4,7 @@ import io.github.rysefoxx.PlayLegendPermission;
 import io.github.rysefoxx.manager.GroupMemberManager;
 import io.github.rysefoxx.manager.GroupPermissionManager;
 import io.github.rysefoxx.manager.LanguageManager;
+import io.github.rysefoxx.manager.ProfileManager;
 import io.github.rysefoxx.manager.ScoreboardManager;
 import io.github.rysefoxx.model.GroupMemberModel;
 import io.github.rysefoxx.model.GroupModel;
@@ -14,11 +15,13 @@ import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
 import java.util.logging.Level;
 
 /**
@@ -32,6 +35,7 @@ public class ConnectionListener implements Listener {
     private final GroupPermissionManager groupPermissionManager;
     private final LanguageManager languageManager;
     private final ScoreboardManager scoreboardManager;
+    private final ProfileManager profileManager;
 
     public ConnectionListener(@NotNull PlayLegendPermission plugin) {
         this.plugin = plugin;
@@ -39,12 +43,28 @@ public class ConnectionListener implements Listener {
         this.groupPermissionManager = plugin.getGroupPermissionManager();
         this.languageManager = plugin.getLanguageManager();
         this.scoreboardManager = plugin.getScoreboardManager();
+        this.profileManager = plugin.getProfileManager();
+    }
+
+    /**
+     * Loads the group of the player before the player joins, if only the groups of online players are cached. This event is called async, so the database can be queried directly.
+     *
+     * @param event AsyncPlayerPreLoginEvent
+     */
+    @EventHandler
+    public void onPreLogin(@NotNull AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        if (this.groupMemberManager.ensureLoaded(event.getUniqueId())) return;
+
+        // Without the group, the player would be placed in the default group and lose the rank.
+        event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, Component.text("Your group could not be loaded. Please try again later."));
     }
 
     @EventHandler
     public void onJoin(@NotNull PlayerJoinEvent event) {
-        if (PlayLegendPermission.isUnitTest()) return;
         Player player = event.getPlayer();
+        this.profileManager.remember(player.getUniqueId(), player.getName());
+        if (PlayLegendPermission.isUnitTest()) return;
 
         if (!this.groupMemberManager.hasGroup(player.getUniqueId()))
             this.groupMemberManager.addToDefaultGroup(player.getUniqueId());
@@ -59,6 +79,9 @@ public class ConnectionListener implements Listener {
     @EventHandler
     public void onQuit(@NotNull PlayerQuitEvent event) {
         this.scoreboardManager.destroy(event.getPlayer());
+        this.groupPermissionManager.unloadEffectivePermissions(event.getPlayer().getUniqueId());
+        this.groupPermissionManager.unloadAttachment(event.getPlayer());
+        this.groupMemberManager.evictLater(event.getPlayer().getUniqueId());
     }
 
     /**
@@ -68,22 +91,24 @@ public class ConnectionListener implements Listener {
      */
     private void injectCustomPermissibleBase(@NotNull Player player) {
         try {
-            CraftBukkitImplementation.injectEntity(player, this.groupPermissionManager, this.groupMemberManager);
+            CraftBukkitImplementation.injectEntity(player, this.groupPermissionManager);
         } catch (Exception e) {
             this.plugin.getLogger().log(Level.SEVERE, "Could not inject entity", e);
         }
     }
 
     /**
-     * Updates the permissions based on the group
+     * Updates the permissions based on the groups of the player
      *
      * @param player Player to update
-     * @return GroupModel of the player
+     * @return Primary GroupModel of the player
      */
     private @NotNull GroupModel updatePermissionsBasedOnGroup(@NotNull Player player) {
         GroupMemberModel member = this.groupMemberManager.getOrSetGroup(player.getUniqueId());
         GroupModel group = member.getGroup();
-        this.groupPermissionManager.reloadPlayerPermissions(group, player, true);
+        List<GroupModel> groups = this.groupMemberManager.getGroupModels(player.getUniqueId());
+        groups.forEach(groupModel -> this.groupPermissionManager.reloadPlayerPermissions(groupModel, player, true));
+        this.groupPermissionManager.loadEffectivePermissions(player.getUniqueId(), groups);
         return group;
     }
 
@@ -95,7 +120,7 @@ public class ConnectionListener implements Listener {
      */
     private void createScoreboard(@NotNull PlayerJoinEvent event, @NotNull Player player) {
         this.scoreboardManager.create(event.getPlayer());
-        Bukkit.getScheduler().runTaskLater(this.plugin, () -> this.scoreboardManager.update(player), 40L);
+        Bukkit.getScheduler().runTaskLater(this.plugin, () -> this.scoreboardManager.markDirty(player), 40L);
     }
 
     /**
@@ -0,0 +1,41 @@
+package io.github.rysefoxx.listener;
+
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.database.InvalidationBus;
+import io.github.rysefoxx.database.InvalidationEvent;
+import io.github.rysefoxx.manager.GroupManager;
+import io.github.rysefoxx.manager.GroupMemberManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Applies the changes of other servers, which are received over the {@link InvalidationBus}, to the caches. <br>
+ * Only the named rows are read again, the rest of the cache is kept.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class InvalidationListener implements Function<InvalidationEvent, CompletableFuture<Void>> {
+
+    private final GroupManager groupManager;
+    private final GroupMemberManager groupMemberManager;
+
+    public InvalidationListener(@NotNull PlayLegendPermission plugin) {
+        this.groupManager = plugin.getGroupManager();
+        this.groupMemberManager = plugin.getGroupMemberManager();
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Void> apply(@NotNull InvalidationEvent event) {
+        return switch (event.type()) {
+            case GROUP -> this.groupManager.reloadGroup(event.group());
+            case PERMISSION -> this.groupManager.reloadPermissions(event.group());
+            case PARENT -> this.groupManager.reloadParents(event.group());
+            case MEMBER -> event.uuid() == null
+                    ? CompletableFuture.completedFuture(null)
+                    : this.groupMemberManager.reloadMember(event.uuid());
+        };
+    }
+}
@@ -1,44 +1,85 @@
 package io.github.rysefoxx.manager;
 
 import io.github.rysefoxx.PlayLegendPermission;
-import io.github.rysefoxx.database.AsyncDatabaseManager;
-import io.github.rysefoxx.database.ConnectionManager;
+import io.github.rysefoxx.database.*;
+import io.github.rysefoxx.database.dialect.StorageDialect;
+import io.github.rysefoxx.metrics.MetricsSource;
+import io.github.rysefoxx.metrics.MetricsWriter;
 import io.github.rysefoxx.model.GroupMemberModel;
 import io.github.rysefoxx.model.GroupModel;
 import io.github.rysefoxx.model.GroupPermissionModel;
+import io.github.rysefoxx.permission.PermissionResolver;
+import io.github.rysefoxx.util.Util;
 import lombok.Getter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.logging.Level;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author Rysefoxx
  * @since 02.01.2024
  */
-public class GroupManager {
+public class GroupManager implements MetricsSource {
+
+    /**
+     * The amount of rows the driver fetches at once while streaming the tables on startup.
+     */
+    private static final int FETCH_SIZE = 1000;
+
+    /**
+     * Selects the id of the group with the given name. Writes reference groups by id, but the cache knows them by name.
+     */
+    public static final String GROUP_ID_QUERY = "(SELECT id FROM legend.groups WHERE name = ?)";
 
     private final PlayLegendPermission plugin;
     private final ConnectionManager connectionManager;
     private final AsyncDatabaseManager asyncDatabaseManager;
+    private final WriteBehindQueue writeBehindQueue;
+    private final InvalidationBus invalidationBus;
+    private final StorageDialect dialect;
+    private final String saveGroupQuery;
+    private final String addParentQuery;
 
+    /**
+     * Whether only the memberships of online players are cached. If enabled, the group_member table is not loaded on startup.
+     */
     @Getter
-    private final List<GroupModel> groupCache = new ArrayList<>();
+    private final boolean lazyMembers;
+
+    /**
+     * Immutable snapshot of all cached groups. It is replaced as a whole whenever a group is saved or deleted, so lookups never lock and never see a half applied change.
+     */
+    private final AtomicReference<GroupSnapshot> snapshot = new AtomicReference<>(GroupSnapshot.EMPTY);
 
     public GroupManager(@NotNull PlayLegendPermission plugin) {
         this.plugin = plugin;
         this.connectionManager = plugin.getConnectionManager();
         this.asyncDatabaseManager = plugin.getAsyncDatabaseManager();
+        this.writeBehindQueue = plugin.getWriteBehindQueue();
+        this.invalidationBus = plugin.getInvalidationBus();
+        this.dialect = this.connectionManager.getDialect();
+        this.saveGroupQuery = this.dialect.upsert("legend.groups", List.of("name", "prefix", "weight"), "?, ?, ?", List.of("name"));
+        this.addParentQuery = this.dialect.insertIgnore("legend.group_parent", List.of("group_id", "parent_id"), GROUP_ID_QUERY + ", " + GROUP_ID_QUERY);
+        this.lazyMembers = this.connectionManager.getConfig().getBoolean("members.lazy", false);
         onLoad();
     }
 
     /**
      * This is executed synchronously, as it is executed once when the server is started and not during runtime where users are on the server.
+     *
+     * @throws IllegalStateException If the groups could not be loaded. The default group is not created then, because every player would be put into it.
      */
     public void onLoad() {
         cacheAllGroups();
@@ -46,58 +87,204 @@ public class GroupManager {
     }
 
     /**
-     * Loads all groups from the database and saves them in the cache.
+     * Loads all groups from the database and saves them in the cache. <br>
+     * Groups, members, permissions and parents are read with streamed queries in parallel, each on its own connection.
+     * Members, permissions and parents may be read before their group, so they are attached to a placeholder which is completed by the group query.
+     *
+     * @throws IllegalStateException If one of the tables could not be loaded.
      */
     private void cacheAllGroups() {
-        String query = "SELECT g.name, g.prefix, g.weight, " +
-                "gm.id as member_id, gm.uuid as member_uuid, gm.expiration as member_expiration, " +
-                "gp.id as permission_id, gp.permission " +
-                "FROM legend.groups g " +
-                "LEFT JOIN legend.group_member gm ON g.name = gm.name " +
-                "LEFT JOIN legend.group_permission gp ON g.name = gp.name";
+        long startedAt = System.nanoTime();
+        long heapBefore = getHeapUsage();
 
-        try (Connection connection = this.connectionManager.getConnection();
-             PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection, query)) {
-            if (preparedStatement == null) {
-                this.plugin.getLogger().severe("Failed to load groups from database, because the prepared statement is null!");
+        Map<String, GroupModel> groupMap = new ConcurrentHashMap<>();
+        Set<String> loadedGroups = ConcurrentHashMap.newKeySet();
+
+        CompletableFuture<Integer> groups = this.asyncDatabaseManager.supplyAsync(() -> loadGroups(groupMap, loadedGroups));
+        CompletableFuture<Integer> members = this.lazyMembers
+                ? CompletableFuture.completedFuture(0)
+                : this.asyncDatabaseManager.supplyAsync(() -> loadMembers(groupMap));
+        CompletableFuture<Integer> permissions = this.asyncDatabaseManager.supplyAsync(() -> loadPermissions(groupMap));
+        CompletableFuture<Integer> parents = this.asyncDatabaseManager.supplyAsync(() -> loadParents(groupMap));
+
+        int groupCount;
+        int memberCount;
+        int permissionCount;
+        int parentCount;
+        try {
+            groupCount = groups.join();
+            memberCount = members.join();
+            permissionCount = permissions.join();
+            parentCount = parents.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Failed to load groups from database!", e.getCause());
+        }
+
+        Map<String, GroupModel> groupsByName = new HashMap<>();
+        groupMap.forEach((key, groupModel) -> {
+            if (!loadedGroups.contains(key)) {
+                this.plugin.getLogger().warning("Ignoring members and permissions of the unknown group " + groupModel.getName() + "!");
                 return;
             }
 
-            Map<String, GroupModel> groupMap = new HashMap<>();
+            groupsByName.put(key, groupModel);
+            this.plugin.getLogger().info("Loaded group " + groupModel.getName() + " with " + groupModel.getMembers().size() + " members and " + groupModel.getPermissions().size() + " permissions from database!");
+        });
+        this.snapshot.set(GroupSnapshot.of(groupsByName));
+        resolvePermissions();
+
+        // On startup the member manager does not exist yet and builds its index itself.
+        GroupMemberManager groupMemberManager = this.plugin.getGroupMemberManager();
+        if (groupMemberManager != null) groupMemberManager.rebuildIndex();
+
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        this.plugin.getLogger().info("Loaded " + groupCount + " groups, " + memberCount + " members, " + permissionCount + " permissions and " + parentCount + " parents in " + duration + "ms (heap grew by " + (getHeapUsage() - heapBefore) / (1024 * 1024) + "MB)!");
+    }
+
+    /**
+     * Streams all rows of the groups table and completes the group models.
+     *
+     * @param groupMap     The group models by their key.
+     * @param loadedGroups The keys of the groups which exist in the groups table.
+     * @return The amount of loaded groups.
+     * @throws IllegalStateException If the table could not be read.
+     */
+    private int loadGroups(@NotNull Map<String, GroupModel> groupMap, @NotNull Set<String> loadedGroups) {
+        int count = 0;
+        try (Connection connection = this.connectionManager.getConnection();
+             PreparedStatement preparedStatement = this.connectionManager.prepareStreamingStatement(connection, "SELECT name, prefix, weight FROM legend.groups", FETCH_SIZE)) {
+            if (preparedStatement == null) {
+                throw new IllegalStateException("Failed to load groups from database, because the prepared statement is null!");
+            }
 
             try (ResultSet resultSet = preparedStatement.executeQuery()) {
                 while (resultSet.next()) {
                     String name = resultSet.getString("name");
                     String prefix = resultSet.getString("prefix");
                     int weight = resultSet.getInt("weight");
-                    GroupModel groupModel = groupMap.computeIfAbsent(name, k -> new GroupModel(name, prefix, weight));
-
-                    if (resultSet.getObject("member_uuid") != null) {
-                        UUID uuid = (UUID) resultSet.getObject("member_uuid");
-                        LocalDateTime expiration = resultSet.getObject("member_expiration", LocalDateTime.class);
-                        GroupMemberModel member = new GroupMemberModel(resultSet.getLong("member_id"), uuid, expiration, groupModel);
-                        groupModel.getMembers().add(member);
-                    }
-
-                    if (resultSet.getString("permission") != null) {
-                        GroupPermissionModel permission = new GroupPermissionModel(resultSet.getLong("permission_id"), resultSet.getString("permission"), groupModel);
-                        groupModel.getPermissions().add(permission);
-                    }
+
+                    GroupModel groupModel = groupMap.computeIfAbsent(toKey(name), key -> new GroupModel(name, prefix, weight));
+                    groupModel.setPrefix(prefix);
+                    groupModel.setWeight(weight);
+                    loadedGroups.add(toKey(name));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to load groups from database!", e);
+        }
+        return count;
+    }
+
+    /**
+     * Streams all rows of the group_member table and adds them to their group.
+     *
+     * @param groupMap The group models by their key.
+     * @return The amount of loaded members.
+     * @throws IllegalStateException If the table could not be read.
+     */
+    private int loadMembers(@NotNull Map<String, GroupModel> groupMap) {
+        int count = 0;
+        try (Connection connection = this.connectionManager.getConnection();
+             PreparedStatement preparedStatement = this.connectionManager.prepareStreamingStatement(connection, "SELECT membership.id, membership.uuid, grp.name, membership.expiration FROM legend.group_member membership JOIN legend.groups grp ON grp.id = membership.group_id", FETCH_SIZE)) {
+            if (preparedStatement == null) {
+                throw new IllegalStateException("Failed to load group members from database, because the prepared statement is null!");
+            }
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    String name = resultSet.getString("name");
+                    GroupModel groupModel = groupMap.computeIfAbsent(toKey(name), key -> createPlaceholder(name));
+                    UUID uuid = this.dialect.getUUID(resultSet, "uuid");
+                    LocalDateTime expiration = resultSet.getObject("expiration", LocalDateTime.class);
+
+                    groupModel.getMembers().add(new GroupMemberModel(resultSet.getLong("id"), uuid, expiration, groupModel));
+                    count++;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to load group members from database!", e);
+        }
+        return count;
+    }
+
+    /**
+     * Streams all rows of the group_permission table and adds them to their group.
+     *
+     * @param groupMap The group models by their key.
+     * @return The amount of loaded permissions.
+     * @throws IllegalStateException If the table could not be read.
+     */
+    private int loadPermissions(@NotNull Map<String, GroupModel> groupMap) {
+        int count = 0;
+        try (Connection connection = this.connectionManager.getConnection();
+             PreparedStatement preparedStatement = this.connectionManager.prepareStreamingStatement(connection, "SELECT permission.id, permission.permission, grp.name FROM legend.group_permission permission JOIN legend.groups grp ON grp.id = permission.group_id", FETCH_SIZE)) {
+            if (preparedStatement == null) {
+                throw new IllegalStateException("Failed to load group permissions from database, because the prepared statement is null!");
+            }
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    String name = resultSet.getString("name");
+                    GroupModel groupModel = groupMap.computeIfAbsent(toKey(name), key -> createPlaceholder(name));
+                    groupModel.addPermission(new GroupPermissionModel(resultSet.getLong("id"), resultSet.getString("permission"), groupModel));
+                    count++;
                 }
-            } catch (SQLException e) {
-                this.plugin.getLogger().log(Level.SEVERE, "Failed to load groups from database!", e);
             }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to load group permissions from database!", e);
+        }
+        return count;
+    }
 
-            groupMap.values().forEach(groupModel -> {
-                this.groupCache.add(groupModel);
-                this.plugin.getLogger().info("Loaded group " + groupModel.toString() + " from database!");
-            });
+    /**
+     * Streams all rows of the group_parent table and adds the parents to their group.
+     *
+     * @param groupMap The group models by their key.
+     * @return The amount of loaded parents.
+     * @throws IllegalStateException If the table could not be read.
+     */
+    private int loadParents(@NotNull Map<String, GroupModel> groupMap) {
+        int count = 0;
+        try (Connection connection = this.connectionManager.getConnection();
+             PreparedStatement preparedStatement = this.connectionManager.prepareStreamingStatement(connection, "SELECT grp.name, parent.name AS parent FROM legend.group_parent link JOIN legend.groups grp ON grp.id = link.group_id JOIN legend.groups parent ON parent.id = link.parent_id", FETCH_SIZE)) {
+            if (preparedStatement == null) {
+                throw new IllegalStateException("Failed to load group parents from database, because the prepared statement is null!");
+            }
 
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    String name = resultSet.getString("name");
+                    GroupModel groupModel = groupMap.computeIfAbsent(toKey(name), key -> createPlaceholder(name));
+                    groupModel.addParent(resultSet.getString("parent"));
+                    count++;
+                }
+            }
         } catch (SQLException e) {
-            this.plugin.getLogger().log(Level.SEVERE, "Failed to load groups from database!", e);
+            throw new IllegalStateException("Failed to load group parents from database!", e);
         }
+        return count;
     }
 
+    /**
+     * Creates a placeholder for a group whose row has not been read yet. Prefix and weight are set when the row is read.
+     *
+     * @param name The name of the group
+     * @return The placeholder
+     */
+    private @NotNull GroupModel createPlaceholder(@NotNull String name) {
+        return new GroupModel(name, name);
+    }
+
+    /**
+     * Samples the used heap. The peaks of the memory pools are not reset for this, because other tools like profilers read them as well.
+     * A garbage collection during the startup makes the difference smaller, so it is only an estimate.
+     *
+     * @return The used heap in bytes.
+     */
+    private long getHeapUsage() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
 
     /**
      * Creates the default group if it does not exist.
@@ -114,62 +301,410 @@ public class GroupManager {
      * @return The group or {@link Optional#empty()} if no group with the given name exists.
      */
     public @NotNull Optional<GroupModel> findByName(@NotNull String name) {
-        return this.groupCache.stream()
-                .filter(groupModel -> groupModel.getName().equalsIgnoreCase(name))
-                .findFirst();
+        return Optional.ofNullable(lookup(name));
+    }
+
+    /**
+     * Gets a group from the cache by its name.
+     *
+     * @param name The name of the group
+     * @return The group or {@code null} if no group with the given name exists.
+     */
+    private @Nullable GroupModel lookup(@NotNull String name) {
+        return this.snapshot.get().byName().get(toKey(name));
+    }
+
+    /**
+     * Gets all cached groups. The returned list is an immutable snapshot, sorted by weight in descending order.
+     *
+     * @return The cached groups.
+     */
+    public @NotNull List<GroupModel> getGroupCache() {
+        return this.snapshot.get().sorted();
     }
 
     /**
-     * Saves a group async to the database.
+     * Resolves the own and inherited permissions of all cached groups and refreshes the effective permissions of the online players. <br>
+     * A change of one group can affect every group which inherits from it, so all groups are resolved. This is called after the permissions,
+     * parents or weights of a group have been changed.
+     */
+    public synchronized void resolvePermissions() {
+        PermissionResolver.resolve(getGroupCache(), this::lookup);
+
+        GroupPermissionManager groupPermissionManager = this.plugin.getGroupPermissionManager();
+        if (groupPermissionManager != null) groupPermissionManager.refreshEffectivePermissions();
+    }
+
+    /**
+     * Checks if a group inherits from another group, directly or through other parents.
+     *
+     * @param groupModel The group to check
+     * @param ancestor   The possible ancestor
+     * @return true if the group inherits from the ancestor, otherwise false
+     */
+    public boolean inheritsFrom(@NotNull GroupModel groupModel, @NotNull GroupModel ancestor) {
+        return PermissionResolver.inheritsFrom(groupModel, ancestor, this::lookup);
+    }
+
+    /**
+     * Adds a parent to a group and queues it to be written to the database.
+     *
+     * @param groupModel The group which inherits the permissions
+     * @param parent     The group whose permissions are inherited
+     */
+    public void addParent(@NotNull GroupModel groupModel, @NotNull GroupModel parent) {
+        groupModel.addParent(parent.getName());
+        resolvePermissions();
+
+        String name = groupModel.getName();
+        String parentName = parent.getName();
+        this.writeBehindQueue.enqueue(new PendingWrite(toParentKey(name, parentName),
+                "parent_save",
+                this.addParentQuery,
+                false,
+                statement -> {
+                    statement.setString(1, name);
+                    statement.setString(2, parentName);
+                }));
+        this.invalidationBus.publish(InvalidationEvent.parents(name));
+    }
+
+    /**
+     * Removes a parent from a group and queues it to be removed from the database.
+     *
+     * @param groupModel The group which inherits the permissions
+     * @param parent     The group whose permissions are no longer inherited
+     */
+    public void removeParent(@NotNull GroupModel groupModel, @NotNull GroupModel parent) {
+        groupModel.removeParents(parentName -> parentName.equalsIgnoreCase(parent.getName()));
+        resolvePermissions();
+
+        String name = groupModel.getName();
+        String parentName = parent.getName();
+        this.writeBehindQueue.enqueue(new PendingWrite(toParentKey(name, parentName),
+                "parent_delete",
+                "DELETE FROM legend.group_parent WHERE group_id = " + GROUP_ID_QUERY + " AND parent_id = " + GROUP_ID_QUERY,
+                false,
+                statement -> {
+                    statement.setString(1, name);
+                    statement.setString(2, parentName);
+                }));
+        this.invalidationBus.publish(InvalidationEvent.parents(name));
+    }
+
+    /**
+     * Builds the key of a parent row for the {@link WriteBehindQueue}.
+     *
+     * @param name   The name of the group
+     * @param parent The name of the parent
+     * @return The key of the row
+     */
+    private @NotNull String toParentKey(@NotNull String name, @NotNull String parent) {
+        return "parent:" + toKey(name) + ":" + toKey(parent);
+    }
+
+    /**
+     * Converts a group name into the key of the name index.
+     *
+     * @param name The name of the group
+     * @return The lower-cased name
+     */
+    private @NotNull String toKey(@NotNull String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Saves a group to the cache and queues it to be written to the database.
      *
      * @param groupModel The group to save.
      */
     public void save(@NotNull GroupModel groupModel) {
-        if (!this.groupCache.contains(groupModel)) this.groupCache.add(groupModel);
+        // The weight may have changed, so the order and the inherited permissions have to be refreshed as well.
+        this.snapshot.updateAndGet(current -> current.with(toKey(groupModel.getName()), groupModel));
+        resolvePermissions();
 
-        this.asyncDatabaseManager.executeAsync(() -> {
-            try (Connection connection = this.connectionManager.getConnection();
-                 PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection,
-                         "INSERT INTO legend.groups (name, prefix, weight) VALUES (?, ?, ?) " +
-                                 "ON DUPLICATE KEY UPDATE prefix = VALUES(prefix), weight = VALUES(weight)")) {
+        String name = groupModel.getName();
+        String prefix = groupModel.getPrefix();
+        int weight = groupModel.getWeight();
+        this.writeBehindQueue.enqueue(new PendingWrite("group:" + toKey(name),
+                "group_save",
+                this.saveGroupQuery,
+                true,
+                statement -> {
+                    statement.setString(1, name);
+                    statement.setString(2, prefix);
+                    statement.setInt(3, weight);
+                }));
+        this.invalidationBus.publish(InvalidationEvent.group(name));
+    }
 
-                if (preparedStatement == null) {
-                    this.plugin.getLogger().severe("Failed to save group " + groupModel.getName() + " to database, because the prepared statement is null!");
-                    return;
-                }
+    /**
+     * Removes a group from the cache and queues it to be removed from the database.
+     *
+     * @param groupModel The group to remove.
+     */
+    public void delete(@NotNull GroupModel groupModel) {
+        uncache(groupModel);
 
-                preparedStatement.setString(1, groupModel.getName());
-                preparedStatement.setString(2, groupModel.getPrefix());
-                preparedStatement.setInt(3, groupModel.getWeight());
+        String name = groupModel.getName();
+        // The rows of the members, permissions and parents reference the group and are removed with it.
+        // Members which are not cached are therefore not moved to the default group. They receive the default group on their next join.
+        this.writeBehindQueue.enqueue(new PendingWrite("group:" + toKey(name),
+                "group_delete",
+                "DELETE FROM legend.groups WHERE name = ?",
+                true,
+                statement -> statement.setString(1, name)));
+        this.invalidationBus.publish(InvalidationEvent.group(name));
+    }
 
-                preparedStatement.executeUpdate();
-            } catch (SQLException e) {
-                this.plugin.getLogger().log(Level.SEVERE, "Failed to save group " + groupModel.getName() + " to database!", e);
-            }
-        });
+    /**
+     * Applies the changes of other servers since the last seen revision, without waiting for the next scheduled poll. <br>
+     * Only the changed rows are read, so this is fast even with a large amount of cached groups and members.
+     *
+     * @return A future which is completed with the amount of applied changes, after they have been applied.
+     */
+    public @NotNull CompletableFuture<Integer> synchronize() {
+        // Own writes which are still queued would not be visible to the other servers yet.
+        return this.asyncDatabaseManager.executeAsync(this.writeBehindQueue::flush)
+                .thenCompose(ignored -> this.invalidationBus.synchronize());
+    }
+
+    /**
+     * @return The revision of the latest change of another server which has been applied or is being applied.
+     */
+    public long getRevision() {
+        return this.invalidationBus.getRevision();
     }
 
     /**
-     * Removes a group async from the database.
+     * Removes a group from the cache without touching the database. Other groups no longer inherit from it.
      *
      * @param groupModel The group to remove.
      */
-    public void delete(@NotNull GroupModel groupModel) {
-        this.groupCache.remove(groupModel);
-        this.asyncDatabaseManager.executeAsync(() -> {
-            try (Connection connection = this.connectionManager.getConnection();
-                 PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection, "DELETE FROM legend.groups WHERE name = ?")) {
-                if (preparedStatement == null) {
-                    this.plugin.getLogger().severe("Failed to remove group " + groupModel.getName() + " from database, because the prepared statement is null!");
-                    return;
+    private void uncache(@NotNull GroupModel groupModel) {
+        this.snapshot.updateAndGet(current -> current.without(toKey(groupModel.getName()), groupModel));
+        for (GroupModel child : getGroupCache()) {
+            child.removeParents(parentName -> parentName.equalsIgnoreCase(groupModel.getName()));
+        }
+        resolvePermissions();
+
+        GroupMemberManager groupMemberManager = this.plugin.getGroupMemberManager();
+        if (groupMemberManager != null) groupMemberManager.unindexGroup(groupModel);
+    }
+
+    /**
+     * Reads the row of a group from the database and applies it to the cache. This is called when another server created, changed or deleted the group. <br>
+     * A group which is not cached yet is added together with its permissions and parents. Queued writes of the group are flushed first,
+     * so a local change is not replaced by the state before it.
+     *
+     * @param name The name of the group.
+     * @return A future which is completed when the cache has been updated.
+     */
+    public @NotNull CompletableFuture<Void> reloadGroup(@NotNull String name) {
+        String key = "group:" + toKey(name);
+        return this.asyncDatabaseManager.supplyAsync(() -> {
+                    this.writeBehindQueue.flush(key::equals);
+                    return readGroup(name);
+                })
+                .thenCompose(group -> Util.supplySync(this.plugin, () -> applyGroup(name, group.orElse(null))))
+                .thenCompose(added -> added
+                        ? reloadPermissions(name).thenCompose(ignored -> reloadParents(name))
+                        : CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Reads the permissions of a group from the database and replaces the cached permissions. This is called when another server changed them. <br>
+     * Queued writes of the permissions of the group are flushed first, so a local change is not replaced by the state before it.
+     *
+     * @param name The name of the group.
+     * @return A future which is completed when the cache has been updated.
+     */
+    public @NotNull CompletableFuture<Void> reloadPermissions(@NotNull String name) {
+        String keyPrefix = "permission:" + toKey(name) + ":";
+        return this.asyncDatabaseManager.supplyAsync(() -> {
+                    this.writeBehindQueue.flush(key -> key.startsWith(keyPrefix));
+                    return readPermissions(name);
+                })
+                .thenCompose(permissions -> Util.runSync(this.plugin, () -> findByName(name).ifPresent(groupModel -> {
+                    List<GroupPermissionModel> models = new ArrayList<>(permissions.size());
+                    permissions.forEach((id, permission) -> models.add(new GroupPermissionModel(id, permission, groupModel)));
+                    groupModel.replacePermissions(models);
+                    resolvePermissions();
+                    this.plugin.getGroupPermissionManager().reloadPlayerPermissions(groupModel, true);
+                })));
+    }
+
+    /**
+     * Reads the parents of a group from the database and replaces the cached parents. This is called when another server changed them. <br>
+     * Queued writes of the parents of the group are flushed first, so a local change is not replaced by the state before it.
+     *
+     * @param name The name of the group.
+     * @return A future which is completed when the cache has been updated.
+     */
+    public @NotNull CompletableFuture<Void> reloadParents(@NotNull String name) {
+        String keyPrefix = "parent:" + toKey(name) + ":";
+        return this.asyncDatabaseManager.supplyAsync(() -> {
+                    this.writeBehindQueue.flush(key -> key.startsWith(keyPrefix));
+                    return readParents(name);
+                })
+                .thenCompose(parents -> Util.runSync(this.plugin, () -> findByName(name).ifPresent(groupModel -> {
+                    groupModel.replaceParents(parents);
+                    resolvePermissions();
+                })));
+    }
+
+    /**
+     * Applies the row of a group to the cache.
+     *
+     * @param name  The name of the group.
+     * @param group The group as read from the database or {@code null} if it has been deleted.
+     * @return true if the group was not cached before, otherwise false.
+     */
+    private boolean applyGroup(@NotNull String name, @Nullable GroupModel group) {
+        GroupModel cached = lookup(name);
+        if (group == null) {
+            if (cached != null) uncache(cached);
+            return false;
+        }
+
+        if (cached == null) {
+            this.snapshot.updateAndGet(current -> current.with(toKey(name), group));
+            resolvePermissions();
+            return true;
+        }
+
+        cached.setPrefix(group.getPrefix());
+        cached.setWeight(group.getWeight());
+        this.snapshot.updateAndGet(current -> current.with(toKey(name), cached));
+        resolvePermissions();
+
+        ScoreboardManager scoreboardManager = this.plugin.getScoreboardManager();
+        if (scoreboardManager != null) scoreboardManager.markDirty(cached);
+        return false;
+    }
+
+    /**
+     * Reads the row of a group.
+     *
+     * @param name The name of the group.
+     * @return A new group without members, permissions and parents, or {@link Optional#empty()} if the group does not exist.
+     */
+    private @NotNull Optional<GroupModel> readGroup(@NotNull String name) {
+        try (Connection connection = this.connectionManager.getConnection();
+             PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection, "SELECT name, prefix, weight FROM legend.groups WHERE name = ?")) {
+            if (preparedStatement == null) throw new SQLException("The prepared statement is null!");
+
+            preparedStatement.setString(1, name);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (!resultSet.next()) return Optional.empty();
+                return Optional.of(new GroupModel(resultSet.getString("name"), resultSet.getString("prefix"), resultSet.getInt("weight")));
+            }
+        } catch (SQLException e) {
+            throw new CompletionException("Failed to read group " + name + " from database!", e);
+        }
+    }
+
+    /**
+     * Reads the permissions of a group.
+     *
+     * @param name The name of the group.
+     * @return The permissions by the id of their row.
+     */
+    private @NotNull Map<Long, String> readPermissions(@NotNull String name) {
+        Map<Long, String> permissions = new LinkedHashMap<>();
+        try (Connection connection = this.connectionManager.getConnection();
+             PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection, "SELECT permission.id, permission.permission FROM legend.group_permission permission JOIN legend.groups grp ON grp.id = permission.group_id WHERE grp.name = ?")) {
+            if (preparedStatement == null) throw new SQLException("The prepared statement is null!");
+
+            preparedStatement.setString(1, name);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    permissions.put(resultSet.getLong("id"), resultSet.getString("permission"));
                 }
+            }
+        } catch (SQLException e) {
+            throw new CompletionException("Failed to read the permissions of group " + name + " from database!", e);
+        }
+        return permissions;
+    }
 
-                preparedStatement.setString(1, groupModel.getName());
+    /**
+     * Reads the parents of a group.
+     *
+     * @param name The name of the group.
+     * @return The names of the parents.
+     */
+    private @NotNull List<String> readParents(@NotNull String name) {
+        List<String> parents = new ArrayList<>();
+        try (Connection connection = this.connectionManager.getConnection();
+             PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection, "SELECT parent.name AS parent FROM legend.group_parent link JOIN legend.groups grp ON grp.id = link.group_id JOIN legend.groups parent ON parent.id = link.parent_id WHERE grp.name = ?")) {
+            if (preparedStatement == null) throw new SQLException("The prepared statement is null!");
 
-                preparedStatement.executeUpdate();
-            } catch (SQLException e) {
-                this.plugin.getLogger().log(Level.SEVERE, "Failed to remove group " + groupModel.getName() + " from database!", e);
+            preparedStatement.setString(1, name);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    parents.add(resultSet.getString("parent"));
+                }
             }
-        });
+        } catch (SQLException e) {
+            throw new CompletionException("Failed to read the parents of group " + name + " from database!", e);
+        }
+        return parents;
+    }
+
+    /**
+     * Immutable view of the cached groups.
+     *
+     * @param byName Every group by its name in lower case ({@link Locale#ROOT})
+     * @param sorted Every group, sorted by weight in descending order
+     */
+    private record GroupSnapshot(@NotNull Map<String, GroupModel> byName, @NotNull List<GroupModel> sorted) {
+
+        private static final GroupSnapshot EMPTY = new GroupSnapshot(Map.of(), List.of());
+
+        /**
+         * Creates a snapshot of the given groups.
+         *
+         * @param byName The groups by their key
+         * @return The snapshot
+         */
+        private static @NotNull GroupSnapshot of(@NotNull Map<String, GroupModel> byName) {
+            List<GroupModel> sorted = new ArrayList<>(byName.values());
+            sorted.sort(GroupModel.PRIORITY_ORDER);
+            return new GroupSnapshot(Map.copyOf(byName), List.copyOf(sorted));
+        }
+
+        /**
+         * Creates a copy of this snapshot which contains the group.
+         *
+         * @param key        The key of the group
+         * @param groupModel The group to add or replace
+         * @return The new snapshot
+         */
+        private @NotNull GroupSnapshot with(@NotNull String key, @NotNull GroupModel groupModel) {
+            Map<String, GroupModel> copy = new HashMap<>(this.byName);
+            copy.put(key, groupModel);
+            return of(copy);
+        }
+
+        /**
+         * Creates a copy of this snapshot without the group. Nothing changes if the key belongs to another group.
+         *
+         * @param key        The key of the group
+         * @param groupModel The group to remove
+         * @return The new snapshot
+         */
+        private @NotNull GroupSnapshot without(@NotNull String key, @NotNull GroupModel groupModel) {
+            if (this.byName.get(key) != groupModel) return this;
+
+            Map<String, GroupModel> copy = new HashMap<>(this.byName);
+            copy.remove(key);
+            return of(copy);
+        }
+    }
+
+    @Override
+    public void collect(@NotNull MetricsWriter writer) {
+        writer.gauge("legend_cache_entries", "Entries in the caches of the plugin.", getGroupCache().size(), "cache", "groups");
     }
-}
\ No newline at end of file
+}
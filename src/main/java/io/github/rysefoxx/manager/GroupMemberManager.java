@@ -1,11 +1,14 @@
 package io.github.rysefoxx.manager;
 
 import io.github.rysefoxx.PlayLegendPermission;
-import io.github.rysefoxx.database.AsyncDatabaseManager;
-import io.github.rysefoxx.database.ConnectionManager;
+import io.github.rysefoxx.database.*;
+import io.github.rysefoxx.database.dialect.StorageDialect;
+import io.github.rysefoxx.metrics.MetricsSource;
+import io.github.rysefoxx.metrics.MetricsWriter;
 import io.github.rysefoxx.model.GroupMemberModel;
 import io.github.rysefoxx.model.GroupModel;
-import lombok.Setter;
+import io.github.rysefoxx.scheduler.ExpiryScheduler;
+import io.github.rysefoxx.util.Util;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
@@ -13,59 +16,406 @@ import org.jetbrains.annotations.Nullable;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 
 /**
+ * Manages the memberships of players. A player can be in several groups at once, each membership with its own expiration. <br>
+ * The group with the highest weight is the primary group, which is used for the prefix and the scoreboard. The permissions of all groups are merged.
+ * The default group is only assigned while a player has no other group.
+ *
  * @author Rysefoxx
  * @since 02.01.2024
  */
-public class GroupMemberManager {
+public class GroupMemberManager implements MetricsSource {
+
+    private static final long DEFAULT_EVICTION_DELAY_SECONDS = 300L;
+    private static final String DEFAULT_GROUP = "default";
+    private static final String MEMBER_KEY_PREFIX = "member:";
+
+    /**
+     * The maximum amount of uuids whose memberships are read with one query.
+     */
+    private static final int LOAD_BATCH_SIZE = 500;
 
     private final PlayLegendPermission plugin;
     private final ConnectionManager connectionManager;
-    private final AsyncDatabaseManager asyncDatabaseManager;
+    private final WriteBehindQueue writeBehindQueue;
+    private final InvalidationBus invalidationBus;
+    private final StorageDialect dialect;
+    private final String saveQuery;
     private final GroupManager groupManager;
     private final GroupPermissionManager groupPermissionService;
     private final LanguageManager languageManager;
 
+    /**
+     * Index of every {@link GroupMemberModel} by its {@link UUID}. It mirrors the member lists of the cached groups, so membership lookups do not have to scan every group. <br>
+     * The lists are immutable and replaced on every change, so they can be read from any thread.
+     */
+    private final Map<UUID, List<GroupMemberModel>> memberIndex = new ConcurrentHashMap<>();
+    private final ExpiryScheduler expiryScheduler;
+    private final long evictionDelayTicks;
+
+    /**
+     * The pending eviction of every {@link UUID} which has been scheduled with {@link #evictLater(UUID)}. A login cancels it by removing the entry.
+     */
+    private final Map<UUID, Object> pendingEvictions = new ConcurrentHashMap<>();
+
+    /**
+     * Guards the check of an eviction together with the uncache, so a login either sees the memberships after the eviction or cancels it.
+     */
+    private final Object evictionLock = new Object();
+
     public GroupMemberManager(@NotNull PlayLegendPermission plugin) {
         this.plugin = plugin;
         this.connectionManager = plugin.getConnectionManager();
-        this.asyncDatabaseManager = plugin.getAsyncDatabaseManager();
+        this.evictionDelayTicks = Math.max(0L, this.connectionManager.getConfig().getLong("members.eviction-delay-seconds", DEFAULT_EVICTION_DELAY_SECONDS)) * 20L;
+        this.writeBehindQueue = plugin.getWriteBehindQueue();
+        this.invalidationBus = plugin.getInvalidationBus();
+        this.dialect = this.connectionManager.getDialect();
+        this.saveQuery = this.dialect.upsert("legend.group_member", List.of("uuid", "group_id", "expiration"),
+                "?, " + GroupManager.GROUP_ID_QUERY + ", ?", List.of("uuid", "group_id"));
         this.groupManager = plugin.getGroupManager();
         this.groupPermissionService = plugin.getGroupPermissionManager();
         this.languageManager = plugin.getLanguageManager();
-        scheduler();
+        this.expiryScheduler = new ExpiryScheduler(plugin, this::expire);
+        rebuildIndex();
+        this.expiryScheduler.start();
     }
 
     /**
-     * Starts the scheduler to check if a {@link GroupMemberModel} is expired. <br>
-     * We only check the online players. Because the rank of online players can expire at any time. Offline players, on the other hand, are only checked when they re-enter the server. <br>
-     * This ensures better performance as we don't have to go through the entire cache all the time. If a player comes online and his time has expired, he is placed directly in the default group.
+     * Rebuilds the member index from the member lists of all cached groups. This is called after the groups have been loaded from the database.
      */
-    public void scheduler() {
-        Bukkit.getScheduler().runTaskTimer(this.plugin, () -> {
-            for (Player onlinePlayer : Bukkit.getOnlinePlayers()) {
-                GroupModel groupModel = getOrSetGroup(onlinePlayer.getUniqueId()).getGroup();
-                if (!isExpired(onlinePlayer.getUniqueId())) continue;
+    public void rebuildIndex() {
+        this.memberIndex.clear();
+        this.expiryScheduler.clear();
+        for (GroupModel groupModel : this.groupManager.getGroupCache()) {
+            for (GroupMemberModel member : groupModel.getMembers()) {
+                index(member);
+                this.expiryScheduler.schedule(member);
+            }
+        }
+    }
+
+    /**
+     * Removes all members of a {@link GroupModel} from the member index. This is called when the group is deleted. <br>
+     * Online players without another group are placed in the default group, which happens when another server deleted the group.
+     *
+     * @param groupModel The deleted {@link GroupModel}.
+     */
+    void unindexGroup(@NotNull GroupModel groupModel) {
+        for (GroupMemberModel member : groupModel.getMembers()) {
+            UUID uuid = member.getUuid();
+            unindex(uuid, groupModel);
+            refreshPermissions(uuid);
+
+            Player player = Bukkit.getPlayer(uuid);
+            if (player == null) continue;
 
-                addToDefaultGroup(onlinePlayer.getUniqueId());
-                this.languageManager.sendTranslatedMessage(onlinePlayer, "group_user_expired");
-                this.plugin.getScoreboardManager().update(onlinePlayer);
-                this.plugin.getLogger().info("Removed " + onlinePlayer.getName() + " from group " + groupModel.getName() + " because the group expired!");
+            addToDefaultGroup(uuid);
+            this.plugin.getScoreboardManager().markDirty(player);
+        }
+    }
+
+    /**
+     * Adds a {@link GroupMemberModel} to the member index.
+     *
+     * @param member The {@link GroupMemberModel} to add.
+     */
+    private void index(@NotNull GroupMemberModel member) {
+        this.memberIndex.compute(member.getUuid(), (key, memberships) -> {
+            if (memberships == null) return List.of(member);
+
+            List<GroupMemberModel> updated = new ArrayList<>(memberships.size() + 1);
+            updated.addAll(memberships);
+            updated.add(member);
+            return List.copyOf(updated);
+        });
+    }
+
+    /**
+     * Removes the membership of a {@link UUID} in a {@link GroupModel} from the member index.
+     *
+     * @param uuid       The {@link UUID} of the member.
+     * @param groupModel The {@link GroupModel} of the membership.
+     */
+    private void unindex(@NotNull UUID uuid, @NotNull GroupModel groupModel) {
+        this.memberIndex.computeIfPresent(uuid, (key, memberships) -> {
+            List<GroupMemberModel> updated = memberships.stream()
+                    .filter(member -> member.getGroup() != groupModel)
+                    .toList();
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+
+    /**
+     * Replaces the effective permissions and the attachment of a {@link UUID} with the merged permissions of its current groups. <br>
+     * The attachment is filled with the group with the lowest weight first, so the group with the highest weight decides conflicting nodes.
+     *
+     * @param uuid The {@link UUID} to refresh.
+     */
+    private void refreshPermissions(@NotNull UUID uuid) {
+        List<GroupModel> groups = getGroupModels(uuid);
+        this.groupPermissionService.refreshEffectivePermissions(uuid, groups);
+
+        Player player = Bukkit.getPlayer(uuid);
+        if (player == null) return;
+
+        List<GroupModel> ordered = new ArrayList<>(groups);
+        ordered.sort(GroupModel.PRIORITY_ORDER.reversed());
+        ordered.forEach(groupModel -> this.groupPermissionService.reloadPlayerPermissions(groupModel, player, true));
+    }
+
+    /**
+     * Makes sure the memberships of a {@link UUID} are cached. Without lazy members every membership is cached on startup, so nothing happens. <br>
+     * Otherwise the memberships are read from the database. This blocks, so it must not be called on the main thread.
+     *
+     * @param uuid The {@link UUID} to load.
+     * @return {@code true} if the memberships are cached or the {@link UUID} has none, {@code false} if they could not be loaded.
+     */
+    public boolean ensureLoaded(@NotNull UUID uuid) {
+        return ensureLoaded(List.of(uuid));
+    }
+
+    /**
+     * Makes sure the memberships of several {@link UUID}s are cached. They are read with one query per {@value #LOAD_BATCH_SIZE} uuids
+     * and cached in one task on the main thread. <br>
+     * Only queued writes of these {@link UUID}s are flushed before, so a login does not wait for the writes of everyone else.
+     * Pending evictions of these {@link UUID}s are cancelled, so cached memberships are not removed before the player joins.
+     * This blocks, so it must not be called on the main thread.
+     *
+     * @param uuids The {@link UUID}s to load.
+     * @return {@code true} if the memberships are cached or the {@link UUID}s have none, {@code false} if they could not be loaded.
+     */
+    public boolean ensureLoaded(@NotNull Collection<UUID> uuids) {
+        if (!this.groupManager.isLazyMembers()) return true;
+
+        Set<UUID> missing = new HashSet<>();
+        synchronized (this.evictionLock) {
+            for (UUID uuid : uuids) {
+                this.pendingEvictions.remove(uuid);
+                if (!this.memberIndex.containsKey(uuid)) missing.add(uuid);
             }
-        }, 0L, 20L);
+        }
+        if (missing.isEmpty()) return true;
+
+        // Writes of a previous session may still be queued.
+        this.writeBehindQueue.flush(key -> isMemberKeyOf(key, missing));
+
+        try {
+            Map<UUID, List<LoadedMembership>> memberships = readMemberships(missing);
+            if (memberships.isEmpty()) return true;
+
+            // The cache is only modified on the main thread.
+            Bukkit.getScheduler().callSyncMethod(this.plugin, () -> {
+                memberships.forEach(this::cacheLoadedMemberships);
+                return null;
+            }).get();
+            return true;
+        } catch (SQLException | ExecutionException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "Failed to load " + missing.size() + " group members from database!", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
     }
 
+    /**
+     * @param key   The key of a queued write.
+     * @param uuids The {@link UUID}s to match.
+     * @return Whether the key belongs to a membership of one of the {@link UUID}s.
+     */
+    private boolean isMemberKeyOf(@NotNull String key, @NotNull Set<UUID> uuids) {
+        if (!key.startsWith(MEMBER_KEY_PREFIX)) return false;
+
+        int end = key.indexOf(':', MEMBER_KEY_PREFIX.length());
+        try {
+            return uuids.contains(UUID.fromString(key.substring(MEMBER_KEY_PREFIX.length(), end == -1 ? key.length() : end)));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the memberships of a {@link UUID} from the database and replaces the cached memberships. This is called when another server changed them. <br>
+     * With lazy members, the memberships are only read if they are cached or the player is online.
+     * Queued writes of the {@link UUID} are flushed first, so a local change is not replaced by the state before it.
+     *
+     * @param uuid The {@link UUID} to reload.
+     * @return A future which is completed when the cache has been updated.
+     */
+    public @NotNull CompletableFuture<Void> reloadMember(@NotNull UUID uuid) {
+        if (this.groupManager.isLazyMembers() && !this.memberIndex.containsKey(uuid) && Bukkit.getPlayer(uuid) == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return this.plugin.getAsyncDatabaseManager().supplyAsync(() -> {
+            this.writeBehindQueue.flush(key -> isMemberKeyOf(key, Set.of(uuid)));
+            try {
+                return readMemberships(uuid);
+            } catch (SQLException e) {
+                throw new CompletionException("Failed to read group member " + uuid + " from database!", e);
+            }
+        }).thenCompose(memberships -> Util.runSync(this.plugin, () -> {
+            uncache(uuid);
+            cacheLoadedMemberships(uuid, memberships);
+
+            Player player = Bukkit.getPlayer(uuid);
+            this.groupPermissionService.clearPlayerPermissions(player);
+            refreshPermissions(uuid);
+            if (player != null) this.plugin.getScoreboardManager().markDirty(player);
+        }));
+    }
+
+    /**
+     * Reads the memberships of a {@link UUID} from the database. This blocks, so it must not be called on the main thread.
+     *
+     * @param uuid The {@link UUID} to read.
+     * @return The rows of the member.
+     * @throws SQLException If the rows could not be read.
+     */
+    private @NotNull List<LoadedMembership> readMemberships(@NotNull UUID uuid) throws SQLException {
+        return readMemberships(Set.of(uuid)).getOrDefault(uuid, List.of());
+    }
+
+    /**
+     * Reads the memberships of several {@link UUID}s from the database, with one query per {@value #LOAD_BATCH_SIZE} uuids.
+     * This blocks, so it must not be called on the main thread.
+     *
+     * @param uuids The {@link UUID}s to read.
+     * @return The rows by {@link UUID}. {@link UUID}s without memberships are missing.
+     * @throws SQLException If the rows could not be read.
+     */
+    private @NotNull Map<UUID, List<LoadedMembership>> readMemberships(@NotNull Collection<UUID> uuids) throws SQLException {
+        Map<UUID, List<LoadedMembership>> memberships = new HashMap<>();
+        List<UUID> remaining = new ArrayList<>(uuids);
+
+        try (Connection connection = this.connectionManager.getConnection()) {
+            for (int start = 0; start < remaining.size(); start += LOAD_BATCH_SIZE) {
+                List<UUID> batch = remaining.subList(start, Math.min(start + LOAD_BATCH_SIZE, remaining.size()));
+                try (PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection,
+                        "SELECT membership.id, membership.uuid, grp.name, membership.expiration FROM legend.group_member membership JOIN legend.groups grp ON grp.id = membership.group_id WHERE membership.uuid IN ("
+                                + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")")) {
+                    if (preparedStatement == null) throw new SQLException("The prepared statement is null!");
+
+                    for (int i = 0; i < batch.size(); i++) {
+                        this.dialect.setUUID(preparedStatement, i + 1, batch.get(i));
+                    }
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        while (resultSet.next()) {
+                            memberships.computeIfAbsent(this.dialect.getUUID(resultSet, "uuid"), key -> new ArrayList<>())
+                                    .add(new LoadedMembership(resultSet.getLong("id"), resultSet.getString("name"),
+                                            resultSet.getObject("expiration", LocalDateTime.class)));
+                        }
+                    }
+                }
+            }
+        }
+        return memberships;
+    }
 
     /**
-     * Adds a {@link UUID} to a {@link GroupModel}.
+     * Removes all memberships of a {@link UUID} from the cache without touching the database.
+     *
+     * @param uuid The {@link UUID} to remove.
+     */
+    private void uncache(@NotNull UUID uuid) {
+        List<GroupMemberModel> memberships = this.memberIndex.remove(uuid);
+        if (memberships == null) return;
+
+        memberships.forEach(member -> member.getGroup().getMembers().remove(member));
+    }
+
+    /**
+     * Adds the memberships which were read from the database to the cache, unless the {@link UUID} has been cached in the meantime.
+     *
+     * @param uuid        The {@link UUID} of the member.
+     * @param memberships The rows of the member.
+     */
+    private void cacheLoadedMemberships(@NotNull UUID uuid, @NotNull List<LoadedMembership> memberships) {
+        if (this.memberIndex.containsKey(uuid)) return;
+
+        for (LoadedMembership membership : memberships) {
+            Optional<GroupModel> optional = this.groupManager.findByName(membership.name());
+            if (optional.isEmpty()) continue;
+
+            GroupModel groupModel = optional.get();
+            GroupMemberModel member = new GroupMemberModel(membership.id(), uuid, membership.expiration(), groupModel);
+            groupModel.getMembers().add(member);
+            index(member);
+            this.expiryScheduler.schedule(member);
+        }
+    }
+
+    /**
+     * Removes the membership of a {@link UUID} from the cache after the configured delay, if the player is not online by then. <br>
+     * The eviction is cancelled by {@link #ensureLoaded(Collection)}, e.g. when the player logs in again, and replaced by a later eviction of the same {@link UUID}.
+     * Without lazy members nothing happens. The database is not touched.
+     *
+     * @param uuid The {@link UUID} to evict.
+     */
+    public void evictLater(@NotNull UUID uuid) {
+        if (!this.groupManager.isLazyMembers()) return;
+
+        Object eviction = new Object();
+        this.pendingEvictions.put(uuid, eviction);
+        Bukkit.getScheduler().runTaskLater(this.plugin, () -> {
+            synchronized (this.evictionLock) {
+                if (!this.pendingEvictions.remove(uuid, eviction) || Bukkit.getPlayer(uuid) != null) return;
+
+                uncache(uuid);
+            }
+        }, this.evictionDelayTicks);
+    }
+
+    /**
+     * Stops the {@link ExpiryScheduler}. This is called when the plugin is disabled.
+     */
+    public void stopExpiryScheduler() {
+        this.expiryScheduler.shutdown();
+    }
+
+    /**
+     * Called by the {@link ExpiryScheduler} on the main thread when a {@link GroupMemberModel} expired. <br>
+     * Only members with an expiration are queued, so this costs nothing while no rank expires. The membership is removed and
+     * the player is placed in the default group if no other group is left. If the player is online, the player is informed and the scoreboard is updated.
+     *
+     * @param member The expired {@link GroupMemberModel}.
+     */
+    private void expire(@NotNull GroupMemberModel member) {
+        // The membership may have been removed or replaced since it was queued.
+        if (!getGroups(member.getUuid()).contains(member)) return;
+
+        if (!isExpired(member)) {
+            this.expiryScheduler.schedule(member);
+            return;
+        }
+
+        GroupModel groupModel = member.getGroup();
+        removeMember(member.getUuid(), groupModel.getName());
+        addToDefaultGroup(member.getUuid());
+
+        Player player = Bukkit.getPlayer(member.getUuid());
+        if (player == null) {
+            this.plugin.getLogger().info("Removed " + member.getUuid() + " from group " + groupModel.getName() + " because the group expired!");
+            return;
+        }
+
+        this.languageManager.sendTranslatedMessage(player, "group_user_expired");
+        this.plugin.getScoreboardManager().markDirty(player);
+        this.plugin.getLogger().info("Removed " + player.getName() + " from group " + groupModel.getName() + " because the group expired!");
+    }
+
+    /**
+     * Adds a {@link UUID} to a {@link GroupModel}. Other memberships are kept, only an existing membership in the same {@link GroupModel} is replaced. <br>
+     * The membership in the default group is removed, because it is only assigned while the {@link UUID} has no other group.
      *
      * @param uuid       The {@link UUID} to add.
      * @param name       The name of the {@link GroupModel} to add the {@link UUID} to.
@@ -75,15 +425,21 @@ public class GroupMemberManager {
         Optional<GroupModel> optional = this.groupManager.findByName(name);
         if (optional.isEmpty()) return;
 
-        GroupMemberModel groupMemberModel = getGroup(uuid);
-        if (groupMemberModel != null) {
-            removeMember(uuid, groupMemberModel.getGroup().getName());
+        GroupModel model = optional.get();
+        if (getMembership(uuid, model) != null) {
+            removeMember(uuid, model.getName());
+        }
+
+        boolean isDefault = model.getName().equalsIgnoreCase(DEFAULT_GROUP);
+        if (!isDefault && getMembership(uuid, DEFAULT_GROUP) != null) {
+            removeMember(uuid, DEFAULT_GROUP);
         }
 
-        GroupModel model = optional.get();
         GroupMemberModel groupMemberModelToAdd = new GroupMemberModel(uuid, expiration, model);
         model.getMembers().add(groupMemberModelToAdd);
-        this.groupPermissionService.reloadPlayerPermissions(model, Bukkit.getPlayer(uuid), true);
+        index(groupMemberModelToAdd);
+        this.expiryScheduler.schedule(groupMemberModelToAdd);
+        refreshPermissions(uuid);
 
         save(model, groupMemberModelToAdd);
     }
@@ -101,27 +457,127 @@ public class GroupMemberManager {
         GroupModel groupModel = optional.get();
         this.groupPermissionService.reloadPlayerPermissions(groupModel, Bukkit.getPlayer(uuid), false);
         groupModel.getMembers().removeIf(member -> member.getUuid().equals(uuid));
+        unindex(uuid, groupModel);
+        refreshPermissions(uuid);
 
         delete(groupModel, uuid);
     }
 
     /**
-     * Adds a {@link UUID} to the default {@link GroupModel}.
+     * Adds many {@link UUID}s to a {@link GroupModel} at once, e.g. for a seasonal reset. Every {@link UUID} is handled like in {@link #addMember(UUID, String, LocalDateTime)},
+     * but the member lists of the groups are changed in one pass, every {@link UUID} is indexed once and all rows are queued together, so they are written in one transaction.
+     *
+     * @param uuids      The {@link UUID}s to add.
+     * @param name       The name of the {@link GroupModel} to add the {@link UUID}s to.
+     * @param expiration The expiration of the memberships. Or {@code null} if the group should not expire.
+     * @return The amount of added {@link UUID}s.
+     */
+    public int addMembers(@NotNull Collection<UUID> uuids, @NotNull String name, @Nullable LocalDateTime expiration) {
+        Optional<GroupModel> optional = this.groupManager.findByName(name);
+        if (optional.isEmpty()) return 0;
+
+        GroupModel model = optional.get();
+        GroupModel defaultGroup = model.getName().equalsIgnoreCase(DEFAULT_GROUP) ? null : this.groupManager.findByName(DEFAULT_GROUP).orElse(null);
+        Set<UUID> targets = new LinkedHashSet<>(uuids);
+
+        // Existing memberships in the group are replaced and the default group is left.
+        model.getMembers().removeIf(member -> targets.contains(member.getUuid()));
+        if (defaultGroup != null) defaultGroup.getMembers().removeIf(member -> targets.contains(member.getUuid()));
+
+        List<PendingWrite> writes = new ArrayList<>(targets.size());
+        List<GroupMemberModel> added = new ArrayList<>(targets.size());
+        for (UUID uuid : targets) {
+            Player player = Bukkit.getPlayer(uuid);
+            if (getMembership(uuid, model) != null) this.groupPermissionService.reloadPlayerPermissions(model, player, false);
+            if (defaultGroup != null && getMembership(uuid, defaultGroup) != null) {
+                this.groupPermissionService.reloadPlayerPermissions(defaultGroup, player, false);
+                writes.add(createDeleteWrite(defaultGroup, uuid));
+            }
+
+            GroupMemberModel member = new GroupMemberModel(uuid, expiration, model);
+            this.memberIndex.compute(uuid, (key, memberships) -> {
+                List<GroupMemberModel> updated = new ArrayList<>();
+                if (memberships != null) {
+                    for (GroupMemberModel membership : memberships) {
+                        if (membership.getGroup() != model && membership.getGroup() != defaultGroup) updated.add(membership);
+                    }
+                }
+                updated.add(member);
+                return List.copyOf(updated);
+            });
+            this.expiryScheduler.schedule(member);
+            if (player != null) refreshPermissions(uuid);
+
+            added.add(member);
+            writes.add(createSaveWrite(model, member));
+        }
+        model.getMembers().addAll(added);
+
+        this.writeBehindQueue.enqueueAll(writes);
+        targets.forEach(uuid -> this.invalidationBus.publish(InvalidationEvent.member(model.getName(), uuid)));
+        return added.size();
+    }
+
+    /**
+     * Removes many {@link UUID}s from a {@link GroupModel} at once. Every {@link UUID} is handled like in {@link #removeMember(UUID, String)}, followed by {@link #addToDefaultGroup(UUID)},
+     * but the member list of the group is scanned once and all rows are queued together, so they are written in one transaction.
+     *
+     * @param uuids The {@link UUID}s to remove.
+     * @param name  The name of the {@link GroupModel} to remove the {@link UUID}s from.
+     * @return The amount of removed {@link UUID}s.
+     */
+    public int removeMembers(@NotNull Collection<UUID> uuids, @NotNull String name) {
+        Optional<GroupModel> optional = this.groupManager.findByName(name);
+        if (optional.isEmpty()) return 0;
+
+        GroupModel groupModel = optional.get();
+        Set<UUID> targets = new HashSet<>(uuids);
+        Set<UUID> removed = new LinkedHashSet<>();
+        groupModel.getMembers().removeIf(member -> targets.contains(member.getUuid()) && removed.add(member.getUuid()));
+
+        List<PendingWrite> writes = new ArrayList<>(removed.size());
+        List<UUID> withoutGroup = new ArrayList<>();
+        for (UUID uuid : removed) {
+            Player player = Bukkit.getPlayer(uuid);
+            this.groupPermissionService.reloadPlayerPermissions(groupModel, player, false);
+            unindex(uuid, groupModel);
+            if (player != null) refreshPermissions(uuid);
+
+            writes.add(createDeleteWrite(groupModel, uuid));
+            if (!hasGroup(uuid)) withoutGroup.add(uuid);
+        }
+
+        this.writeBehindQueue.enqueueAll(writes);
+        removed.forEach(uuid -> this.invalidationBus.publish(InvalidationEvent.member(groupModel.getName(), uuid)));
+
+        if (!withoutGroup.isEmpty()) {
+            if (this.groupManager.findByName(DEFAULT_GROUP).isEmpty()) {
+                this.groupManager.save(new GroupModel(DEFAULT_GROUP, DEFAULT_GROUP));
+            }
+            addMembers(withoutGroup, DEFAULT_GROUP, null);
+        }
+        return removed.size();
+    }
+
+    /**
+     * Adds a {@link UUID} to the default {@link GroupModel}, if the {@link UUID} is in no other {@link GroupModel}.
      *
      * @param uuid The {@link UUID} to add.
      */
     public void addToDefaultGroup(@NotNull UUID uuid) {
-        Optional<GroupModel> optional = this.groupManager.findByName("default");
+        if (hasGroup(uuid)) return;
+
+        Optional<GroupModel> optional = this.groupManager.findByName(DEFAULT_GROUP);
         if (optional.isEmpty()) {
-            GroupModel groupModel = new GroupModel("default", "default");
+            GroupModel groupModel = new GroupModel(DEFAULT_GROUP, DEFAULT_GROUP);
             this.groupManager.save(groupModel);
         }
 
-        addMember(uuid, "default", null);
+        addMember(uuid, DEFAULT_GROUP, null);
     }
 
     /**
-     * Get the {@link GroupMemberModel} of a {@link UUID}. Or creates a new {@link GroupMemberModel} if the {@link UUID} is not in a {@link GroupMemberModel}.
+     * Get the primary {@link GroupMemberModel} of a {@link UUID}. Or creates a new {@link GroupMemberModel} if the {@link UUID} is not in a {@link GroupMemberModel}.
      *
      * @param uuid The {@link UUID} to get the {@link GroupMemberModel} of.
      * @return The {@link GroupMemberModel} of the {@link UUID}
@@ -136,30 +592,69 @@ public class GroupMemberManager {
 
 
     /**
-     * Get the {@link GroupMemberModel} of a {@link UUID}.
+     * Get the primary {@link GroupMemberModel} of a {@link UUID}. This is the membership in the {@link GroupModel} with the highest weight.
      *
      * @param uuid The {@link UUID} to get the {@link GroupMemberModel} of.
      * @return The {@link GroupMemberModel} of the {@link UUID} or {@code null} if the {@link UUID} is not in a {@link GroupMemberModel}.
      */
     public @Nullable GroupMemberModel getGroup(@NotNull UUID uuid) {
-        List<GroupModel> groups = this.groupManager.getGroupCache();
-
-        return groups.stream()
-                // Get all members of the group
-                .map(group -> group.getMembers().stream()
-                        // Filter for the uuid
-                        .filter(member -> member.getUuid().equals(uuid))
-                        // Get the first member
-                        .findFirst()
-                        // Return null if no member was found
-                        .orElse(null)
-                )
-                // Filter for non null members
-                .filter(Objects::nonNull)
-                // Get the first member
-                .findFirst()
-                // Return null if no member was found
-                .orElse(null);
+        List<GroupMemberModel> memberships = this.memberIndex.get(uuid);
+        if (memberships == null) return null;
+
+        GroupMemberModel primary = memberships.get(0);
+        for (int i = 1; i < memberships.size(); i++) {
+            GroupMemberModel member = memberships.get(i);
+            if (GroupModel.PRIORITY_ORDER.compare(member.getGroup(), primary.getGroup()) < 0) primary = member;
+        }
+        return primary;
+    }
+
+    /**
+     * Get all {@link GroupMemberModel}s of a {@link UUID}.
+     *
+     * @param uuid The {@link UUID} to get the {@link GroupMemberModel}s of.
+     * @return An immutable list of the memberships, empty if the {@link UUID} is not in a {@link GroupModel}.
+     */
+    public @NotNull List<GroupMemberModel> getGroups(@NotNull UUID uuid) {
+        return this.memberIndex.getOrDefault(uuid, List.of());
+    }
+
+    /**
+     * Get all {@link GroupModel}s of a {@link UUID}.
+     *
+     * @param uuid The {@link UUID} to get the {@link GroupModel}s of.
+     * @return The {@link GroupModel}s, empty if the {@link UUID} is not in a {@link GroupModel}.
+     */
+    public @NotNull List<GroupModel> getGroupModels(@NotNull UUID uuid) {
+        return getGroups(uuid).stream().map(GroupMemberModel::getGroup).toList();
+    }
+
+    /**
+     * Get the membership of a {@link UUID} in a {@link GroupModel}.
+     *
+     * @param uuid The {@link UUID} of the member.
+     * @param name The name of the {@link GroupModel}.
+     * @return The {@link GroupMemberModel} or {@code null} if the {@link UUID} is not in the {@link GroupModel}.
+     */
+    private @Nullable GroupMemberModel getMembership(@NotNull UUID uuid, @NotNull String name) {
+        for (GroupMemberModel member : getGroups(uuid)) {
+            if (member.getGroup().getName().equalsIgnoreCase(name)) return member;
+        }
+        return null;
+    }
+
+    /**
+     * Get the membership of a {@link UUID} in a {@link GroupModel}.
+     *
+     * @param uuid       The {@link UUID} of the member.
+     * @param groupModel The {@link GroupModel}.
+     * @return The {@link GroupMemberModel} or {@code null} if the {@link UUID} is not in the {@link GroupModel}.
+     */
+    private @Nullable GroupMemberModel getMembership(@NotNull UUID uuid, @NotNull GroupModel groupModel) {
+        for (GroupMemberModel member : getGroups(uuid)) {
+            if (member.getGroup() == groupModel) return member;
+        }
+        return null;
     }
 
     /**
@@ -170,11 +665,8 @@ public class GroupMemberManager {
      * @return {@code true} if the {@link UUID} is in the {@link GroupModel}, otherwise {@code false}.
      */
     public boolean inGroup(@NotNull UUID uuid, @NotNull String name) {
-        Optional<GroupModel> optional = this.groupManager.findByName(name);
-        if (optional.isEmpty()) return false;
-
-        GroupModel groupModel = optional.get();
-        return groupModel.getMembers().stream().anyMatch(member -> member.getUuid().equals(uuid) && !isExpired(uuid));
+        GroupMemberModel member = getMembership(uuid, name);
+        return member != null && !isExpired(member);
     }
 
 
@@ -185,75 +677,115 @@ public class GroupMemberManager {
      * @return {@code true} if the {@link UUID} is in any {@link GroupModel}, otherwise {@code false}.
      */
     public boolean hasGroup(@NotNull UUID uuid) {
-        List<GroupModel> groupCache = this.groupManager.getGroupCache();
-        return groupCache.stream().anyMatch(groupModel -> groupModel.getMembers().stream().anyMatch(member -> member.getUuid().equals(uuid)));
+        return this.memberIndex.containsKey(uuid);
     }
 
     /**
-     * Checks if the group of a {@link UUID} is expired.
+     * Checks if the primary group of a {@link UUID} is expired.
      *
      * @param uuid The {@link UUID} to check.
      * @return {@code true} if the group is expired, otherwise {@code false}.
      */
     public boolean isExpired(@NotNull UUID uuid) {
-        boolean hasGroup = hasGroup(uuid);
-        if (!hasGroup) return false;
+        GroupMemberModel groupMemberModel = getGroup(uuid);
+        if (groupMemberModel == null) return false;
+
+        return isExpired(groupMemberModel);
+    }
 
-        GroupMemberModel groupMemberModel = getOrSetGroup(uuid);
+    /**
+     * Checks if a {@link GroupMemberModel} is expired.
+     *
+     * @param groupMemberModel The {@link GroupMemberModel} to check.
+     * @return {@code true} if the membership is expired, otherwise {@code false}.
+     */
+    private boolean isExpired(@NotNull GroupMemberModel groupMemberModel) {
         return groupMemberModel.getExpiration() != null && groupMemberModel.getExpiration().isBefore(LocalDateTime.now());
     }
 
     /**
-     * Saves a {@link GroupMemberModel} async to the database.
+     * Queues a {@link GroupMemberModel} to be saved to the database.
      *
      * @param groupModel       The {@link GroupModel} to save.
      * @param groupMemberModel The {@link GroupMemberModel} to save.
      */
     public void save(@NotNull GroupModel groupModel, @NotNull GroupMemberModel groupMemberModel) {
-        this.asyncDatabaseManager.executeAsync(() -> {
-            try (Connection connection = this.connectionManager.getConnection();
-                 PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection,
-                         "INSERT INTO legend.group_member (uuid, name, expiration) VALUES (?, ?, ?) " +
-                                 "ON DUPLICATE KEY UPDATE expiration = VALUES(expiration)")) {
-
-                if (preparedStatement == null) {
-                    this.plugin.getLogger().severe("Failed to save group member " + groupMemberModel.getUuid() + " to database, because the prepared statement is null!");
-                    return;
-                }
-
-                preparedStatement.setObject(1, groupMemberModel.getUuid());
-                preparedStatement.setString(2, groupModel.getName());
-                preparedStatement.setObject(3, groupMemberModel.getExpiration());
-
-                preparedStatement.executeUpdate();
-            } catch (SQLException e) {
-                this.plugin.getLogger().log(Level.SEVERE, "Failed to save group member " + groupMemberModel.getUuid() + " to database!", e);
-            }
-        });
+        this.writeBehindQueue.enqueue(createSaveWrite(groupModel, groupMemberModel));
+        this.invalidationBus.publish(InvalidationEvent.member(groupModel.getName(), groupMemberModel.getUuid()));
     }
 
     /**
-     * Deletes a {@link GroupMemberModel} async from the database.
+     * Queues a {@link GroupMemberModel} to be deleted from the database.
      *
      * @param groupModel The {@link GroupModel} to delete.
      * @param uuid       The {@link UUID} to delete.
      */
     public void delete(@NotNull GroupModel groupModel, @NotNull UUID uuid) {
-        this.asyncDatabaseManager.executeAsync(() -> {
-            try (Connection connection = this.connectionManager.getConnection();
-                 PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection, "DELETE FROM legend.group_member WHERE uuid = ? AND name = ?")) {
-                if (preparedStatement == null) {
-                    this.plugin.getLogger().severe("Failed to delete group member " + uuid + " from database, because the prepared statement is null!");
-                    return;
-                }
+        this.writeBehindQueue.enqueue(createDeleteWrite(groupModel, uuid));
+        this.invalidationBus.publish(InvalidationEvent.member(groupModel.getName(), uuid));
+    }
 
-                preparedStatement.setObject(1, uuid);
-                preparedStatement.setString(2, groupModel.getName());
+    /**
+     * @param groupModel       The {@link GroupModel} of the membership.
+     * @param groupMemberModel The {@link GroupMemberModel} to save.
+     * @return The write which saves the membership.
+     */
+    private @NotNull PendingWrite createSaveWrite(@NotNull GroupModel groupModel, @NotNull GroupMemberModel groupMemberModel) {
+        String name = groupModel.getName();
+        return new PendingWrite(toKey(groupMemberModel.getUuid(), name),
+                "member_save",
+                this.saveQuery,
+                false,
+                statement -> {
+                    this.dialect.setUUID(statement, 1, groupMemberModel.getUuid());
+                    statement.setString(2, name);
+                    statement.setObject(3, groupMemberModel.getExpiration());
+                });
+    }
 
-                preparedStatement.executeUpdate();
-            } catch (SQLException e) {
-                this.plugin.getLogger().log(Level.SEVERE, "Failed to delete group member " + uuid + " from database!", e);
-            }
-        });
+    /**
+     * @param groupModel The {@link GroupModel} of the membership.
+     * @param uuid       The {@link UUID} of the membership.
+     * @return The write which deletes the membership.
+     */
+    private @NotNull PendingWrite createDeleteWrite(@NotNull GroupModel groupModel, @NotNull UUID uuid) {
+        String name = groupModel.getName();
+        return new PendingWrite(toKey(uuid, name),
+                "member_delete",
+                "DELETE FROM legend.group_member WHERE uuid = ? AND group_id = " + GroupManager.GROUP_ID_QUERY,
+                false,
+                statement -> {
+                    this.dialect.setUUID(statement, 1, uuid);
+                    statement.setString(2, name);
+                });
+    }
+
+    /**
+     * Builds the key of a member row for the {@link WriteBehindQueue}.
+     *
+     * @param uuid The {@link UUID} of the member.
+     * @param name The name of the {@link GroupModel}.
+     * @return The key of the row.
+     */
+    private @NotNull String toKey(@NotNull UUID uuid, @NotNull String name) {
+        return MEMBER_KEY_PREFIX + uuid + ":" + name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A membership which was read from the database, but not yet added to the cache.
+     *
+     * @param id         The id of the row.
+     * @param name       The name of the {@link GroupModel}.
+     * @param expiration The expiration or {@code null} if the membership is permanent.
+     */
+    private record LoadedMembership(long id, @NotNull String name, @Nullable LocalDateTime expiration) {
+    }
+
+    @Override
+    public void collect(@NotNull MetricsWriter writer) {
+        writer.gauge("legend_cache_entries", "Entries in the caches of the plugin.", this.memberIndex.size(), "cache", "members");
+        writer.gauge("legend_expiry_queued", "Memberships with an expiration which are waiting to expire.", this.expiryScheduler.size());
+        writer.counter("legend_expiry_handled_total", "Expired memberships which were handled on the main thread.", this.expiryScheduler.getHandledMembers());
+        writer.histogram("legend_expiry_sweep_seconds", "Time the main thread took to handle a batch of expired memberships.", this.expiryScheduler.getSweepLatency());
     }
-}
\ No newline at end of file
+}
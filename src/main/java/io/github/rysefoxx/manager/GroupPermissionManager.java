@@ -1,52 +1,77 @@
 package io.github.rysefoxx.manager;
 
 import io.github.rysefoxx.PlayLegendPermission;
-import io.github.rysefoxx.database.AsyncDatabaseManager;
-import io.github.rysefoxx.database.ConnectionManager;
+import io.github.rysefoxx.database.InvalidationBus;
+import io.github.rysefoxx.database.InvalidationEvent;
+import io.github.rysefoxx.database.PendingWrite;
+import io.github.rysefoxx.database.WriteBehindQueue;
+import io.github.rysefoxx.metrics.MetricsSource;
+import io.github.rysefoxx.metrics.MetricsWriter;
+import io.github.rysefoxx.metrics.PermissionMetrics;
 import io.github.rysefoxx.model.GroupMemberModel;
 import io.github.rysefoxx.model.GroupModel;
 import io.github.rysefoxx.model.GroupPermissionModel;
+import io.github.rysefoxx.permission.EffectivePermissions;
+import lombok.Getter;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.permissions.PermissionAttachment;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
-import java.util.logging.Level;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Rysefoxx
  * @since 02.01.2024
  */
-public class GroupPermissionManager {
+public class GroupPermissionManager implements MetricsSource {
+
+    private static final int DEFAULT_SAMPLE_RATE = 64;
 
     private final PlayLegendPermission plugin;
-    private final ConnectionManager connectionManager;
-    private final AsyncDatabaseManager asyncDatabaseManager;
-    private final HashMap<UUID, PermissionAttachment> attachments = new HashMap<>();
+    private final WriteBehindQueue writeBehindQueue;
+    private final InvalidationBus invalidationBus;
+    private final String saveQuery;
+    /**
+     * The attachment of every online player. It is read by the metrics exporter, so it has to be thread-safe.
+     */
+    private final Map<UUID, PermissionAttachment> attachments = new ConcurrentHashMap<>();
+
+    /**
+     * The precomputed permissions of every online player. Permission checks only read these, so they never have to look up the group.
+     */
+    private final Map<UUID, EffectivePermissions> effectivePermissions = new ConcurrentHashMap<>();
+
+    /**
+     * The metrics of the permission checks, which can be toggled with /group debug perms.
+     */
+    @Getter
+    private final PermissionMetrics permissionMetrics;
 
     public GroupPermissionManager(@NotNull PlayLegendPermission plugin) {
         this.plugin = plugin;
-        this.connectionManager = plugin.getConnectionManager();
-        this.asyncDatabaseManager = plugin.getAsyncDatabaseManager();
+        this.permissionMetrics = new PermissionMetrics(plugin.getConfig().getBoolean("metrics.permissions.enabled", false),
+                plugin.getConfig().getInt("metrics.permissions.sample-rate", DEFAULT_SAMPLE_RATE));
+        this.writeBehindQueue = plugin.getWriteBehindQueue();
+        this.invalidationBus = plugin.getInvalidationBus();
+        this.saveQuery = plugin.getConnectionManager().getDialect()
+                .insertIgnore("legend.group_permission", List.of("permission", "group_id"), "?, " + GroupManager.GROUP_ID_QUERY);
     }
 
     /**
-     * Adds a permission to a group.
+     * Adds a permission to a group. Permissions starting with {@code -} deny the permission.
      *
      * @param permission The permission to add
      * @param groupModel The group to add the permission to
      */
     public void addPermission(@NotNull String permission, @NotNull GroupModel groupModel) {
-        groupModel.getPermissions().add(new GroupPermissionModel(permission, groupModel));
+        groupModel.addPermission(new GroupPermissionModel(permission, groupModel));
+        this.plugin.getGroupManager().resolvePermissions();
         save(groupModel, permission);
 
         reloadPlayerPermissions(groupModel, true);
@@ -59,21 +84,89 @@ public class GroupPermissionManager {
      * @param groupModel The group to remove the permission from
      */
     public void removePermission(@NotNull String permission, @NotNull GroupModel groupModel) {
-        groupModel.getPermissions().removeIf(permissionModel -> permissionModel.getPermission().equalsIgnoreCase(permission));
+        groupModel.removePermissions(permissionModel -> permissionModel.getPermission().equalsIgnoreCase(permission));
+        this.plugin.getGroupManager().resolvePermissions();
         delete(groupModel, permission);
 
         reloadPlayerPermissions(groupModel, false);
     }
 
     /**
-     * Checks if a group has a permission.
+     * Checks if a group has a permission node itself. Only the exact node is checked, wildcards are not expanded and inherited nodes are ignored. <br>
+     * {@code -essentials.fly} and {@code essentials.fly} are different nodes.
      *
      * @param permission The permission to check
      * @param groupModel The group to check
      * @return true if the group has the permission, false otherwise
      */
     public boolean hasPermission(@NotNull String permission, @NotNull GroupModel groupModel) {
-        return groupModel.getPermissions().stream().anyMatch(groupPermissionModel -> groupPermissionModel.getPermission().equalsIgnoreCase(permission));
+        for (GroupPermissionModel permissionModel : groupModel.getPermissions()) {
+            if (permissionModel.getPermission().equalsIgnoreCase(permission)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a group grants a permission. In contrast to {@link #hasPermission(String, GroupModel)} wildcards like {@code *} or {@code essentials.*} are expanded,
+     * inherited nodes are included and denied nodes are respected.
+     *
+     * @param permission The permission to check
+     * @param groupModel The group to check
+     * @return true if the group grants the permission, false otherwise
+     */
+    public boolean isGranted(@NotNull String permission, @NotNull GroupModel groupModel) {
+        return groupModel.getPermissionTrie().isGranted(permission);
+    }
+
+    /**
+     * Gets the effective permissions of a player. Reading never creates an entry, so checks for players who left do not fill the cache.
+     *
+     * @param uuid The uuid of the player
+     * @return The effective permissions of the player or {@link EffectivePermissions#EMPTY} if they have not been loaded by {@link #loadEffectivePermissions(UUID, List)}.
+     */
+    public @NotNull EffectivePermissions getEffectivePermissions(@NotNull UUID uuid) {
+        return this.effectivePermissions.getOrDefault(uuid, EffectivePermissions.EMPTY);
+    }
+
+    /**
+     * Builds the effective permissions of a player. This is called when the player joins, before the permissible base of the player is injected.
+     *
+     * @param uuid   The uuid of the player
+     * @param groups The groups of the player
+     */
+    public void loadEffectivePermissions(@NotNull UUID uuid, @NotNull List<GroupModel> groups) {
+        this.effectivePermissions.computeIfAbsent(uuid, key -> new EffectivePermissions()).update(groups);
+    }
+
+    /**
+     * Replaces the effective permissions of a player after the groups of the player changed. Players which are not online are ignored.
+     *
+     * @param uuid   The uuid of the player
+     * @param groups The new groups of the player
+     */
+    public void refreshEffectivePermissions(@NotNull UUID uuid, @NotNull List<GroupModel> groups) {
+        EffectivePermissions permissions = this.effectivePermissions.get(uuid);
+        if (permissions == null) return;
+
+        permissions.update(groups);
+    }
+
+    /**
+     * Replaces the effective permissions of every online player after the permissions of the groups have been resolved again.
+     */
+    public void refreshEffectivePermissions() {
+        for (EffectivePermissions permissions : this.effectivePermissions.values()) {
+            permissions.update(permissions.getSources());
+        }
+    }
+
+    /**
+     * Removes the effective permissions of a player. This is called when the player leaves.
+     *
+     * @param uuid The uuid of the player
+     */
+    public void unloadEffectivePermissions(@NotNull UUID uuid) {
+        this.effectivePermissions.remove(uuid);
     }
 
     /**
@@ -101,17 +194,36 @@ public class GroupPermissionManager {
     public void reloadPlayerPermissions(@NotNull GroupModel groupModel, @Nullable Player player, boolean add) {
         if (player == null) return;
 
-        addPermissionAttachmentIfNotFound(player);
-        PermissionAttachment permissionAttachment = this.attachments.get(player.getUniqueId());
-
         if (!add) {
-            permissionAttachment.getPermissions().keySet().forEach(permissionAttachment::unsetPermission);
+            clearPlayerPermissions(player);
             return;
         }
 
-        for (GroupPermissionModel permission : groupModel.getPermissions()) {
-            permissionAttachment.setPermission(permission.getPermission(), true);
-        }
+        addPermissionAttachmentIfNotFound(player);
+        groupModel.getResolvedPermissions().forEach(this.attachments.get(player.getUniqueId())::setPermission);
+    }
+
+    /**
+     * Removes all permissions of the groups from the attachment of a player.
+     *
+     * @param player The player to remove the permissions from
+     */
+    public void clearPlayerPermissions(@Nullable Player player) {
+        if (player == null) return;
+
+        addPermissionAttachmentIfNotFound(player);
+        PermissionAttachment permissionAttachment = this.attachments.get(player.getUniqueId());
+        permissionAttachment.getPermissions().keySet().forEach(permissionAttachment::unsetPermission);
+    }
+
+    /**
+     * Removes the attachment of a player who left, so the player is not kept in memory. When the player has no attachment, nothing will happen.
+     *
+     * @param player The player to remove the attachment from
+     */
+    public void unloadAttachment(@NotNull Player player) {
+        PermissionAttachment permissionAttachment = this.attachments.remove(player.getUniqueId());
+        if (permissionAttachment != null) player.removeAttachment(permissionAttachment);
     }
 
     /**
@@ -126,55 +238,65 @@ public class GroupPermissionManager {
     }
 
     /**
-     * Saves a group permission async to the database.
+     * Queues a group permission to be saved to the database.
      *
      * @param groupModel The group to save.
      * @param permission The permission to save.
      */
     public void save(@NotNull GroupModel groupModel, @NotNull String permission) {
-        this.asyncDatabaseManager.executeAsync(() -> {
-            try (Connection connection = this.connectionManager.getConnection();
-                 PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection,
-                         "INSERT INTO legend.group_permission (permission, name) VALUES (?, ?) " +
-                                 "ON DUPLICATE KEY UPDATE permission = VALUES(permission), name = VALUES(name)")) {
-
-                if (preparedStatement == null) {
-                    this.plugin.getLogger().severe("Failed to save group permission " + permission + " to database, because the prepared statement is null!");
-                    return;
-                }
-
-                preparedStatement.setString(1, permission);
-                preparedStatement.setString(2, groupModel.getName());
-
-                preparedStatement.executeUpdate();
-            } catch (SQLException e) {
-                this.plugin.getLogger().log(Level.SEVERE, "Failed to save group permission " + permission + " to database!", e);
-            }
-        });
+        String name = groupModel.getName();
+        this.writeBehindQueue.enqueue(new PendingWrite(toKey(name, permission),
+                "permission_save",
+                this.saveQuery,
+                false,
+                statement -> {
+                    statement.setString(1, permission);
+                    statement.setString(2, name);
+                }));
+        this.invalidationBus.publish(InvalidationEvent.permissions(name));
     }
 
     /**
-     * Deletes a group permission async from the database.
+     * Queues a group permission to be deleted from the database.
      *
      * @param groupModel The group to delete.
      * @param permission The permission to delete.
      */
     public void delete(@NotNull GroupModel groupModel, @NotNull String permission) {
-        this.asyncDatabaseManager.executeAsync(() -> {
-            try (Connection connection = this.connectionManager.getConnection();
-                 PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection, "DELETE FROM legend.group_permission WHERE permission = ? AND name = ?")) {
-                if (preparedStatement == null) {
-                    this.plugin.getLogger().severe("Failed to delete group permission " + permission + ", because the prepared statement is null!");
-                    return;
-                }
-
-                preparedStatement.setString(1, permission);
-                preparedStatement.setString(2, groupModel.getName());
-
-                preparedStatement.executeUpdate();
-            } catch (SQLException e) {
-                this.plugin.getLogger().log(Level.SEVERE, "Failed to delete groups permission " + groupModel.getName() + " to database!", e);
-            }
-        });
-    }
-}
\ No newline at end of file
+        String name = groupModel.getName();
+        this.writeBehindQueue.enqueue(new PendingWrite(toKey(name, permission),
+                "permission_delete",
+                "DELETE FROM legend.group_permission WHERE permission = ? AND group_id = " + GroupManager.GROUP_ID_QUERY,
+                false,
+                statement -> {
+                    statement.setString(1, permission);
+                    statement.setString(2, name);
+                }));
+        this.invalidationBus.publish(InvalidationEvent.permissions(name));
+    }
+
+    /**
+     * Builds the key of a permission row for the {@link WriteBehindQueue}.
+     *
+     * @param name       The name of the group.
+     * @param permission The permission.
+     * @return The key of the row.
+     */
+    private @NotNull String toKey(@NotNull String name, @NotNull String permission) {
+        return "permission:" + name.toLowerCase(Locale.ROOT) + ":" + permission.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void collect(@NotNull MetricsWriter writer) {
+        writer.gauge("legend_cache_entries", "Entries in the caches of the plugin.", this.attachments.size(), "cache", "attachments");
+        writer.gauge("legend_cache_entries", "Entries in the caches of the plugin.", this.effectivePermissions.size(), "cache", "effective_permissions");
+
+        // The permission checks are only counted while the metrics of /group debug perms are enabled.
+        writer.gauge("legend_permission_metrics_enabled", "Whether permission checks are counted.", this.permissionMetrics.isEnabled() ? 1 : 0);
+        writer.counter("legend_permission_checks_total", "Counted permission checks of other plugins.", this.permissionMetrics.getChecks());
+        writer.counter("legend_permission_lookups_total", "Counted permission lookups by result.", this.permissionMetrics.getHits(), "result", "hit");
+        writer.counter("legend_permission_lookups_total", "Counted permission lookups by result.", this.permissionMetrics.getMisses(), "result", "miss");
+        writer.counter("legend_permission_lookups_total", "Counted permission lookups by result.", this.permissionMetrics.getOpChecks(), "result", "operator");
+        writer.histogram("legend_permission_check_seconds", "Time of sampled permission checks.", this.permissionMetrics.getLatency());
+    }
+}
@@ -0,0 +1,346 @@
+package io.github.rysefoxx.manager;
+
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.database.AsyncDatabaseManager;
+import io.github.rysefoxx.database.ConnectionManager;
+import io.github.rysefoxx.database.PendingWrite;
+import io.github.rysefoxx.database.WriteBehindQueue;
+import io.github.rysefoxx.database.dialect.StorageDialect;
+import io.github.rysefoxx.metrics.MetricsSource;
+import io.github.rysefoxx.metrics.MetricsWriter;
+import io.github.rysefoxx.profile.MojangProfileResolver;
+import io.github.rysefoxx.profile.ProfileResolver;
+import io.github.rysefoxx.util.ExpiringCache;
+import lombok.Setter;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Resolves the names and uuids of players, who may be offline. <br>
+ * A lookup first reads the cache, then the user cache of the server, then the player_profile table, which is filled whenever a player joins,
+ * and only if the player is still unknown, the {@link ProfileResolver}. Every result is cached for the configured time. Unknown players and failed lookups are cached for a shorter time, so a failing service is not asked again for every command. <br>
+ * Concurrent lookups of the same player share one lookup, so a burst of commands for the same name sends only one request. <br>
+ * The player_profile table is read by the {@link AsyncDatabaseManager}, the {@link ProfileResolver} runs on its own small pool. A slow service therefore never
+ * holds a database thread, which the write-behind flushes and the logins need.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class ProfileManager implements MetricsSource {
+
+    private static final int DEFAULT_CACHE_SIZE = 10_000;
+    private static final long DEFAULT_TTL_SECONDS = 3600L;
+    private static final long DEFAULT_NEGATIVE_TTL_SECONDS = 60L;
+    private static final int DEFAULT_REMOTE_THREADS = 2;
+    private static final int DEFAULT_REMOTE_QUEUE_CAPACITY = 1000;
+
+    private final PlayLegendPermission plugin;
+    private final ConnectionManager connectionManager;
+    private final AsyncDatabaseManager asyncDatabaseManager;
+    private final WriteBehindQueue writeBehindQueue;
+    private final StorageDialect dialect;
+    private final String saveQuery;
+
+    /**
+     * Runs the lookups of the {@link #remoteResolver}. The queue is bounded, so a lookup which does not fit is rejected and its future fails.
+     */
+    private final ThreadPoolExecutor remoteExecutor;
+
+    /**
+     * The cached lookups. An empty optional means that the player does not exist.
+     */
+    private final ExpiringCache<String, Optional<UUID>> uuidCache;
+    private final ExpiringCache<UUID, Optional<String>> nameCache;
+
+    /**
+     * The running lookups, which are shared by all callers of the same key.
+     */
+    private final Map<String, CompletableFuture<UUID>> pendingUUIDs = new ConcurrentHashMap<>();
+    private final Map<UUID, CompletableFuture<String>> pendingNames = new ConcurrentHashMap<>();
+
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+
+    /**
+     * The resolver for players who are unknown to this server. It can be replaced, e.g. by a stub in tests.
+     */
+    @Setter
+    private volatile @NotNull ProfileResolver remoteResolver = new MojangProfileResolver();
+
+    public ProfileManager(@NotNull PlayLegendPermission plugin) {
+        this.plugin = plugin;
+        this.connectionManager = plugin.getConnectionManager();
+        this.asyncDatabaseManager = plugin.getAsyncDatabaseManager();
+        this.writeBehindQueue = plugin.getWriteBehindQueue();
+        this.dialect = this.connectionManager.getDialect();
+        this.saveQuery = this.dialect.upsert("legend.player_profile", List.of("uuid", "name", "name_key", "updated_at"), "?, ?, ?, ?", List.of("uuid"));
+
+        FileConfiguration config = plugin.getConfig();
+        int cacheSize = Math.max(1, config.getInt("profiles.cache-size", DEFAULT_CACHE_SIZE));
+        this.uuidCache = new ExpiringCache<>(cacheSize);
+        this.nameCache = new ExpiringCache<>(cacheSize);
+        this.ttlMillis = Math.max(1L, config.getLong("profiles.ttl-seconds", DEFAULT_TTL_SECONDS)) * 1000L;
+        this.negativeTtlMillis = Math.max(1L, config.getLong("profiles.negative-ttl-seconds", DEFAULT_NEGATIVE_TTL_SECONDS)) * 1000L;
+
+        int remoteThreads = Math.max(1, config.getInt("profiles.remote-threads", DEFAULT_REMOTE_THREADS));
+        int remoteQueueCapacity = Math.max(1, config.getInt("profiles.remote-queue-capacity", DEFAULT_REMOTE_QUEUE_CAPACITY));
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.remoteExecutor = new ThreadPoolExecutor(remoteThreads, remoteThreads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(remoteQueueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "PlayLegendPermission-Profile-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.remoteExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Caches the name of a player who joined and queues it to be saved to the player_profile table, so the player can be resolved locally later.
+     *
+     * @param uuid The uuid of the player.
+     * @param name The name of the player.
+     */
+    public void remember(@NotNull UUID uuid, @NotNull String name) {
+        cache(name, uuid);
+
+        this.writeBehindQueue.enqueue(new PendingWrite("profile:" + uuid,
+                "profile_save",
+                this.saveQuery,
+                false,
+                statement -> {
+                    this.dialect.setUUID(statement, 1, uuid);
+                    statement.setString(2, name);
+                    statement.setString(3, toKey(name));
+                    statement.setObject(4, LocalDateTime.now());
+                }));
+    }
+
+    /**
+     * Resolves the uuid of a player by name. The name is case-insensitive.
+     *
+     * @param name The name of the player.
+     * @return A future which is completed with the uuid or null if no player has the name.
+     */
+    public @NotNull CompletableFuture<UUID> resolveUUID(@NotNull String name) {
+        String key = toKey(name);
+        Optional<UUID> cached = this.uuidCache.get(key);
+        if (cached != null) return CompletableFuture.completedFuture(cached.orElse(null));
+
+        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayerIfCached(name);
+        if (offlinePlayer != null) {
+            cache(offlinePlayer.getName() == null ? name : offlinePlayer.getName(), offlinePlayer.getUniqueId());
+            return CompletableFuture.completedFuture(offlinePlayer.getUniqueId());
+        }
+
+        return singleFlight(this.pendingUUIDs, key, () -> readUUID(name), () -> remoteUUID(name), uuid -> {
+            if (uuid == null) this.uuidCache.put(key, Optional.empty(), this.negativeTtlMillis);
+            else cache(name, uuid);
+        });
+    }
+
+    /**
+     * Resolves the current name of a player by uuid.
+     *
+     * @param uuid The uuid of the player.
+     * @return A future which is completed with the name or null if the player does not exist.
+     */
+    public @NotNull CompletableFuture<String> resolveName(@NotNull UUID uuid) {
+        Optional<String> cached = this.nameCache.get(uuid);
+        if (cached != null) return CompletableFuture.completedFuture(cached.orElse(null));
+
+        String knownName = Bukkit.getOfflinePlayer(uuid).getName();
+        if (knownName != null) {
+            cache(knownName, uuid);
+            return CompletableFuture.completedFuture(knownName);
+        }
+
+        return singleFlight(this.pendingNames, uuid, () -> readName(uuid), () -> remoteName(uuid), name -> {
+            if (name == null) this.nameCache.put(uuid, Optional.empty(), this.negativeTtlMillis);
+            else cache(name, uuid);
+        });
+    }
+
+    /**
+     * Removes all cached lookups. The player_profile table is kept.
+     */
+    public void clearCache() {
+        this.uuidCache.clear();
+        this.nameCache.clear();
+    }
+
+    /**
+     * Stops the lookups of the {@link #remoteResolver}. Lookups which are still queued are dropped and their futures never complete.
+     */
+    public void shutdown() {
+        this.remoteExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs a lookup async, unless a lookup of the same key is already running, in which case its future is returned. <br>
+     * The local lookup runs on the {@link AsyncDatabaseManager}. Only if it finds nothing, the remote lookup runs on the {@link #remoteExecutor}.
+     * The lookup is removed after it has completed, so its result is cached before.
+     *
+     * @param pending The running lookups.
+     * @param key     The key of the lookup.
+     * @param local   The lookup in the player_profile table.
+     * @param remote  The lookup with the {@link #remoteResolver}.
+     * @param cache   Caches the result, which is null if the player does not exist.
+     * @param <K>     The type of the key.
+     * @param <V>     The type of the result.
+     * @return The future of the lookup.
+     */
+    private <K, V> @NotNull CompletableFuture<V> singleFlight(@NotNull Map<K, CompletableFuture<V>> pending, @NotNull K key,
+                                                              @NotNull Supplier<V> local, @NotNull Supplier<V> remote, @NotNull Consumer<V> cache) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = pending.putIfAbsent(key, future);
+        if (running != null) return running;
+
+        this.asyncDatabaseManager.supplyAsync(local)
+                .thenCompose(value -> value != null ? CompletableFuture.completedFuture(value) : supplyRemote(remote))
+                .whenComplete((value, throwable) -> {
+                    if (throwable == null) cache.accept(value);
+                    pending.remove(key, future);
+                    if (throwable != null) future.completeExceptionally(throwable);
+                    else future.complete(value);
+                });
+        return future;
+    }
+
+    /**
+     * Runs a lookup on the {@link #remoteExecutor}.
+     *
+     * @param lookup The lookup.
+     * @param <V>    The type of the result.
+     * @return A future which is completed with the result or with a {@link RejectedExecutionException} if the queue is full.
+     */
+    private <V> @NotNull CompletableFuture<V> supplyRemote(@NotNull Supplier<V> lookup) {
+        try {
+            return CompletableFuture.supplyAsync(lookup, this.remoteExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Looks up a uuid in the player_profile table. This blocks.
+     *
+     * @param name The name of the player.
+     * @return The uuid or null if the table does not know the name.
+     */
+    private @Nullable UUID readUUID(@NotNull String name) {
+        try (Connection connection = this.connectionManager.getConnection();
+             PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection,
+                     "SELECT uuid FROM legend.player_profile WHERE name_key = ? ORDER BY updated_at DESC LIMIT 1")) {
+            if (preparedStatement != null) {
+                preparedStatement.setString(1, toKey(name));
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (resultSet.next()) return this.dialect.getUUID(resultSet, "uuid");
+                }
+            }
+        } catch (SQLException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "Failed to read the profile of " + name + " from database!", e);
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a uuid with the {@link #remoteResolver}. This blocks.
+     *
+     * @param name The name of the player.
+     * @return The uuid or null if no player has the name or the remote resolver failed.
+     */
+    private @Nullable UUID remoteUUID(@NotNull String name) {
+        try {
+            return this.remoteResolver.resolveUUID(name);
+        } catch (IOException e) {
+            this.plugin.getLogger().log(Level.WARNING, "Failed to resolve the uuid of " + name + "!", e);
+            return null;
+        }
+    }
+
+    /**
+     * Looks up a name in the player_profile table. This blocks.
+     *
+     * @param uuid The uuid of the player.
+     * @return The name or null if the table does not know the uuid.
+     */
+    private @Nullable String readName(@NotNull UUID uuid) {
+        try (Connection connection = this.connectionManager.getConnection();
+             PreparedStatement preparedStatement = this.connectionManager.prepareStatement(connection,
+                     "SELECT name FROM legend.player_profile WHERE uuid = ?")) {
+            if (preparedStatement != null) {
+                this.dialect.setUUID(preparedStatement, 1, uuid);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    if (resultSet.next()) return resultSet.getString("name");
+                }
+            }
+        } catch (SQLException e) {
+            this.plugin.getLogger().log(Level.SEVERE, "Failed to read the profile of " + uuid + " from database!", e);
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a name with the {@link #remoteResolver}. This blocks.
+     *
+     * @param uuid The uuid of the player.
+     * @return The name or null if the player does not exist or the remote resolver failed.
+     */
+    private @Nullable String remoteName(@NotNull UUID uuid) {
+        try {
+            return this.remoteResolver.resolveName(uuid);
+        } catch (IOException e) {
+            this.plugin.getLogger().log(Level.WARNING, "Failed to resolve the name of " + uuid + "!", e);
+            return null;
+        }
+    }
+
+    /**
+     * Caches a name and uuid in both directions.
+     *
+     * @param name The name of the player.
+     * @param uuid The uuid of the player.
+     */
+    private void cache(@NotNull String name, @NotNull UUID uuid) {
+        this.uuidCache.put(toKey(name), Optional.of(uuid), this.ttlMillis);
+        this.nameCache.put(uuid, Optional.of(name), this.ttlMillis);
+    }
+
+    /**
+     * @param name The name of a player.
+     * @return The key of the name, as names are case-insensitive.
+     */
+    private @NotNull String toKey(@NotNull String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void collect(@NotNull MetricsWriter writer) {
+        writer.gauge("legend_cache_entries", "Entries in the caches of the plugin.", this.uuidCache.size(), "cache", "profile_uuids");
+        writer.gauge("legend_cache_entries", "Entries in the caches of the plugin.", this.nameCache.size(), "cache", "profile_names");
+    }
+}
@@ -1,7 +1,10 @@
 package io.github.rysefoxx.manager;
 
 import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.metrics.MetricsSource;
+import io.github.rysefoxx.metrics.MetricsWriter;
 import io.github.rysefoxx.model.GroupMemberModel;
+import io.github.rysefoxx.model.GroupModel;
 import io.github.rysefoxx.scoreboard.AbstractScoreboard;
 import io.github.rysefoxx.scoreboard.ScoreboardEntry;
 import io.github.rysefoxx.scoreboard.enums.ScoreboardPredefinedValue;
@@ -13,91 +16,233 @@ import org.bukkit.entity.Player;
 import org.bukkit.scoreboard.*;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Manages the sidebar and the tab list teams of all players. <br>
+ * Every group has one team which is shared by all of its members. All scoreboards show the same teams, so the manager keeps track of the applied state
+ * and only sends the changes of the affected player to the viewers. <br>
+ * Callers only mark players or groups as dirty. Once per tick, the dirty players are updated, at most one update per player and
+ * at most the configured amount of players per tick, so large changes are spread across several ticks.
+ *
  * @author Rysefoxx
  * @since 02.01.2024
  */
-public class ScoreboardManager {
+public class ScoreboardManager implements MetricsSource {
+
+    private static final int DEFAULT_UPDATES_PER_TICK = 20;
 
     private final HashMap<UUID, AbstractScoreboard> playerScoreboard = new HashMap<>();
-    private final HashMap<UUID, String> playerTeams = new HashMap<>();
+
+    /**
+     * The team every online player is shown in.
+     */
+    private final HashMap<UUID, String> assignedTeams = new HashMap<>();
+
+    /**
+     * The amount of online players in a team. Teams without players are unregistered.
+     */
+    private final HashMap<String, Integer> teamSizes = new HashMap<>();
+
+    /**
+     * The prefix which is applied to a team on every scoreboard.
+     */
+    private final HashMap<String, Component> teamPrefixes = new HashMap<>();
+
+    /**
+     * The group prefix which is shown in the sidebar of a player.
+     */
+    private final HashMap<UUID, Component> sidebarPrefixes = new HashMap<>();
+
+    /**
+     * The players whose scoreboard has to be updated, in the order they were marked.
+     */
+    private final LinkedHashSet<UUID> dirtyPlayers = new LinkedHashSet<>();
+
+    /**
+     * The lowercase names of the groups whose online members have to be updated.
+     */
+    private final HashSet<String> dirtyGroups = new HashSet<>();
 
     private final GroupMemberManager groupMemberManager;
     private final LanguageManager languageManager;
+    private final int updatesPerTick;
+
+    /**
+     * Whether the scoreboards are updated. They are disabled in unit tests, unless a test enables them.
+     */
+    private boolean enabled = !PlayLegendPermission.isUnitTest();
+
+    /**
+     * The amount of scoreboard updates since the start. It is read by the metrics exporter, so it has to be thread-safe.
+     */
+    private final LongAdder updates = new LongAdder();
 
     public ScoreboardManager(@NotNull PlayLegendPermission plugin) {
         this.groupMemberManager = plugin.getGroupMemberManager();
         this.languageManager = plugin.getLanguageManager();
+        this.updatesPerTick = Math.max(1, plugin.getConfig().getInt("scoreboard.updates-per-tick", DEFAULT_UPDATES_PER_TICK));
+
+        Bukkit.getScheduler().runTaskTimer(plugin, this::dispatchDirty, 1L, 1L);
+    }
+
+    /**
+     * Marks the scoreboard of a player as dirty. It is updated in one of the next ticks.
+     *
+     * @param player The player to update the scoreboard for.
+     */
+    public void markDirty(@NotNull Player player) {
+        if (!this.enabled) return;
+        this.dirtyPlayers.add(player.getUniqueId());
+    }
+
+    /**
+     * Marks the scoreboards of all online members of a group as dirty. They are updated in one of the next ticks.
+     *
+     * @param groupModel The group whose members should be updated.
+     */
+    public void markDirty(@NotNull GroupModel groupModel) {
+        if (!this.enabled) return;
+        this.dirtyGroups.add(groupModel.getName().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Updates the dirty players. Dirty groups are resolved to their online members first.
+     * Players which exceed the budget of this tick stay dirty and are updated in the next tick.
+     */
+    private void dispatchDirty() {
+        if (!this.dirtyGroups.isEmpty()) {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                GroupMemberModel member = this.groupMemberManager.getGroup(player.getUniqueId());
+                if (member != null && this.dirtyGroups.contains(member.getGroup().getName().toLowerCase(Locale.ROOT)))
+                    this.dirtyPlayers.add(player.getUniqueId());
+            }
+            this.dirtyGroups.clear();
+        }
+
+        int budget = this.updatesPerTick;
+        Iterator<UUID> iterator = this.dirtyPlayers.iterator();
+        while (budget > 0 && iterator.hasNext()) {
+            Player player = Bukkit.getPlayer(iterator.next());
+            iterator.remove();
+            if (player == null || !hasScoreboard(player)) continue;
+
+            update(player);
+            this.updates.increment();
+            budget--;
+        }
     }
 
     /**
-     * Creates a scoreboard for a player. When the player already has a scoreboard, nothing will happen.
+     * Creates a scoreboard for a player. When the player already has a scoreboard, nothing will happen. <br>
+     * The new scoreboard receives the teams of all online players, the other scoreboards only receive the team of the new player.
      *
      * @param player The player to create the scoreboard for.
      */
     public void create(@NotNull Player player) {
         if (hasScoreboard(player)) return;
 
-        String teamName = generateTeamName(player);
         Scoreboard scoreboard = Bukkit.getScoreboardManager().getNewScoreboard();
         this.playerScoreboard.put(player.getUniqueId(), new DefaultScoreboard());
-        this.playerTeams.put(player.getUniqueId(), teamName);
 
         player.setScoreboard(scoreboard);
         createSidebar(player);
 
-        Bukkit.getOnlinePlayers().forEach(this::updateTeamForAllPlayers);
-    }
+        for (Map.Entry<UUID, String> entry : this.assignedTeams.entrySet()) {
+            Player member = Bukkit.getPlayer(entry.getKey());
+            if (member == null) continue;
 
+            Team team = getOrRegisterTeam(scoreboard, entry.getValue());
+            team.addEntry(member.getName());
+        }
+
+        updateTeam(player);
+    }
 
     /**
-     * Updates the team for all players.
+     * Moves a player into the team of their group on every scoreboard. When neither the team nor its prefix changed, nothing will happen.
      *
      * @param player The player to update the team for.
      */
-    private void updateTeamForAllPlayers(@NotNull Player player) {
-        for (Player onlinePlayer : Bukkit.getOnlinePlayers()) {
-            Scoreboard scoreboard = onlinePlayer.getScoreboard();
+    private void updateTeam(@NotNull Player player) {
+        GroupModel groupModel = this.groupMemberManager.getOrSetGroup(player.getUniqueId()).getGroup();
+        String teamName = getTeamName(groupModel);
+        Component prefix = getTabPrefix(groupModel);
 
-            String teamName = this.playerTeams.get(player.getUniqueId());
-            if (teamName == null) continue;
+        String previousTeam = this.assignedTeams.put(player.getUniqueId(), teamName);
+        boolean teamChanged = !teamName.equals(previousTeam);
+        boolean prefixChanged = !prefix.equals(this.teamPrefixes.put(teamName, prefix));
+        if (!teamChanged && !prefixChanged) return;
 
-            Team team = scoreboard.getTeam(teamName);
-            if (team != null) team.unregister();
+        if (teamChanged) this.teamSizes.merge(teamName, 1, Integer::sum);
+
+        for (Player viewer : Bukkit.getOnlinePlayers()) {
+            if (!hasScoreboard(viewer)) continue;
 
-            createTeamForPlayer(player, scoreboard);
+            Team team = getOrRegisterTeam(viewer.getScoreboard(), teamName);
+            if (prefixChanged) team.prefix(prefix);
+            // Adding the entry to the new team removes it from the previous team.
+            if (teamChanged) team.addEntry(player.getName());
         }
+
+        if (teamChanged && previousTeam != null) leaveTeam(previousTeam);
+    }
+
+    /**
+     * Gets a team from a scoreboard or registers it with the applied prefix.
+     *
+     * @param scoreboard The scoreboard to get the team from.
+     * @param teamName   The name of the team.
+     * @return The team.
+     */
+    private @NotNull Team getOrRegisterTeam(@NotNull Scoreboard scoreboard, @NotNull String teamName) {
+        Team team = scoreboard.getTeam(teamName);
+        if (team != null) return team;
+
+        team = scoreboard.registerNewTeam(teamName);
+        Component prefix = this.teamPrefixes.get(teamName);
+        if (prefix != null) team.prefix(prefix);
+        return team;
     }
 
     /**
-     * Creates a team for a player.
+     * Decreases the size of a team. When the last player left the team, it is unregistered from every scoreboard.
      *
-     * @param player     The player to create the team for.
-     * @param scoreboard The scoreboard to create the team for.
+     * @param teamName The name of the team.
      */
-    private void createTeamForPlayer(@NotNull Player player, @NotNull Scoreboard scoreboard) {
-        String teamName = this.playerTeams.get(player.getUniqueId());
-        Team team = scoreboard.registerNewTeam(teamName);
+    private void leaveTeam(@NotNull String teamName) {
+        Integer size = this.teamSizes.computeIfPresent(teamName, (key, value) -> value <= 1 ? null : value - 1);
+        if (size != null) return;
+
+        this.teamPrefixes.remove(teamName);
+        for (Player viewer : Bukkit.getOnlinePlayers()) {
+            if (!hasScoreboard(viewer)) continue;
 
-        Component prefix = getTabPrefix(player);
-        team.prefix(prefix);
-        team.addPlayer(player);
+            Team team = viewer.getScoreboard().getTeam(teamName);
+            if (team != null) team.unregister();
+        }
     }
 
+    /**
+     * Gets the name of the team of a group. The tab list is sorted by team name, so the name starts with the inverted weight and groups with a higher weight are listed first.
+     *
+     * @param groupModel The group to get the team name for.
+     * @return The name of the team.
+     */
+    private @NotNull String getTeamName(@NotNull GroupModel groupModel) {
+        long order = (long) Integer.MAX_VALUE - groupModel.getWeight();
+        return String.format(Locale.ROOT, "%010d", order) + groupModel.getName().toLowerCase(Locale.ROOT);
+    }
 
     /**
      * Gets the prefix for the tab.
      *
-     * @param player The player to get the prefix for.
+     * @param groupModel The group to get the prefix for.
      * @return The prefix for the tab.
      */
-    private @NotNull Component getTabPrefix(@NotNull Player player) {
-        Component prefix = getPrefix(player);
-        return prefix.append(Component.text(" - ", NamedTextColor.GRAY));
+    private @NotNull Component getTabPrefix(@NotNull GroupModel groupModel) {
+        return Component.text(groupModel.getPrefix()).append(Component.text(" - ", NamedTextColor.GRAY));
     }
 
 
@@ -141,25 +286,38 @@ public class ScoreboardManager {
     }
 
     /**
-     * Destroys the scoreboard for a player. When the player does not have a scoreboard, nothing will happen.
+     * Destroys the scoreboard for a player. When the player does not have a scoreboard, nothing will happen. <br>
+     * The player is removed from their team on the scoreboards of the other players.
      *
      * @param player The player to destroy the scoreboard for.
      */
     public void destroy(@NotNull Player player) {
         this.playerScoreboard.remove(player.getUniqueId());
-        this.playerTeams.remove(player.getUniqueId());
+        this.dirtyPlayers.remove(player.getUniqueId());
+        this.sidebarPrefixes.remove(player.getUniqueId());
+
+        String teamName = this.assignedTeams.remove(player.getUniqueId());
+        if (teamName == null) return;
+
+        for (Player viewer : Bukkit.getOnlinePlayers()) {
+            if (!hasScoreboard(viewer)) continue;
+
+            Team team = viewer.getScoreboard().getTeam(teamName);
+            if (team != null) team.removeEntry(player.getName());
+        }
+        leaveTeam(teamName);
     }
 
     /**
-     * Updates the scoreboard for a player.
+     * Updates the scoreboard for a player. Only the changes since the last update are applied.
      *
      * @param player The player to update the scoreboard for.
      */
-    public void update(@NotNull Player player) {
-        if (PlayLegendPermission.isUnitTest()) return;
+    private void update(@NotNull Player player) {
+        if (!this.enabled) return;
 
         updateSidebar(player);
-        updateTeamForAllPlayers(player);
+        updateTeam(player);
     }
 
     /**
@@ -172,6 +330,9 @@ public class ScoreboardManager {
             create(player);
         }
 
+        Component prefix = getPrefix(player);
+        if (prefix.equals(this.sidebarPrefixes.get(player.getUniqueId()))) return;
+
         AbstractScoreboard abstractScoreboard = this.playerScoreboard.get(player.getUniqueId());
         Scoreboard scoreboard = player.getScoreboard();
         Objective sidebar = scoreboard.getObjective(DisplaySlot.SIDEBAR);
@@ -188,22 +349,10 @@ public class ScoreboardManager {
             }
 
             if (scoreboardEntry.predefinedValue() == ScoreboardPredefinedValue.GROUP) {
-                Component prefix = getPrefix(player);
                 team.suffix(prefix);
             }
         }
-    }
-
-
-    /**
-     * Generates a random team name.
-     *
-     * @param player The player to generate the team name for.
-     * @return The generated team name.
-     */
-    private @NotNull String generateTeamName(@NotNull Player player) {
-        GroupMemberModel groupMemberModel = this.groupMemberManager.getOrSetGroup(player.getUniqueId());
-        return groupMemberModel.getGroup().getWeight() + UUID.randomUUID().toString();
+        this.sidebarPrefixes.put(player.getUniqueId(), prefix);
     }
 
 
@@ -216,4 +365,11 @@ public class ScoreboardManager {
     private boolean hasScoreboard(@NotNull Player player) {
         return this.playerScoreboard.containsKey(player.getUniqueId());
     }
+
+    @Override
+    public void collect(@NotNull MetricsWriter writer) {
+        writer.gauge("legend_scoreboards", "Players with a scoreboard.", this.playerScoreboard.size());
+        writer.gauge("legend_scoreboard_dirty", "Players whose scoreboard waits for an update.", this.dirtyPlayers.size());
+        writer.counter("legend_scoreboard_updates_total", "Scoreboard updates since the start.", this.updates.sum());
+    }
 }
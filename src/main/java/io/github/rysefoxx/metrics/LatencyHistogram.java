@@ -0,0 +1,129 @@
+package io.github.rysefoxx.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies with fixed buckets. Recording is lock-free, so it can be used from every thread.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class LatencyHistogram {
+
+    /**
+     * The default upper bounds of the buckets in milliseconds, which fit database queries.
+     */
+    private static final double[] DEFAULT_BUCKET_BOUNDS_MILLIS = {1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    /**
+     * The upper bounds of the buckets in milliseconds. Every latency above the last bound is counted in an additional overflow bucket.
+     */
+    private final double[] bucketBoundsMillis;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        this(DEFAULT_BUCKET_BOUNDS_MILLIS);
+    }
+
+    /**
+     * Creates a histogram with custom buckets, e.g. for latencies far below a millisecond.
+     *
+     * @param bucketBoundsMillis The ascending upper bounds of the buckets in milliseconds.
+     */
+    public LatencyHistogram(double @NotNull ... bucketBoundsMillis) {
+        this.bucketBoundsMillis = bucketBoundsMillis.clone();
+        this.buckets = new LongAdder[this.bucketBoundsMillis.length + 1];
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        double millis = nanos / 1_000_000D;
+        int index = 0;
+        while (index < this.bucketBoundsMillis.length && millis > this.bucketBoundsMillis[index]) {
+            index++;
+        }
+
+        this.buckets[index].increment();
+        this.count.increment();
+        this.sumNanos.add(nanos);
+    }
+
+    /**
+     * @return The upper bounds of the buckets in milliseconds, without the overflow bucket.
+     */
+    public double @NotNull [] getBucketBounds() {
+        return this.bucketBoundsMillis.clone();
+    }
+
+    /**
+     * @return The amount of recorded latencies per bucket. The last element is the overflow bucket.
+     */
+    public long @NotNull [] getBucketCounts() {
+        long[] counts = new long[this.buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @return The amount of recorded latencies.
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * @return The sum of all recorded latencies in milliseconds.
+     */
+    public double getSumMillis() {
+        return this.sumNanos.sum() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Estimates a percentile from the buckets. The result is the upper bound of the bucket which contains the percentile,
+     * so it is never lower than the real value.
+     *
+     * @param percentile The percentile between 0 and 1, e.g. 0.99.
+     * @return The estimated latency in milliseconds, 0 if nothing was recorded or infinity if the percentile is in the overflow bucket.
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < this.bucketBoundsMillis.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return this.bucketBoundsMillis[i];
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Removes all recorded latencies.
+     */
+    public void reset() {
+        for (LongAdder bucket : this.buckets) {
+            bucket.reset();
+        }
+        this.count.reset();
+        this.sumNanos.reset();
+    }
+}
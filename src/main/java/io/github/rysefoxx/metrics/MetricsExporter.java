@@ -0,0 +1,160 @@
+package io.github.rysefoxx.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exports the values of the {@link MetricsRegistry} in the Prometheus text format, so every server can be scraped. <br>
+ * With the type {@code http}, an embedded HTTP server answers {@code GET /metrics}. With the type {@code file}, the values are written to a file
+ * in a fixed interval, e.g. for the textfile collector of the node exporter. The file is replaced atomically, so it is never read half-written. <br>
+ * The metrics are collected on a daemon thread of the exporter, never on the main thread.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class MetricsExporter {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String DEFAULT_HOST = "127.0.0.1";
+    private static final int DEFAULT_PORT = 9464;
+    private static final String DEFAULT_FILE = "metrics.prom";
+    private static final long DEFAULT_INTERVAL_SECONDS = 15L;
+
+    private final MetricsRegistry registry;
+    private final Logger logger;
+    private final ScheduledExecutorService executorService;
+
+    private HttpServer httpServer;
+
+    /**
+     * Starts the exporter which is configured in the given section. With the type {@code none} or an unknown type, nothing is exported.
+     *
+     * @param registry   The registry to export.
+     * @param config     The section {@code metrics.exporter} of the config.
+     * @param dataFolder The folder which relative file paths are resolved against.
+     * @param logger     The logger for failed exports.
+     */
+    public MetricsExporter(@NotNull MetricsRegistry registry, @NotNull ConfigurationSection config, @NotNull File dataFolder, @NotNull Logger logger) {
+        this.registry = registry;
+        this.logger = logger;
+        this.executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PlayLegendPermission-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        String type = config.getString("type", "none").toLowerCase(Locale.ROOT);
+        switch (type) {
+            case "http" -> startHttpServer(config.getString("http.host", DEFAULT_HOST), config.getInt("http.port", DEFAULT_PORT));
+            case "file" -> startFileWriter(dataFolder.toPath().resolve(config.getString("file.path", DEFAULT_FILE)),
+                    Math.max(1L, config.getLong("file.interval-seconds", DEFAULT_INTERVAL_SECONDS)));
+            case "none" -> {
+            }
+            default -> this.logger.warning("Unknown metrics exporter " + type + ", the metrics are not exported!");
+        }
+    }
+
+    /**
+     * Stops the HTTP server and the file writer. This is called when the plugin is disabled.
+     */
+    public void shutdown() {
+        if (this.httpServer != null) this.httpServer.stop(0);
+        this.executorService.shutdownNow();
+    }
+
+    /**
+     * Starts the HTTP server. Requests are answered one after another on the thread of the exporter.
+     *
+     * @param host The address to bind to.
+     * @param port The port to bind to.
+     */
+    private void startHttpServer(@NotNull String host, int port) {
+        try {
+            this.httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        } catch (IOException e) {
+            this.logger.log(Level.SEVERE, "Failed to start the metrics endpoint on " + host + ":" + port + "!", e);
+            return;
+        }
+
+        this.httpServer.createContext("/metrics", this::handle);
+        this.httpServer.setExecutor(this.executorService);
+        this.httpServer.start();
+        this.logger.info("Exporting metrics on http://" + host + ":" + port + "/metrics!");
+    }
+
+    /**
+     * Answers a request with the current metrics.
+     *
+     * @param exchange The request.
+     * @throws IOException If the response could not be sent.
+     */
+    private void handle(@NotNull HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = this.registry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        }
+    }
+
+    /**
+     * Writes the metrics to a file in a fixed interval.
+     *
+     * @param file            The file to write to.
+     * @param intervalSeconds The interval in seconds.
+     */
+    private void startFileWriter(@NotNull Path file, long intervalSeconds) {
+        this.executorService.scheduleWithFixedDelay(() -> writeFile(file), 0L, intervalSeconds, TimeUnit.SECONDS);
+        this.logger.info("Exporting metrics to " + file + " every " + intervalSeconds + " seconds!");
+    }
+
+    /**
+     * Writes the metrics to a temporary file and moves it over the previous one.
+     *
+     * @param file The file to write to.
+     */
+    private void writeFile(@NotNull Path file) {
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                Files.writeString(temporary, this.registry.scrape(), StandardCharsets.UTF_8);
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException | RuntimeException e) {
+            this.logger.log(Level.WARNING, "Failed to write the metrics to " + file + "!", e);
+        }
+    }
+}
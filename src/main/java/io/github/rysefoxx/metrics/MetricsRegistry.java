@@ -0,0 +1,51 @@
+package io.github.rysefoxx.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds every {@link MetricsSource} of the plugin and renders their values for the {@link MetricsExporter}. <br>
+ * A failing source is logged and skipped, so the other metrics are still exported.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class MetricsRegistry {
+
+    private final Logger logger;
+    private final List<MetricsSource> sources = new CopyOnWriteArrayList<>();
+
+    public MetricsRegistry(@NotNull Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Registers a source. Its values are included in every following scrape.
+     *
+     * @param source The source to register.
+     */
+    public void register(@NotNull MetricsSource source) {
+        this.sources.add(source);
+    }
+
+    /**
+     * Collects the current values of all sources.
+     *
+     * @return The values in the Prometheus text format.
+     */
+    public @NotNull String scrape() {
+        MetricsWriter writer = new MetricsWriter();
+        for (MetricsSource source : this.sources) {
+            try {
+                source.collect(writer);
+            } catch (RuntimeException e) {
+                this.logger.log(Level.WARNING, "Failed to collect the metrics of " + source.getClass().getSimpleName() + "!", e);
+            }
+        }
+        return writer.render();
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.rysefoxx.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A component which exposes runtime numbers to the {@link MetricsRegistry}. <br>
+ * The sources are collected on the thread of the exporter, so they may only read values which are safe to read from any thread.
+ * The sizes of collections of the main thread may be slightly outdated, which is fine for metrics.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+@FunctionalInterface
+public interface MetricsSource {
+
+    /**
+     * Writes the current values of the source.
+     *
+     * @param writer The writer to add the values to.
+     */
+    void collect(@NotNull MetricsWriter writer);
+}
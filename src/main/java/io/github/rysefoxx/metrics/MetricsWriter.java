@@ -0,0 +1,137 @@
+package io.github.rysefoxx.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the values of the {@link MetricsSource}s and renders them in the Prometheus text format. <br>
+ * Samples of the same metric are grouped, even if several sources write them, because the format requires all samples of a metric to follow its header.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class MetricsWriter {
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * Adds a value which can go up and down.
+     *
+     * @param name   The name of the metric.
+     * @param help   The description of the metric.
+     * @param value  The current value.
+     * @param labels The labels as alternating names and values.
+     */
+    public void gauge(@NotNull String name, @NotNull String help, double value, String @NotNull ... labels) {
+        family(name, "gauge", help).samples.add(name + formatLabels(labels) + " " + formatValue(value));
+    }
+
+    /**
+     * Adds a value which only increases while the server is running.
+     *
+     * @param name   The name of the metric, which should end with {@code _total}.
+     * @param help   The description of the metric.
+     * @param value  The current value.
+     * @param labels The labels as alternating names and values.
+     */
+    public void counter(@NotNull String name, @NotNull String help, double value, String @NotNull ... labels) {
+        family(name, "counter", help).samples.add(name + formatLabels(labels) + " " + formatValue(value));
+    }
+
+    /**
+     * Adds a histogram of latencies. The buckets are converted to seconds and made cumulative, as the format requires.
+     *
+     * @param name      The name of the metric, which should end with {@code _seconds}.
+     * @param help      The description of the metric.
+     * @param histogram The histogram to add.
+     * @param labels    The labels as alternating names and values.
+     */
+    public void histogram(@NotNull String name, @NotNull String help, @NotNull LatencyHistogram histogram, String @NotNull ... labels) {
+        List<String> samples = family(name, "histogram", help).samples;
+        double[] bounds = histogram.getBucketBounds();
+        long[] counts = histogram.getBucketCounts();
+
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String bound = i < bounds.length ? BigDecimal.valueOf(bounds[i]).movePointLeft(3).stripTrailingZeros().toPlainString() : "+Inf";
+            samples.add(name + "_bucket" + formatLabels(labels, "le", bound) + " " + cumulative);
+        }
+
+        // The total of the buckets is used as count, so it matches the +Inf bucket even if a latency was recorded in between.
+        samples.add(name + "_sum" + formatLabels(labels) + " " + formatValue(histogram.getSumMillis() / 1000D));
+        samples.add(name + "_count" + formatLabels(labels) + " " + cumulative);
+    }
+
+    /**
+     * @return All added metrics in the Prometheus text format.
+     */
+    public @NotNull String render() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Family> entry : this.families.entrySet()) {
+            Family family = entry.getValue();
+            builder.append("# HELP ").append(entry.getKey()).append(' ').append(escapeHelp(family.help)).append('\n');
+            builder.append("# TYPE ").append(entry.getKey()).append(' ').append(family.type).append('\n');
+            family.samples.forEach(sample -> builder.append(sample).append('\n'));
+        }
+        return builder.toString();
+    }
+
+    private @NotNull Family family(@NotNull String name, @NotNull String type, @NotNull String help) {
+        Family family = this.families.computeIfAbsent(name, key -> new Family(type, help));
+        if (!family.type.equals(type)) throw new IllegalArgumentException("The metric " + name + " is already a " + family.type + "!");
+        return family;
+    }
+
+    private static @NotNull String formatLabels(String @NotNull [] labels, String @NotNull ... extraLabels) {
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("The labels must be pairs of names and values!");
+        if (labels.length == 0 && extraLabels.length == 0) return "";
+
+        StringBuilder builder = new StringBuilder("{");
+        appendLabels(builder, labels);
+        appendLabels(builder, extraLabels);
+        return builder.append('}').toString();
+    }
+
+    private static void appendLabels(@NotNull StringBuilder builder, String @NotNull [] labels) {
+        for (int i = 0; i < labels.length; i += 2) {
+            if (builder.length() > 1) builder.append(',');
+            builder.append(labels[i]).append("=\"").append(escapeLabelValue(labels[i + 1])).append('"');
+        }
+    }
+
+    private static @NotNull String formatValue(double value) {
+        if (Double.isNaN(value)) return "NaN";
+        if (Double.isInfinite(value)) return value > 0 ? "+Inf" : "-Inf";
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
+    private static @NotNull String escapeLabelValue(@NotNull String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static @NotNull String escapeHelp(@NotNull String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    /**
+     * All samples of one metric.
+     */
+    private static final class Family {
+
+        private final String type;
+        private final String help;
+        private final List<String> samples = new ArrayList<>();
+
+        private Family(@NotNull String type, @NotNull String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+}
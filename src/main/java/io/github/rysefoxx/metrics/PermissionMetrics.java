@@ -0,0 +1,261 @@
+package io.github.rysefoxx.metrics;
+
+import io.github.rysefoxx.permission.PermissionTrie;
+import lombok.Getter;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the permission checks of other plugins, to find out which plugins check permissions the most and which nodes are hot. <br>
+ * Every check is counted per node with a {@link LongAdder}, so concurrent checks of the same node do not contend. Only a sample of the checks is timed
+ * and attributed to the calling plugin, as walking the stack is far more expensive than the check itself. <br>
+ * While the metrics are disabled, a check costs one volatile read more than without metrics.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class PermissionMetrics {
+
+    /**
+     * The upper bounds of the latency buckets in milliseconds. A lookup in the trie takes well below a microsecond.
+     */
+    private static final double[] BUCKET_BOUNDS_MILLIS = {0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.1, 1};
+
+    /**
+     * The maximum amount of counted nodes. Plugins which check generated nodes would otherwise let the map grow without limit.
+     */
+    private static final int MAX_TRACKED_NODES = 10_000;
+
+    /**
+     * The packages of the server and of the permission checks of this plugin, which are skipped when the caller of a check is determined.
+     */
+    private static final String[] INTERNAL_PACKAGES = {"java.", "jdk.", "sun.", "org.bukkit.", "org.spigotmc.", "io.papermc.", "com.destroystokyo.", "net.minecraft.",
+            "io.github.rysefoxx.permission.", "io.github.rysefoxx.metrics."};
+    private static final String SERVER_CALLER = "server";
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    /**
+     * The name of the plugin which provides a class. It is cached per class, so the plugin is only looked up once.
+     */
+    private static final ClassValue<String> CALLER_NAMES = new ClassValue<>() {
+        @Override
+        protected String computeValue(@NotNull Class<?> type) {
+            try {
+                return JavaPlugin.getProvidingPlugin(type).getName();
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                return type.getName();
+            }
+        }
+    };
+
+    private final Map<String, LongAdder> nodeChecks = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> callerSamples = new ConcurrentHashMap<>();
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder untrackedChecks = new LongAdder();
+    private final LongAdder opChecks = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * The time of the sampled lookups.
+     */
+    @Getter
+    private final LatencyHistogram latency = new LatencyHistogram(BUCKET_BOUNDS_MILLIS);
+
+    /**
+     * Every n-th check is sampled on average.
+     */
+    private final int sampleRate;
+
+    private volatile boolean enabled;
+
+    /**
+     * @param enabled    Whether checks are counted from the start.
+     * @param sampleRate Every n-th check is timed and attributed to its caller on average.
+     */
+    public PermissionMetrics(boolean enabled, int sampleRate) {
+        this.enabled = enabled;
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    /**
+     * @return true if checks are counted.
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Enables or disables the metrics. The counted checks are kept.
+     *
+     * @param enabled Whether checks should be counted.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Decides whether the next check is sampled and starts its timer.
+     *
+     * @return The start of the check in nanoseconds or 0 if the check is not sampled.
+     */
+    public long startSample() {
+        if (ThreadLocalRandom.current().nextInt(this.sampleRate) != 0) return 0L;
+        return System.nanoTime();
+    }
+
+    /**
+     * Counts a permission check. If the check was sampled, its latency and caller are recorded as well.
+     *
+     * @param permission The checked permission.
+     * @param decision   The decision of the lookup or null if the lookup was skipped, because the player is an operator.
+     * @param startedAt  The value of {@link #startSample()}.
+     */
+    public void record(@NotNull String permission, @Nullable PermissionTrie.Decision decision, long startedAt) {
+        if (startedAt != 0L) this.latency.record(System.nanoTime() - startedAt);
+
+        this.checks.increment();
+        countNode(permission);
+
+        if (decision == null) this.opChecks.increment();
+        else if (decision == PermissionTrie.Decision.UNDEFINED) this.misses.increment();
+        else this.hits.increment();
+
+        if (startedAt != 0L) increment(this.callerSamples, findCaller());
+    }
+
+    /**
+     * @param limit The maximum amount of nodes.
+     * @return The most checked nodes with their amount of checks, in descending order.
+     */
+    public @NotNull List<Map.Entry<String, Long>> getTopNodes(int limit) {
+        return top(this.nodeChecks, limit);
+    }
+
+    /**
+     * @param limit The maximum amount of callers.
+     * @return The plugins which checked the most permissions with their amount of sampled checks, in descending order.
+     */
+    public @NotNull List<Map.Entry<String, Long>> getTopCallers(int limit) {
+        return top(this.callerSamples, limit);
+    }
+
+    /**
+     * @return The amount of counted checks.
+     */
+    public long getChecks() {
+        return this.checks.sum();
+    }
+
+    /**
+     * @return The amount of checks of nodes which were not counted separately, because too many nodes are tracked.
+     */
+    public long getUntrackedChecks() {
+        return this.untrackedChecks.sum();
+    }
+
+    /**
+     * @return The amount of checks of operators, which skip the lookup.
+     */
+    public long getOpChecks() {
+        return this.opChecks.sum();
+    }
+
+    /**
+     * @return The amount of lookups which matched a node.
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return The amount of lookups which matched no node, so the permission was not granted by default.
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return The average amount of checks after which one is sampled.
+     */
+    public int getSampleRate() {
+        return this.sampleRate;
+    }
+
+    /**
+     * Removes all counted checks.
+     */
+    public void reset() {
+        this.nodeChecks.clear();
+        this.callerSamples.clear();
+        this.checks.reset();
+        this.untrackedChecks.reset();
+        this.opChecks.reset();
+        this.hits.reset();
+        this.misses.reset();
+        this.latency.reset();
+    }
+
+    /**
+     * Counts a check of a node. If too many nodes are tracked already, only known nodes are counted.
+     *
+     * @param permission The checked permission.
+     */
+    private void countNode(@NotNull String permission) {
+        LongAdder counter = this.nodeChecks.get(permission);
+        if (counter == null) {
+            if (this.nodeChecks.size() >= MAX_TRACKED_NODES) {
+                this.untrackedChecks.increment();
+                return;
+            }
+            counter = this.nodeChecks.computeIfAbsent(permission, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Finds the plugin which checked the permission, by the first frame of the stack which neither belongs to the server nor to the permission check.
+     *
+     * @return The name of the plugin, the name of the class if it belongs to no plugin or {@value #SERVER_CALLER} if the server checked the permission itself.
+     */
+    private @NotNull String findCaller() {
+        return STACK_WALKER.walk(frames -> frames
+                .map(StackWalker.StackFrame::getDeclaringClass)
+                .filter(type -> !isInternal(type.getName()))
+                .findFirst()
+                .map(CALLER_NAMES::get)
+                .orElse(SERVER_CALLER));
+    }
+
+    /**
+     * @param className The name of a class.
+     * @return true if the class belongs to the server or the permission check.
+     */
+    private boolean isInternal(@NotNull String className) {
+        for (String internalPackage : INTERNAL_PACKAGES) {
+            if (className.startsWith(internalPackage)) return true;
+        }
+        return false;
+    }
+
+    private static void increment(@NotNull Map<String, LongAdder> counters, @NotNull String key) {
+        counters.computeIfAbsent(key, ignored -> new LongAdder()).increment();
+    }
+
+    private static @NotNull List<Map.Entry<String, Long>> top(@NotNull Map<String, LongAdder> counters, int limit) {
+        return counters.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(Math.max(0, limit))
+                .toList();
+    }
+}
@@ -1,27 +1,67 @@
 package io.github.rysefoxx.model;
 
+import io.github.rysefoxx.permission.PermissionResolver;
+import io.github.rysefoxx.permission.PermissionTrie;
 import lombok.Getter;
 import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nonnegative;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 /**
+ * A group is modified on the main thread, but read from any thread, for example by async chat or the UUID lookup of the user command. <br>
+ * Reads never lock: prefix and weight are volatile, permissions and parents are immutable lists which are copied and replaced on every change,
+ * and the members are kept in a concurrent set, because a copy of a group with a million members would be too expensive for every change.
+ *
  * @author Rysefoxx
  * @since 02.01.2024
  */
 @Getter
-@Setter
 public class GroupModel {
 
+    /**
+     * Orders groups by their weight in descending order, groups with the same weight by their name. The first group has the highest priority.
+     */
+    public static final Comparator<GroupModel> PRIORITY_ORDER = Comparator.comparingInt(GroupModel::getWeight).reversed()
+            .thenComparing(GroupModel::getName, String.CASE_INSENSITIVE_ORDER);
+
     private final String name;
 
-    private String prefix;
-    private int weight = 1;
-    private List<GroupMemberModel> members = new ArrayList<>();
-    private List<GroupPermissionModel> permissions = new ArrayList<>();
+    @Setter
+    private volatile String prefix;
+    @Setter
+    private volatile int weight = 1;
+    private final Set<GroupMemberModel> members = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The own permissions of the group. The list is immutable and replaced on every change.
+     */
+    private volatile List<GroupPermissionModel> permissions = List.of();
+
+    /**
+     * The names of the groups this group inherits from. The list is immutable and replaced on every change.
+     */
+    private volatile List<String> parents = List.of();
+
+    /**
+     * The own permissions of the group followed by the permissions of every ancestor in the order of their priority,
+     * mapped to true if they are granted and false if they are denied.
+     */
+    private volatile List<Map<String, Boolean>> resolvedPermissionLevels = List.of();
+
+    /**
+     * The own and inherited permissions of the group as one map, where every node has the decision of the first level which contains it.
+     * Wildcards are not taken into account, so this is only used for the permission attachments.
+     */
+    private volatile Map<String, Boolean> resolvedPermissions = Map.of();
+
+    /**
+     * The compiled {@link #resolvedPermissionLevels}. It is replaced as a whole, so readers never see a half built trie.
+     */
+    private volatile PermissionTrie permissionTrie = PermissionTrie.EMPTY;
 
     /**
      * Creates a new GroupModel with no members and no permissions. This constructor is called when using the create command.
@@ -47,6 +87,102 @@ public class GroupModel {
         this.weight = weight;
     }
 
+    /**
+     * Adds a permission to the group.
+     *
+     * @param permission The permission to add
+     */
+    public synchronized void addPermission(@NotNull GroupPermissionModel permission) {
+        this.permissions = append(this.permissions, permission);
+    }
+
+    /**
+     * Removes all permissions of the group which match the filter.
+     *
+     * @param filter The filter of the permissions to remove
+     * @return true if a permission has been removed, otherwise false
+     */
+    public synchronized boolean removePermissions(@NotNull Predicate<GroupPermissionModel> filter) {
+        List<GroupPermissionModel> remaining = this.permissions.stream().filter(filter.negate()).toList();
+        if (remaining.size() == this.permissions.size()) return false;
+
+        this.permissions = remaining;
+        return true;
+    }
+
+    /**
+     * Replaces all permissions of the group. This is called when another server changed the permissions.
+     *
+     * @param permissions The new permissions
+     */
+    public synchronized void replacePermissions(@NotNull List<GroupPermissionModel> permissions) {
+        this.permissions = List.copyOf(permissions);
+    }
+
+    /**
+     * Adds a parent to the group.
+     *
+     * @param parent The name of the group to inherit from
+     */
+    public synchronized void addParent(@NotNull String parent) {
+        this.parents = append(this.parents, parent);
+    }
+
+    /**
+     * Removes all parents of the group which match the filter.
+     *
+     * @param filter The filter of the parent names to remove
+     * @return true if a parent has been removed, otherwise false
+     */
+    public synchronized boolean removeParents(@NotNull Predicate<String> filter) {
+        List<String> remaining = this.parents.stream().filter(filter.negate()).toList();
+        if (remaining.size() == this.parents.size()) return false;
+
+        this.parents = remaining;
+        return true;
+    }
+
+    /**
+     * Replaces all parents of the group. This is called when another server changed the parents.
+     *
+     * @param parents The names of the groups to inherit from
+     */
+    public synchronized void replaceParents(@NotNull List<String> parents) {
+        this.parents = List.copyOf(parents);
+    }
+
+    /**
+     * Creates a copy of an immutable list with one more element.
+     *
+     * @param list    The list to copy
+     * @param element The element to append
+     * @param <T>     The type of the elements
+     * @return The new immutable list
+     */
+    private static <T> @NotNull List<T> append(@NotNull List<T> list, @NotNull T element) {
+        List<T> copy = new ArrayList<>(list.size() + 1);
+        copy.addAll(list);
+        copy.add(element);
+        return Collections.unmodifiableList(copy);
+    }
+
+    /**
+     * Stores the resolved permissions and compiles them into a new {@link PermissionTrie}, in which the first level with a matching node decides. <br>
+     * This is called by the {@link PermissionResolver} after the permissions, parents or weights of any group have been changed.
+     *
+     * @param resolvedPermissionLevels The own permissions of the group followed by the permissions of its ancestors in the order of their priority
+     */
+    public void applyResolvedPermissions(@NotNull List<Map<String, Boolean>> resolvedPermissionLevels) {
+        Map<String, Boolean> resolvedPermissions = new HashMap<>();
+        for (Map<String, Boolean> level : resolvedPermissionLevels) {
+            level.forEach(resolvedPermissions::putIfAbsent);
+        }
+
+        this.permissionTrie = PermissionTrie.merge(resolvedPermissionLevels);
+        this.resolvedPermissionLevels = resolvedPermissionLevels.stream().map(Map::copyOf).toList();
+        this.resolvedPermissions = Map.copyOf(resolvedPermissions);
+    }
+
     @Override
     public String toString() {
         return "GroupModel{" +
@@ -55,6 +191,7 @@ public class GroupModel {
                 ", weight=" + weight +
                 ", members=" + formatMembers() +
                 ", permissions=" + formatPermissions() +
+                ", parents=" + parents +
                 '}';
     }
 
@@ -65,7 +202,7 @@ public class GroupModel {
      */
     private @NotNull String formatPermissions() {
         StringBuilder permissions = new StringBuilder();
-        for (GroupPermissionModel permission : this.permissions) {
+        for (GroupPermissionModel permission : getPermissions()) {
             permissions.append(permission.getPermission()).append(", ");
         }
         return permissions.toString();
@@ -78,7 +215,7 @@ public class GroupModel {
      */
     private @NotNull String formatMembers() {
         StringBuilder members = new StringBuilder();
-        for (GroupMemberModel member : this.members) {
+        for (GroupMemberModel member : getMembers()) {
             members.append(member.toString()).append(", ");
         }
         return members.toString();
@@ -0,0 +1,100 @@
+package io.github.rysefoxx.permission;
+
+import io.github.rysefoxx.model.GroupModel;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The precomputed permissions of an online player. <br>
+ * The {@link PermissionTrie} and the groups it was derived from are immutable and replaced together as a whole, so permission checks can read them
+ * from any thread without locking. They are only replaced on the main thread, when the groups of the player or the permissions of those groups change. <br>
+ * The permissions of all groups of the player are merged into one trie, so a check costs the same no matter how many groups the player has.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public final class EffectivePermissions {
+
+    /**
+     * The permissions of a player which have not been loaded. They are shared and never updated.
+     */
+    public static final EffectivePermissions EMPTY = new EffectivePermissions();
+
+    private volatile State state = State.EMPTY;
+
+    /**
+     * Replaces the permissions with the merged permissions of the given groups.
+     *
+     * @param groups The groups of the player
+     */
+    public void update(@NotNull List<GroupModel> groups) {
+        if (this == EMPTY) throw new IllegalStateException("The empty permissions can not be updated!");
+
+        List<GroupModel> sources = List.copyOf(groups);
+        this.state = new State(sources, merge(sources));
+    }
+
+    /**
+     * @return The groups the permissions were derived from.
+     */
+    public @NotNull List<GroupModel> getSources() {
+        return this.state.sources();
+    }
+
+    /**
+     * Checks if the permission is granted. Wildcards are expanded.
+     *
+     * @param permission The permission to check
+     * @return true if the permission is granted, otherwise false
+     */
+    public boolean isGranted(@NotNull String permission) {
+        return this.state.permissionTrie().isGranted(permission);
+    }
+
+    /**
+     * Looks up the decision for the permission. Unlike {@link #isGranted(String)} this tells apart denied permissions from permissions no node matches.
+     *
+     * @param permission The permission to check
+     * @return The decision of the most specific matching node of the heaviest deciding group
+     */
+    public @NotNull PermissionTrie.Decision decide(@NotNull String permission) {
+        return this.state.permissionTrie().decide(permission);
+    }
+
+    /**
+     * Merges the resolved permissions of the groups. A permission is decided by the group with the highest weight which has a matching node,
+     * wildcards included, so {@code -essentials.*} of a heavier group beats {@code essentials.fly} of a lighter group.
+     * A single group does not have to be merged, so its trie is shared.
+     *
+     * @param groups The groups to merge
+     * @return The merged trie
+     */
+    private static @NotNull PermissionTrie merge(@NotNull List<GroupModel> groups) {
+        if (groups.isEmpty()) return PermissionTrie.EMPTY;
+        if (groups.size() == 1) return groups.get(0).getPermissionTrie();
+
+        List<GroupModel> ordered = new ArrayList<>(groups);
+        ordered.sort(GroupModel.PRIORITY_ORDER);
+
+        List<Map<String, Boolean>> decisionsByPriority = new ArrayList<>(ordered.size());
+        for (GroupModel groupModel : ordered) {
+            // The inherited nodes of a group still come before the nodes of a lighter group.
+            decisionsByPriority.addAll(groupModel.getResolvedPermissionLevels());
+        }
+        return PermissionTrie.merge(decisionsByPriority);
+    }
+
+    /**
+     * The merged trie together with the groups it was derived from, so a reader never sees the groups of one update and the trie of another.
+     *
+     * @param sources        The groups the permissions were derived from.
+     * @param permissionTrie The merged permissions.
+     */
+    private record State(@NotNull List<GroupModel> sources, @NotNull PermissionTrie permissionTrie) {
+
+        private static final State EMPTY = new State(List.of(), PermissionTrie.EMPTY);
+    }
+}
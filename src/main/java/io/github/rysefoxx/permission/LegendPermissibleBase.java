@@ -1,9 +1,7 @@
 package io.github.rysefoxx.permission;
 
-import io.github.rysefoxx.manager.GroupMemberManager;
 import io.github.rysefoxx.manager.GroupPermissionManager;
-import io.github.rysefoxx.model.GroupMemberModel;
-import io.github.rysefoxx.model.GroupModel;
+import io.github.rysefoxx.metrics.PermissionMetrics;
 import org.bukkit.entity.Player;
 import org.bukkit.permissions.PermissibleBase;
 import org.jetbrains.annotations.NotNull;
@@ -15,27 +13,26 @@ import org.jetbrains.annotations.Nullable;
  */
 public class LegendPermissibleBase extends PermissibleBase {
 
-    private final GroupPermissionManager groupPermissionManager;
-    private final GroupMemberManager groupMemberManager;
     private final Player player;
+    private final EffectivePermissions effectivePermissions;
+    private final PermissionMetrics permissionMetrics;
 
     /**
      * Creates a new permissible base for the given player.
      *
      * @param player                 The player
      * @param groupPermissionManager The group permission service
-     * @param groupMemberManager     The group member service
      */
-    public LegendPermissibleBase(@Nullable Player player, @NotNull GroupPermissionManager groupPermissionManager, @NotNull GroupMemberManager groupMemberManager) {
+    public LegendPermissibleBase(@Nullable Player player, @NotNull GroupPermissionManager groupPermissionManager) {
         super(player);
         this.player = player;
-        this.groupPermissionManager = groupPermissionManager;
-        this.groupMemberManager = groupMemberManager;
-
+        this.effectivePermissions = player == null ? null : groupPermissionManager.getEffectivePermissions(player.getUniqueId());
+        this.permissionMetrics = groupPermissionManager.getPermissionMetrics();
     }
 
     /**
-     * Checks if the player has the given permission.
+     * Checks if the player has the given permission. Only the precomputed permissions of the player are read, so this is safe to call from any thread. <br>
+     * While the {@link PermissionMetrics} are enabled, the check is counted as well.
      *
      * @param permission Name of the permission
      * @return true if the player has the permission, otherwise false
@@ -43,12 +40,19 @@ public class LegendPermissibleBase extends PermissibleBase {
     @Override
     public boolean hasPermission(@NotNull String permission) {
         if (this.player == null) return false;
-        if (super.isOp()) return true;
-
-        GroupMemberModel groupMemberModel = this.groupMemberManager.getOrSetGroup(this.player.getUniqueId());
-        GroupModel groupModel = groupMemberModel.getGroup();
-        if (groupModel == null) return false;
-
-        return this.groupPermissionManager.hasPermission("*", groupModel) || this.groupPermissionManager.hasPermission(permission, groupModel);
+        if (!this.permissionMetrics.isEnabled()) {
+            if (super.isOp()) return true;
+            return this.effectivePermissions.isGranted(permission);
+        }
+
+        long startedAt = this.permissionMetrics.startSample();
+        if (super.isOp()) {
+            this.permissionMetrics.record(permission, null, startedAt);
+            return true;
+        }
+
+        PermissionTrie.Decision decision = this.effectivePermissions.decide(permission);
+        this.permissionMetrics.record(permission, decision, startedAt);
+        return decision == PermissionTrie.Decision.GRANTED;
     }
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package io.github.rysefoxx.permission;
+
+import io.github.rysefoxx.model.GroupModel;
+import io.github.rysefoxx.model.GroupPermissionModel;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Resolves the inherited permissions of groups. <br>
+ * The own nodes of a group always win. The nodes of the ancestors follow in the order of their weight, so an ancestor with a higher weight
+ * overrides one with a lower weight. Every group is kept as its own level, so a wildcard of a level also beats a more specific node of a later level,
+ * e.g. an own {@code -essentials.*} beats an inherited {@code essentials.fly}. The result is computed once per change and stored in the group, so permission checks never walk the parents.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public final class PermissionResolver {
+
+    private PermissionResolver() {
+    }
+
+    /**
+     * Resolves the permissions of every given group and stores them in the group.
+     *
+     * @param groups The groups to resolve
+     * @param lookup Finds a group by its name, returns null if the group does not exist
+     */
+    public static void resolve(@NotNull Collection<GroupModel> groups, @NotNull Function<String, GroupModel> lookup) {
+        for (GroupModel groupModel : groups) {
+            groupModel.applyResolvedPermissions(resolve(groupModel, lookup));
+        }
+    }
+
+    /**
+     * Resolves the permissions of a group including all of its ancestors.
+     *
+     * @param groupModel The group to resolve
+     * @param lookup     Finds a group by its name, returns null if the group does not exist
+     * @return The own nodes of the group followed by the nodes of every ancestor in the order of their priority,
+     * mapped to true if they are granted and false if they are denied
+     */
+    public static @NotNull List<Map<String, Boolean>> resolve(@NotNull GroupModel groupModel, @NotNull Function<String, GroupModel> lookup) {
+        List<GroupModel> ancestors = new ArrayList<>(collectAncestors(groupModel, lookup));
+        ancestors.sort(GroupModel.PRIORITY_ORDER);
+
+        List<Map<String, Boolean>> levels = new ArrayList<>(ancestors.size() + 1);
+        levels.add(ownDecisions(groupModel));
+        for (GroupModel ancestor : ancestors) {
+            levels.add(ownDecisions(ancestor));
+        }
+        return levels;
+    }
+
+    /**
+     * Checks if a group inherits from another group, directly or through other parents.
+     *
+     * @param groupModel The group to check
+     * @param ancestor   The possible ancestor
+     * @param lookup     Finds a group by its name, returns null if the group does not exist
+     * @return true if the ancestor is a parent of the group or of one of its ancestors, otherwise false
+     */
+    public static boolean inheritsFrom(@NotNull GroupModel groupModel, @NotNull GroupModel ancestor, @NotNull Function<String, GroupModel> lookup) {
+        return collectAncestors(groupModel, lookup).contains(ancestor);
+    }
+
+    /**
+     * Collects all ancestors of a group. Cycles and unknown parents are skipped.
+     *
+     * @param groupModel The group to collect the ancestors for
+     * @param lookup     Finds a group by its name, returns null if the group does not exist
+     * @return The ancestors without the group itself
+     */
+    private static @NotNull Set<GroupModel> collectAncestors(@NotNull GroupModel groupModel, @NotNull Function<String, GroupModel> lookup) {
+        Set<GroupModel> ancestors = new LinkedHashSet<>();
+        Deque<GroupModel> pending = new ArrayDeque<>();
+        pending.push(groupModel);
+
+        while (!pending.isEmpty()) {
+            for (String parentName : pending.pop().getParents()) {
+                GroupModel parent = lookup.apply(parentName);
+                if (parent == null || parent == groupModel || !ancestors.add(parent)) continue;
+
+                pending.push(parent);
+            }
+        }
+        return ancestors;
+    }
+
+    /**
+     * @param groupModel The group
+     * @return The own nodes of the group mapped to true if they are granted and false if they are denied
+     */
+    private static @NotNull Map<String, Boolean> ownDecisions(@NotNull GroupModel groupModel) {
+        return PermissionTrie.toDecisions(groupModel.getPermissions().stream()
+                .map(GroupPermissionModel::getPermission)
+                .toList());
+    }
+}
@@ -0,0 +1,296 @@
+package io.github.rysefoxx.permission;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * An immutable, case-folded trie of permission nodes. <br>
+ * The trie is compiled once from the resolved permissions of a group and can then be queried from any thread without locking. <br>
+ * Every node is either granted or denied. Besides exact nodes it supports wildcard nodes. {@code *} matches every permission,
+ * {@code essentials.*} matches every permission below {@code essentials.}. The most specific node decides, so an exact node beats a wildcard
+ * and a longer wildcard beats a shorter one. <br>
+ * The nodes are single characters instead of the segments between the dots. A lookup walks the characters of the permission directly, so it
+ * neither splits the permission nor creates a substring per segment and does not allocate. Wildcards are only placed on the nodes of a {@code .},
+ * so they still match whole segments. <br>
+ * A trie merged from several groups remembers the rank of the group of every node. Then the heaviest group with a matching node decides,
+ * wildcards included, and only within that group the most specific node decides.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public final class PermissionTrie {
+
+    /**
+     * The trie without any permission.
+     */
+    public static final PermissionTrie EMPTY = compile(Map.of());
+
+    private static final String WILDCARD = "*";
+    private static final String WILDCARD_SUFFIX = ".*";
+    private static final String NEGATION_PREFIX = "-";
+
+    private static final byte UNSET = 0;
+    private static final byte GRANT = 1;
+    private static final byte DENY = 2;
+
+    private final Node root;
+
+    private PermissionTrie(@NotNull Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Compiles the given permissions into a new trie. Permissions starting with {@code -} are denied.
+     * If a permission is both granted and denied, it is denied.
+     *
+     * @param permissions The permissions to compile
+     * @return The compiled trie
+     */
+    public static @NotNull PermissionTrie compile(@NotNull Collection<String> permissions) {
+        return compile(toDecisions(permissions));
+    }
+
+    /**
+     * Compiles the given decisions into a new trie.
+     *
+     * @param decisions The permission nodes without {@code -} prefix, mapped to true if they are granted and false if they are denied
+     * @return The compiled trie
+     */
+    public static @NotNull PermissionTrie compile(@NotNull Map<String, Boolean> decisions) {
+        return merge(List.of(decisions));
+    }
+
+    /**
+     * Compiles the decisions of several groups into one trie. A lookup is decided by the first group with a matching node,
+     * so {@code -essentials.*} of the first group beats {@code essentials.fly} of the second.
+     *
+     * @param decisionsByPriority The decisions of the groups, the group with the highest priority first
+     * @return The compiled trie
+     */
+    public static @NotNull PermissionTrie merge(@NotNull List<Map<String, Boolean>> decisionsByPriority) {
+        BuilderNode root = new BuilderNode();
+
+        for (int rank = 0; rank < decisionsByPriority.size(); rank++) {
+            for (Map.Entry<String, Boolean> entry : decisionsByPriority.get(rank).entrySet()) {
+                String permission = entry.getKey();
+                byte decision = entry.getValue() ? GRANT : DENY;
+
+                if (permission.equals(WILDCARD)) {
+                    root.setWildcard(decision, rank);
+                    continue;
+                }
+
+                if (permission.endsWith(WILDCARD_SUFFIX)) {
+                    // The node "essentials." is marked, so everything below it is matched.
+                    root.insert(permission, permission.length() - 1).setWildcard(decision, rank);
+                    continue;
+                }
+
+                root.insert(permission, permission.length()).setValue(decision, rank);
+            }
+        }
+
+        return new PermissionTrie(root.freeze());
+    }
+
+    /**
+     * Converts permissions into decisions. Permissions starting with {@code -} are denied, the others granted.
+     * The nodes are lower-cased and a denial wins over a grant of the same node.
+     *
+     * @param permissions The permissions to convert
+     * @return The nodes without {@code -} prefix, mapped to true if they are granted and false if they are denied
+     */
+    public static @NotNull Map<String, Boolean> toDecisions(@NotNull Collection<String> permissions) {
+        Map<String, Boolean> decisions = new LinkedHashMap<>();
+        for (String permission : permissions) {
+            boolean negated = permission.startsWith(NEGATION_PREFIX);
+            String node = (negated ? permission.substring(NEGATION_PREFIX.length()) : permission).toLowerCase(Locale.ROOT);
+            decisions.merge(node, !negated, Boolean::logicalAnd);
+        }
+        return decisions;
+    }
+
+    /**
+     * Checks if the trie contains exactly the given permission node with the same decision. Wildcards are not expanded. <br>
+     * {@code -essentials.fly} is contained if the node {@code essentials.fly} is denied.
+     *
+     * @param permission The permission to check
+     * @return true if the node was compiled into the trie, otherwise false
+     */
+    public boolean contains(@NotNull String permission) {
+        boolean negated = permission.startsWith(NEGATION_PREFIX);
+        String node = negated ? permission.substring(NEGATION_PREFIX.length()) : permission;
+        byte expected = negated ? DENY : GRANT;
+
+        if (node.equals(WILDCARD)) return this.root.wildcard == expected;
+
+        boolean wildcard = node.endsWith(WILDCARD_SUFFIX);
+        Node found = walk(node, wildcard ? node.length() - 1 : node.length());
+        if (found == null) return false;
+
+        return (wildcard ? found.wildcard : found.value) == expected;
+    }
+
+    /**
+     * Checks if the given permission is granted by the trie. Wildcards are expanded and the most specific node decides. <br>
+     * The lookup costs O(length of the permission) and does not allocate.
+     *
+     * @param permission The permission to check
+     * @return true if the permission is granted, otherwise false
+     */
+    public boolean isGranted(@NotNull String permission) {
+        return lookup(permission) == GRANT;
+    }
+
+    /**
+     * Looks up the decision for the given permission like {@link #isGranted(String)}, but tells apart a denied node from a permission no node matches.
+     *
+     * @param permission The permission to check
+     * @return The decision of the most specific matching node or {@link Decision#UNDEFINED} if no node matches
+     */
+    public @NotNull Decision decide(@NotNull String permission) {
+        return Decision.VALUES[lookup(permission)];
+    }
+
+    /**
+     * Walks the trie along the permission and remembers the decision of the heaviest group, the most specific one within that group.
+     * The nodes are visited from the least to the most specific, so a node replaces the decision unless it belongs to a lighter group. This does not allocate.
+     *
+     * @param permission The permission to check
+     * @return {@link #GRANT}, {@link #DENY} or {@link #UNSET} if no node matches
+     */
+    private byte lookup(@NotNull String permission) {
+        Node node = this.root;
+        byte decision = node.wildcard;
+        int rank = node.wildcardRank;
+
+        int length = permission.length();
+        for (int i = 0; i < length; i++) {
+            node = node.child(Character.toLowerCase(permission.charAt(i)));
+            if (node == null) return decision;
+            if (node.wildcard != UNSET && i + 1 < length && node.wildcardRank <= rank) {
+                decision = node.wildcard;
+                rank = node.wildcardRank;
+            }
+        }
+
+        return node.value != UNSET && node.valueRank <= rank ? node.value : decision;
+    }
+
+    /**
+     * Walks the trie along the first characters of the given permission.
+     *
+     * @param permission The permission to walk along
+     * @param length     The amount of characters to walk
+     * @return The reached node or null if the path does not exist
+     */
+    private @Nullable Node walk(@NotNull String permission, int length) {
+        Node node = this.root;
+        for (int i = 0; i < length && node != null; i++) {
+            node = node.child(Character.toLowerCase(permission.charAt(i)));
+        }
+        return node;
+    }
+
+    /**
+     * The result of a lookup.
+     */
+    public enum Decision {
+        /**
+         * No node matches the permission, so it is not granted.
+         */
+        UNDEFINED,
+        GRANTED,
+        DENIED;
+
+        /**
+         * The decisions indexed by {@link #UNSET}, {@link #GRANT} and {@link #DENY}.
+         */
+        private static final Decision[] VALUES = values();
+    }
+
+    /**
+     * A frozen node of the trie. The children are stored in sorted arrays to allow a binary search without boxing.
+     */
+    private static final class Node {
+
+        private final char[] keys;
+        private final Node[] children;
+        private final byte value;
+        private final byte wildcard;
+
+        /**
+         * The rank of the group of {@link #value} and {@link #wildcard}. A lower rank is a heavier group. Unset decisions have the lowest priority.
+         */
+        private final int valueRank;
+        private final int wildcardRank;
+
+        private Node(char @NotNull [] keys, Node @NotNull [] children, byte value, int valueRank, byte wildcard, int wildcardRank) {
+            this.keys = keys;
+            this.children = children;
+            this.value = value;
+            this.valueRank = valueRank;
+            this.wildcard = wildcard;
+            this.wildcardRank = wildcardRank;
+        }
+
+        private @Nullable Node child(char key) {
+            int index = Arrays.binarySearch(this.keys, key);
+            return index < 0 ? null : this.children[index];
+        }
+    }
+
+    /**
+     * A mutable node which is only used while compiling the trie.
+     */
+    private static final class BuilderNode {
+
+        private final Map<Character, BuilderNode> children = new TreeMap<>();
+        private byte value = UNSET;
+        private byte wildcard = UNSET;
+        private int valueRank = Integer.MAX_VALUE;
+        private int wildcardRank = Integer.MAX_VALUE;
+
+        /**
+         * Sets the decision of the exact node, unless a group with a higher priority already decided it.
+         */
+        private void setValue(byte decision, int rank) {
+            if (this.value != UNSET) return;
+            this.value = decision;
+            this.valueRank = rank;
+        }
+
+        /**
+         * Sets the decision of the wildcard node, unless a group with a higher priority already decided it.
+         */
+        private void setWildcard(byte decision, int rank) {
+            if (this.wildcard != UNSET) return;
+            this.wildcard = decision;
+            this.wildcardRank = rank;
+        }
+
+        private @NotNull BuilderNode insert(@NotNull String permission, int length) {
+            BuilderNode node = this;
+            for (int i = 0; i < length; i++) {
+                node = node.children.computeIfAbsent(Character.toLowerCase(permission.charAt(i)), key -> new BuilderNode());
+            }
+            return node;
+        }
+
+        private @NotNull Node freeze() {
+            char[] keys = new char[this.children.size()];
+            Node[] frozenChildren = new Node[this.children.size()];
+
+            int index = 0;
+            for (Map.Entry<Character, BuilderNode> entry : this.children.entrySet()) {
+                keys[index] = entry.getKey();
+                frozenChildren[index] = entry.getValue().freeze();
+                index++;
+            }
+
+            return new Node(keys, frozenChildren, this.value, this.valueRank, this.wildcard, this.wildcardRank);
+        }
+    }
+}
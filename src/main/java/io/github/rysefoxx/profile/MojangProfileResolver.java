@@ -0,0 +1,78 @@
+package io.github.rysefoxx.profile;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.mojang.util.UUIDTypeAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Resolves players with the Mojang API. Every call is a request, so results have to be cached by the caller. <br>
+ * Based on <a href="https://gist.github.com/Jofkos/efaaff2afb645898adc3">this gist</a>.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class MojangProfileResolver implements ProfileResolver {
+
+    private static final String UUID_URL = "https://api.mojang.com/users/profiles/minecraft/%s";
+    private static final String NAME_URL = "https://sessionserver.mojang.com/session/minecraft/profile/%s";
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private final Gson gson = new GsonBuilder().registerTypeAdapter(UUID.class, new UUIDTypeAdapter()).create();
+
+    @Override
+    public @Nullable UUID resolveUUID(@NotNull String name) throws IOException {
+        Profile profile = request(String.format(UUID_URL, URLEncoder.encode(name, StandardCharsets.UTF_8)));
+        return profile == null ? null : profile.id();
+    }
+
+    @Override
+    public @Nullable String resolveName(@NotNull UUID uuid) throws IOException {
+        Profile profile = request(String.format(NAME_URL, UUIDTypeAdapter.fromUUID(uuid)));
+        return profile == null ? null : profile.name();
+    }
+
+    /**
+     * Requests a profile.
+     *
+     * @param url The url of the profile.
+     * @return The profile or null if it does not exist.
+     * @throws IOException If the request failed.
+     */
+    private @Nullable Profile request(@NotNull String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        try {
+            int status = connection.getResponseCode();
+            // Unknown players are answered without content or with not found.
+            if (status == HttpURLConnection.HTTP_NO_CONTENT || status == HttpURLConnection.HTTP_NOT_FOUND) return null;
+            if (status != HttpURLConnection.HTTP_OK) throw new IOException("Mojang API responded with " + status + " for " + url);
+
+            try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+                return this.gson.fromJson(reader, Profile.class);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * The fields of a profile which are read from the responses.
+     *
+     * @param id   The uuid.
+     * @param name The current name.
+     */
+    private record Profile(UUID id, String name) {
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.rysefoxx.profile;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Resolves players, who are not known to this server, from a remote service. <br>
+ * The methods are called from async threads and may block.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public interface ProfileResolver {
+
+    /**
+     * @param name The name of the player.
+     * @return The uuid of the player or null if no player has the name.
+     * @throws IOException If the service could not be reached.
+     */
+    @Nullable UUID resolveUUID(@NotNull String name) throws IOException;
+
+    /**
+     * @param uuid The uuid of the player.
+     * @return The current name of the player or null if the player does not exist.
+     * @throws IOException If the service could not be reached.
+     */
+    @Nullable String resolveName(@NotNull UUID uuid) throws IOException;
+}
@@ -0,0 +1,161 @@
+package io.github.rysefoxx.scheduler;
+
+import io.github.rysefoxx.metrics.LatencyHistogram;
+import io.github.rysefoxx.model.GroupMemberModel;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Fires when the membership of a {@link GroupMemberModel} expires. <br>
+ * Only members with an expiration are queued. A background thread waits for the next expiration and hands the expired members to the main thread,
+ * so the server does not have to check every online player each second.
+ *
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class ExpiryScheduler {
+
+    private final DelayQueue<ExpiringMember> queue = new DelayQueue<>();
+    private final Plugin plugin;
+    private final Consumer<GroupMemberModel> expireHandler;
+    private final LongAdder handledMembers = new LongAdder();
+
+    /**
+     * The time the main thread took to handle a batch of expired members.
+     */
+    @Getter
+    private final LatencyHistogram sweepLatency = new LatencyHistogram();
+
+    private Thread thread;
+
+    /**
+     * Creates a new expiry scheduler.
+     *
+     * @param plugin        The plugin which is used to run the handler on the main thread
+     * @param expireHandler The handler which is called on the main thread for every expired member
+     */
+    public ExpiryScheduler(@NotNull Plugin plugin, @NotNull Consumer<GroupMemberModel> expireHandler) {
+        this.plugin = plugin;
+        this.expireHandler = expireHandler;
+    }
+
+    /**
+     * Starts the thread which waits for expired members. When the scheduler is already running, nothing will happen.
+     */
+    public synchronized void start() {
+        if (this.thread != null) return;
+
+        this.thread = new Thread(this::run, "PlayLegendPermission-Expiry");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops the thread. Queued members are kept, but no longer fired.
+     */
+    public synchronized void shutdown() {
+        if (this.thread == null) return;
+
+        this.thread.interrupt();
+        this.thread = null;
+    }
+
+    /**
+     * Queues a member. Members without an expiration are ignored. <br>
+     * Members which were removed in the meantime are not removed from the queue, the handler has to check if the member is still valid.
+     *
+     * @param member The member to queue
+     */
+    public void schedule(@NotNull GroupMemberModel member) {
+        if (member.getExpiration() == null) return;
+
+        long expiresAt = member.getExpiration().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        this.queue.add(new ExpiringMember(member, expiresAt));
+    }
+
+    /**
+     * Removes all queued members.
+     */
+    public void clear() {
+        this.queue.clear();
+    }
+
+    /**
+     * @return The amount of queued members.
+     */
+    public int size() {
+        return this.queue.size();
+    }
+
+    /**
+     * @return The amount of expired members which were passed to the handler since the start.
+     */
+    public long getHandledMembers() {
+        return this.handledMembers.sum();
+    }
+
+    /**
+     * Waits for the next expired member and passes every member which is expired at that moment to the main thread.
+     */
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<GroupMemberModel> expired = new ArrayList<>();
+            try {
+                expired.add(this.queue.take().member());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            List<ExpiringMember> drained = new ArrayList<>();
+            this.queue.drainTo(drained);
+            drained.forEach(expiringMember -> expired.add(expiringMember.member()));
+
+            try {
+                Bukkit.getScheduler().runTask(this.plugin, () -> {
+                    long startedAt = System.nanoTime();
+                    expired.forEach(this.expireHandler);
+                    this.sweepLatency.record(System.nanoTime() - startedAt);
+                    this.handledMembers.add(expired.size());
+                });
+            } catch (IllegalPluginAccessException e) {
+                // The plugin has been disabled in the meantime.
+                return;
+            }
+        }
+    }
+
+    /**
+     * A queued member together with the point in time when it expires.
+     *
+     * @param member    The member
+     * @param expiresAt The expiration in epoch milliseconds
+     */
+    private record ExpiringMember(@NotNull GroupMemberModel member, long expiresAt) implements Delayed {
+
+        @Override
+        public long getDelay(@NotNull TimeUnit unit) {
+            return unit.convert(this.expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(@NotNull Delayed other) {
+            if (other instanceof ExpiringMember expiringMember) {
+                return Long.compare(this.expiresAt, expiringMember.expiresAt);
+            }
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), other.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -26,7 +26,6 @@
 
 package io.github.rysefoxx.util;
 
-import io.github.rysefoxx.manager.GroupMemberManager;
 import io.github.rysefoxx.manager.GroupPermissionManager;
 import io.github.rysefoxx.permission.LegendPermissibleBase;
 import org.bukkit.Bukkit;
@@ -66,7 +65,7 @@ public class CraftBukkitImplementation {
         return Class.forName(obc(className));
     }
 
-    public static void injectEntity(@NotNull Player player, @NotNull GroupPermissionManager groupPermissionManager, @NotNull GroupMemberManager groupMemberManager) throws Exception {
+    public static void injectEntity(@NotNull Player player, @NotNull GroupPermissionManager groupPermissionManager) throws Exception {
         // get the CraftEntity class
         Class<?> entityClass = CraftBukkitImplementation.obcClass("entity.CraftEntity");
 
@@ -83,7 +82,7 @@ public class CraftBukkitImplementation {
         permField.setAccessible(true);
 
         // create a new instance which delegates to the previous PermissibleBase
-        PermissibleBase newPermBase = new LegendPermissibleBase(player, groupPermissionManager, groupMemberManager);
+        PermissibleBase newPermBase = new LegendPermissibleBase(player, groupPermissionManager);
 
         // inject the new instance
         permField.set(null, newPermBase);
@@ -0,0 +1,80 @@
+package io.github.rysefoxx.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe cache with a maximum size, in which every entry expires after its own time to live. <br>
+ * If the cache is full, the entry which has not been read for the longest time is removed. Expired entries are removed when they are read.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ * @author Rysefoxx
+ * @since 02.01.2024
+ */
+public class ExpiringCache<K, V> {
+
+    private final Map<K, Entry<V>> entries;
+
+    public ExpiringCache(int maximumSize) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * @param key The key.
+     * @return The value or null if the key is not cached or expired.
+     */
+    public synchronized @Nullable V get(@NotNull K key) {
+        Entry<V> entry = this.entries.get(key);
+        if (entry == null) return null;
+        if (entry.expiresAt() > System.currentTimeMillis()) return entry.value();
+
+        this.entries.remove(key);
+        return null;
+    }
+
+    /**
+     * Caches a value, which replaces the current value of the key.
+     *
+     * @param key       The key.
+     * @param value     The value.
+     * @param ttlMillis The milliseconds after which the value expires.
+     */
+    public synchronized void put(@NotNull K key, @NotNull V value, long ttlMillis) {
+        this.entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * Removes a key from the cache.
+     *
+     * @param key The key.
+     */
+    public synchronized void invalidate(@NotNull K key) {
+        this.entries.remove(key);
+    }
+
+    /**
+     * Removes all keys from the cache.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * @return The amount of cached entries, including expired entries which have not been read yet.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    private record Entry<V>(@NotNull V value, long expiresAt) {
+    }
+}
@@ -1,8 +1,14 @@
 package io.github.rysefoxx.util;
 
 import lombok.experimental.UtilityClass;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
 /**
  * @author Rysefoxx
  * @since 02.01.2024
@@ -24,4 +30,43 @@ public class Util {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Runs a task on the main thread.
+     *
+     * @param plugin   The plugin which owns the task
+     * @param runnable The task
+     * @return A future which is completed when the task has finished
+     */
+    public @NotNull CompletableFuture<Void> runSync(@NotNull Plugin plugin, @NotNull Runnable runnable) {
+        return supplySync(plugin, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a task on the main thread.
+     *
+     * @param plugin   The plugin which owns the task
+     * @param supplier The task
+     * @param <T>      The type of the result
+     * @return A future which is completed with the result of the task
+     */
+    public <T> @NotNull CompletableFuture<T> supplySync(@NotNull Plugin plugin, @NotNull Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                try {
+                    future.complete(supplier.get());
+                } catch (Throwable throwable) {
+                    future.completeExceptionally(throwable);
+                }
+            });
+        } catch (IllegalPluginAccessException e) {
+            // The plugin is disabled, so the task can not be scheduled anymore.
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,49 @@
+CREATE TABLE IF NOT EXISTS legend.groups
+(
+    id     INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name   VARCHAR(20) UNIQUE NOT NULL,
+    weight INT                NOT NULL,
+    prefix VARCHAR(20)        NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS legend.group_member
+(
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uuid       UUID      NOT NULL,
+    group_id   INT       NOT NULL,
+    expiration TIMESTAMP NULL,
+    CONSTRAINT uq_group_member_uuid_group UNIQUE (uuid, group_id),
+    FOREIGN KEY (group_id) REFERENCES legend.groups (id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_group_member_expiration ON legend.group_member (expiration);
+
+CREATE TABLE IF NOT EXISTS legend.group_permission
+(
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    group_id   INT         NOT NULL,
+    permission VARCHAR(50) NOT NULL,
+    CONSTRAINT uq_group_permission_group_permission UNIQUE (group_id, permission),
+    FOREIGN KEY (group_id) REFERENCES legend.groups (id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS legend.group_parent
+(
+    group_id  INT NOT NULL,
+    parent_id INT NOT NULL,
+    PRIMARY KEY (group_id, parent_id),
+    FOREIGN KEY (group_id) REFERENCES legend.groups (id) ON DELETE CASCADE,
+    FOREIGN KEY (parent_id) REFERENCES legend.groups (id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS legend.change_log
+(
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    origin     UUID        NOT NULL,
+    type       VARCHAR(20) NOT NULL,
+    name       VARCHAR(20) NOT NULL,
+    uuid       UUID        NULL,
+    created_at TIMESTAMP   NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_change_log_created_at ON legend.change_log (created_at)
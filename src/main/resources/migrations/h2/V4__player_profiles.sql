@@ -0,0 +1,9 @@
+CREATE TABLE IF NOT EXISTS legend.player_profile
+(
+    uuid       UUID PRIMARY KEY NOT NULL,
+    name       VARCHAR(16)      NOT NULL,
+    name_key   VARCHAR(16)      NOT NULL,
+    updated_at TIMESTAMP        NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_player_profile_name_key ON legend.player_profile (name_key)
@@ -1,6 +1,3 @@
-CREATE DATABASE IF NOT EXISTS legend;
-use legend;
-
 CREATE TABLE IF NOT EXISTS legend.groups
 (
     name   VARCHAR(20) PRIMARY KEY NOT NULL,
@@ -23,4 +20,24 @@ CREATE TABLE IF NOT EXISTS legend.group_permission
     permission VARCHAR(50)        NOT NULL,
     name       VARCHAR(20)        NOT NULL,
     FOREIGN KEY (name) REFERENCES legend.groups (name)
+);
+
+CREATE TABLE IF NOT EXISTS legend.group_parent
+(
+    name   VARCHAR(20) NOT NULL,
+    parent VARCHAR(20) NOT NULL,
+    PRIMARY KEY (name, parent),
+    FOREIGN KEY (name) REFERENCES legend.groups (name),
+    FOREIGN KEY (parent) REFERENCES legend.groups (name)
+);
+
+CREATE TABLE IF NOT EXISTS legend.change_log
+(
+    id         BIGINT PRIMARY KEY NOT NULL AUTO_INCREMENT,
+    origin     UUID               NOT NULL,
+    type       VARCHAR(20)        NOT NULL,
+    name       VARCHAR(20)        NOT NULL,
+    uuid       UUID               NULL,
+    created_at DATETIME           NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX (created_at)
 );
\ No newline at end of file
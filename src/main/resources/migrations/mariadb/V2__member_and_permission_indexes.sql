@@ -0,0 +1,18 @@
+DELETE duplicate
+FROM legend.group_member duplicate
+         JOIN legend.group_member newer
+              ON duplicate.uuid = newer.uuid AND duplicate.name = newer.name AND duplicate.id < newer.id;
+
+ALTER TABLE legend.group_member
+    ADD UNIQUE INDEX IF NOT EXISTS uq_group_member_uuid_name (uuid, name);
+
+ALTER TABLE legend.group_member
+    ADD INDEX IF NOT EXISTS idx_group_member_expiration (expiration);
+
+DELETE duplicate
+FROM legend.group_permission duplicate
+         JOIN legend.group_permission newer
+              ON duplicate.name = newer.name AND duplicate.permission = newer.permission AND duplicate.id < newer.id;
+
+ALTER TABLE legend.group_permission
+    ADD UNIQUE INDEX IF NOT EXISTS uq_group_permission_name_permission (name, permission)
@@ -0,0 +1,86 @@
+DROP TABLE IF EXISTS legend.group_parent_new, legend.group_permission_new, legend.group_member_new, legend.groups_new, legend.change_log_new;
+
+CREATE TABLE IF NOT EXISTS legend.groups_new
+(
+    id     INT PRIMARY KEY     NOT NULL AUTO_INCREMENT,
+    name   VARCHAR(20) UNIQUE  NOT NULL,
+    weight INT                 NOT NULL,
+    prefix VARCHAR(20)         NOT NULL
+);
+
+INSERT IGNORE INTO legend.groups_new (name, weight, prefix)
+SELECT name, weight, prefix
+FROM legend.groups;
+
+CREATE TABLE IF NOT EXISTS legend.group_member_new
+(
+    id         BIGINT PRIMARY KEY NOT NULL AUTO_INCREMENT,
+    uuid       BINARY(16)         NOT NULL,
+    group_id   INT                NOT NULL,
+    expiration DATETIME           NULL,
+    UNIQUE INDEX uq_group_member_uuid_group (uuid, group_id),
+    INDEX idx_group_member_expiration (expiration),
+    FOREIGN KEY (group_id) REFERENCES legend.groups_new (id) ON DELETE CASCADE
+);
+
+INSERT IGNORE INTO legend.group_member_new (id, uuid, group_id, expiration)
+SELECT member.id, UNHEX(REPLACE(CAST(member.uuid AS CHAR), '-', '')), grp.id, member.expiration
+FROM legend.group_member member
+         JOIN legend.groups_new grp ON grp.name = member.name;
+
+CREATE TABLE IF NOT EXISTS legend.group_permission_new
+(
+    id         BIGINT PRIMARY KEY NOT NULL AUTO_INCREMENT,
+    group_id   INT                NOT NULL,
+    permission VARCHAR(50)        NOT NULL,
+    UNIQUE INDEX uq_group_permission_group_permission (group_id, permission),
+    FOREIGN KEY (group_id) REFERENCES legend.groups_new (id) ON DELETE CASCADE
+);
+
+INSERT IGNORE INTO legend.group_permission_new (id, group_id, permission)
+SELECT permission.id, grp.id, permission.permission
+FROM legend.group_permission permission
+         JOIN legend.groups_new grp ON grp.name = permission.name;
+
+CREATE TABLE IF NOT EXISTS legend.group_parent_new
+(
+    group_id  INT NOT NULL,
+    parent_id INT NOT NULL,
+    PRIMARY KEY (group_id, parent_id),
+    FOREIGN KEY (group_id) REFERENCES legend.groups_new (id) ON DELETE CASCADE,
+    FOREIGN KEY (parent_id) REFERENCES legend.groups_new (id) ON DELETE CASCADE
+);
+
+INSERT IGNORE INTO legend.group_parent_new (group_id, parent_id)
+SELECT grp.id, parent.id
+FROM legend.group_parent link
+         JOIN legend.groups_new grp ON grp.name = link.name
+         JOIN legend.groups_new parent ON parent.name = link.parent;
+
+CREATE TABLE IF NOT EXISTS legend.change_log_new
+(
+    id         BIGINT PRIMARY KEY NOT NULL AUTO_INCREMENT,
+    origin     BINARY(16)         NOT NULL,
+    type       VARCHAR(20)        NOT NULL,
+    name       VARCHAR(20)        NOT NULL,
+    uuid       BINARY(16)         NULL,
+    created_at DATETIME           NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_change_log_created_at (created_at)
+);
+
+INSERT IGNORE INTO legend.change_log_new (id, origin, type, name, uuid, created_at)
+SELECT id, UNHEX(REPLACE(CAST(origin AS CHAR), '-', '')), type, name, UNHEX(REPLACE(CAST(uuid AS CHAR), '-', '')), created_at
+FROM legend.change_log;
+
+RENAME TABLE legend.groups TO legend.groups_old,
+    legend.group_member TO legend.group_member_old,
+    legend.group_permission TO legend.group_permission_old,
+    legend.group_parent TO legend.group_parent_old,
+    legend.change_log TO legend.change_log_old,
+    legend.groups_new TO legend.groups,
+    legend.group_member_new TO legend.group_member,
+    legend.group_permission_new TO legend.group_permission,
+    legend.group_parent_new TO legend.group_parent,
+    legend.change_log_new TO legend.change_log;
+
+DROP TABLE IF EXISTS legend.group_parent_old, legend.group_permission_old, legend.group_member_old, legend.groups_old, legend.change_log_old
@@ -0,0 +1,8 @@
+CREATE TABLE IF NOT EXISTS legend.player_profile
+(
+    uuid       BINARY(16) PRIMARY KEY NOT NULL,
+    name       VARCHAR(16)            NOT NULL,
+    name_key   VARCHAR(16)            NOT NULL,
+    updated_at DATETIME               NOT NULL,
+    INDEX idx_player_profile_name_key (name_key)
+)
@@ -0,0 +1,47 @@
+CREATE TABLE IF NOT EXISTS legend.`groups`
+(
+    id     INT PRIMARY KEY     NOT NULL AUTO_INCREMENT,
+    name   VARCHAR(20) UNIQUE  NOT NULL,
+    weight INT                 NOT NULL,
+    prefix VARCHAR(20)         NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS legend.group_member
+(
+    id         BIGINT PRIMARY KEY NOT NULL AUTO_INCREMENT,
+    uuid       BINARY(16)         NOT NULL,
+    group_id   INT                NOT NULL,
+    expiration DATETIME           NULL,
+    UNIQUE INDEX uq_group_member_uuid_group (uuid, group_id),
+    INDEX idx_group_member_expiration (expiration),
+    FOREIGN KEY (group_id) REFERENCES legend.`groups` (id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS legend.group_permission
+(
+    id         BIGINT PRIMARY KEY NOT NULL AUTO_INCREMENT,
+    group_id   INT                NOT NULL,
+    permission VARCHAR(50)        NOT NULL,
+    UNIQUE INDEX uq_group_permission_group_permission (group_id, permission),
+    FOREIGN KEY (group_id) REFERENCES legend.`groups` (id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS legend.group_parent
+(
+    group_id  INT NOT NULL,
+    parent_id INT NOT NULL,
+    PRIMARY KEY (group_id, parent_id),
+    FOREIGN KEY (group_id) REFERENCES legend.`groups` (id) ON DELETE CASCADE,
+    FOREIGN KEY (parent_id) REFERENCES legend.`groups` (id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS legend.change_log
+(
+    id         BIGINT PRIMARY KEY NOT NULL AUTO_INCREMENT,
+    origin     BINARY(16)         NOT NULL,
+    type       VARCHAR(20)        NOT NULL,
+    name       VARCHAR(20)        NOT NULL,
+    uuid       BINARY(16)         NULL,
+    created_at DATETIME           NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_change_log_created_at (created_at)
+)
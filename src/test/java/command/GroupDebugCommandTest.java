@@ -0,0 +1,110 @@
+package command;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.command.CommandGroup;
+import io.github.rysefoxx.command.impl.GroupDebugCommand;
+import io.github.rysefoxx.metrics.PermissionMetrics;
+import io.github.rysefoxx.permission.LegendPermissibleBase;
+import org.bukkit.command.PluginCommand;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This class tests the {@link GroupDebugCommand}.
+ */
+class GroupDebugCommandTest {
+
+    private PlayLegendPermission plugin;
+    private PlayerMock player;
+
+    @BeforeEach
+    public void setUp() {
+        ServerMock server = MockBukkit.mock();
+        this.plugin = MockBukkit.load(PlayLegendPermission.class);
+        this.player = server.addPlayer();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests that checks are only counted while the metrics are enabled.
+     */
+    @Test
+    public void toggle() {
+        PermissionMetrics permissionMetrics = this.plugin.getGroupPermissionManager().getPermissionMetrics();
+        LegendPermissibleBase permissibleBase = new LegendPermissibleBase(this.player, this.plugin.getGroupPermissionManager());
+
+        permissibleBase.hasPermission("debug.disabled");
+        Assertions.assertEquals(0, permissionMetrics.getChecks());
+
+        this.player.performCommand("group debug perms on");
+        this.player.assertSaid("Permission metrics have been enabled.");
+        permissibleBase.hasPermission("debug.enabled");
+        Assertions.assertEquals(1, permissionMetrics.getChecks());
+        Assertions.assertEquals(1, permissionMetrics.getMisses());
+
+        this.player.performCommand("group debug perms off");
+        this.player.assertSaid("Permission metrics have been disabled.");
+        permissibleBase.hasPermission("debug.enabled");
+        Assertions.assertEquals(1, permissionMetrics.getChecks());
+    }
+
+    /**
+     * Tests that the hottest nodes are shown in descending order.
+     */
+    @Test
+    public void topNodes() {
+        LegendPermissibleBase permissibleBase = new LegendPermissibleBase(this.player, this.plugin.getGroupPermissionManager());
+        this.player.performCommand("group debug perms on");
+        this.player.assertSaid("Permission metrics have been enabled.");
+
+        for (int i = 0; i < 5; i++) {
+            permissibleBase.hasPermission("debug.hot");
+        }
+        permissibleBase.hasPermission("debug.cold");
+
+        this.player.performCommand("group debug perms top 1");
+        List<String> messages = new ArrayList<>();
+        String message;
+        while ((message = this.player.nextMessage()) != null) {
+            messages.add(message);
+        }
+
+        Assertions.assertTrue(messages.get(0).startsWith("Permission checks: 6 "), messages.get(0));
+        Assertions.assertTrue(messages.contains("1. debug.hot: 5 (83.3%)"), messages.toString());
+        Assertions.assertFalse(messages.stream().anyMatch(line -> line.contains("debug.cold")), messages.toString());
+    }
+
+    /**
+     * Tests if the amount is not a number.
+     */
+    @Test
+    public void invalidTop() {
+        this.player.performCommand("group debug perms top DasIstKeineZahl");
+        this.player.assertSaid("The amount must be a positive number.");
+    }
+
+    /**
+     * Tests that the debug subcommands without arguments complete nothing, as null would complete the names of the online players.
+     */
+    @Test
+    public void tabComplete() {
+        CommandGroup commandGroup = new CommandGroup(this.plugin);
+        PluginCommand command = Objects.requireNonNull(this.plugin.getCommand("group"));
+
+        Assertions.assertEquals(List.of("on", "off", "reset", "top"), commandGroup.onTabComplete(this.player, command, "group", new String[]{"debug", "perms", ""}));
+        Assertions.assertEquals(List.of(), commandGroup.onTabComplete(this.player, command, "group", new String[]{"debug", "queries", ""}));
+    }
+}
@@ -0,0 +1,92 @@
+package command;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.command.impl.GroupParentCommand;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+/**
+ * This class tests the {@link GroupParentCommand}.
+ */
+class GroupParentCommandTest {
+
+    private PlayerMock player;
+
+    @BeforeEach
+    public void setUp() {
+        ServerMock server = MockBukkit.mock();
+        MockBukkit.load(PlayLegendPermission.class);
+        this.player = server.addPlayer();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests if the group does not exist.
+     */
+    @Test
+    public void addGroupParentNotFound() {
+        this.player.performCommand("group parent add " + UUID.randomUUID().toString().substring(0, 19) + " default");
+        this.player.assertSaid("The group does not exist.");
+    }
+
+    /**
+     * Tests if the parent has been added and removed.
+     */
+    @Test
+    public void addAndRemoveGroupParent() {
+        String groupName = createGroup();
+        String parentName = createGroup();
+
+        this.player.performCommand("group parent add " + groupName + " " + parentName);
+        this.player.assertSaid("The parent group has been added.");
+
+        this.player.performCommand("group parent add " + groupName + " " + parentName);
+        this.player.assertSaid("The group already inherits from this group.");
+
+        this.player.performCommand("group parent remove " + groupName + " " + parentName);
+        this.player.assertSaid("The parent group has been removed.");
+
+        this.player.performCommand("group parent remove " + groupName + " " + parentName);
+        this.player.assertSaid("The group does not inherit from this group.");
+    }
+
+    /**
+     * Tests if a group cannot inherit from a group which inherits from it.
+     */
+    @Test
+    public void addGroupParentCycle() {
+        String groupName = createGroup();
+        String parentName = createGroup();
+
+        this.player.performCommand("group parent add " + groupName + " " + parentName);
+        this.player.assertSaid("The parent group has been added.");
+
+        this.player.performCommand("group parent add " + parentName + " " + groupName);
+        this.player.assertSaid("A group cannot inherit from itself or from a group which inherits from it.");
+
+        this.player.performCommand("group parent add " + groupName + " " + groupName);
+        this.player.assertSaid("A group cannot inherit from itself or from a group which inherits from it.");
+    }
+
+    /**
+     * Creates a new group with a random name.
+     *
+     * @return The name of the group.
+     */
+    private String createGroup() {
+        String groupName = UUID.randomUUID().toString().substring(0, 19);
+        this.player.performCommand("group create " + groupName);
+        this.player.assertSaid("The group was created.");
+        return groupName;
+    }
+}
@@ -0,0 +1,50 @@
+package command;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.command.impl.GroupReloadCommand;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This class tests the {@link GroupReloadCommand}.
+ */
+class GroupReloadCommandTest {
+
+    private ServerMock server;
+    private PlayerMock player;
+
+    @BeforeEach
+    public void setUp() {
+        this.server = MockBukkit.mock();
+        MockBukkit.load(PlayLegendPermission.class);
+        this.player = this.server.addPlayer();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests if the changes are applied and the player is informed.
+     */
+    @Test
+    public void reload() {
+        this.player.performCommand("group reload");
+
+        String message = null;
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (message == null && System.currentTimeMillis() < deadline) {
+            this.server.getScheduler().performOneTick();
+            message = this.player.nextMessage();
+        }
+
+        Assertions.assertNotNull(message);
+        Assertions.assertTrue(message.startsWith("Applied "), message);
+    }
+}
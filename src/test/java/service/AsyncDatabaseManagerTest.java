@@ -0,0 +1,88 @@
+package service;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.database.AsyncDatabaseManager;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class tests the behavior of the {@link AsyncDatabaseManager} when its queue is full.
+ */
+class AsyncDatabaseManagerTest {
+
+    private AsyncDatabaseManager asyncDatabaseManager;
+    private CountDownLatch release;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        MockBukkit.mock();
+        PlayLegendPermission plugin = MockBukkit.load(PlayLegendPermission.class);
+
+        // One thread and one queued task, so the third task does not fit.
+        YamlConfiguration config = plugin.getConnectionManager().getConfig();
+        config.set("executor.threads", 1);
+        config.set("executor.queue-capacity", 1);
+        this.asyncDatabaseManager = new AsyncDatabaseManager(plugin);
+
+        this.release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        this.asyncDatabaseManager.executeAsync(() -> {
+            started.countDown();
+            await(this.release);
+        });
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        this.asyncDatabaseManager.executeAsync(() -> {
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.release.countDown();
+        this.asyncDatabaseManager.shutdownExecutorService();
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests that a task of the main thread is rejected and counted if the queue is full, so the main thread never blocks.
+     */
+    @Test
+    public void rejectOnMainThread() {
+        CompletableFuture<Void> future = this.asyncDatabaseManager.executeAsync(() -> {
+        });
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> future.get(0, TimeUnit.MILLISECONDS));
+        Assertions.assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        Assertions.assertEquals(1, this.asyncDatabaseManager.getRejectedTasks());
+    }
+
+    /**
+     * Tests that a task of another thread runs on that thread if the queue is full, instead of failing.
+     */
+    @Test
+    public void runOnCallingThread() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Thread caller = new Thread(() -> future.complete(this.asyncDatabaseManager.supplyAsync(() -> Thread.currentThread().getName()).join()), "Caller");
+        caller.start();
+
+        Assertions.assertEquals("Caller", future.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, this.asyncDatabaseManager.getRejectedTasks());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package service;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.database.DatabaseInvalidationBus;
+import io.github.rysefoxx.database.InvalidationEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class tests how the {@link DatabaseInvalidationBus} reads the change_log while ids are missing.
+ */
+class DatabaseInvalidationBusTest {
+
+    private PlayLegendPermission plugin;
+    private DatabaseInvalidationBus invalidationBus;
+    private final List<InvalidationEvent> received = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        MockBukkit.mock();
+        this.plugin = MockBukkit.load(PlayLegendPermission.class);
+        this.invalidationBus = new DatabaseInvalidationBus(this.plugin);
+        this.invalidationBus.subscribe(event -> {
+            this.received.add(event);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.invalidationBus.shutdown();
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests that the rows after a missing id are applied only once, although the revision does not move past the gap.
+     */
+    @Test
+    public void skipRowsAfterGap() throws Exception {
+        long revision = this.invalidationBus.getRevision();
+        String groupName = UUID.randomUUID().toString().substring(0, 5);
+        // The first row is removed again, so its id is missing like the id of a transaction which has not committed yet.
+        long missingId = insertChange(null, groupName + "0");
+        insertChange(null, groupName);
+        execute("DELETE FROM legend.change_log WHERE id = " + missingId);
+
+        Assertions.assertEquals(1, this.invalidationBus.synchronize().get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(revision, this.invalidationBus.getRevision());
+        Assertions.assertEquals(0, this.invalidationBus.synchronize().get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(InvalidationEvent.group(groupName)), this.received);
+
+        // Once the gap is filled, only the new row is applied.
+        insertChange(missingId, groupName + "1");
+        Assertions.assertEquals(1, this.invalidationBus.synchronize().get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(InvalidationEvent.group(groupName), InvalidationEvent.group(groupName + "1")), this.received);
+    }
+
+    /**
+     * Inserts a row of another server.
+     *
+     * @return The id of the row.
+     */
+    private long insertChange(Long id, String groupName) throws SQLException {
+        String query = id == null
+                ? "INSERT INTO legend.change_log (origin, type, name) VALUES (?, ?, ?)"
+                : "INSERT INTO legend.change_log (origin, type, name, id) VALUES (?, ?, ?, " + id + ")";
+        try (Connection connection = Objects.requireNonNull(this.plugin.getConnectionManager().getConnection());
+             PreparedStatement preparedStatement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            preparedStatement.setObject(1, UUID.randomUUID());
+            preparedStatement.setString(2, InvalidationEvent.Type.GROUP.name());
+            preparedStatement.setString(3, groupName);
+            preparedStatement.executeUpdate();
+            if (id != null) return id;
+
+            try (ResultSet resultSet = preparedStatement.getGeneratedKeys()) {
+                Assertions.assertTrue(resultSet.next());
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    private void execute(String query) throws SQLException {
+        try (Connection connection = Objects.requireNonNull(this.plugin.getConnectionManager().getConnection());
+             Statement statement = connection.createStatement()) {
+            statement.execute(query);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package service;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.database.DatabaseTableManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+
+/**
+ * This class tests the migrations of the {@link DatabaseTableManager} on the embedded H2 database.
+ */
+class DatabaseTableManagerTest {
+
+    private static final int LATEST_VERSION = 4;
+
+    private PlayLegendPermission plugin;
+
+    @BeforeEach
+    public void setUp() {
+        MockBukkit.mock();
+        this.plugin = MockBukkit.load(PlayLegendPermission.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests that all migrations are applied on an empty database.
+     */
+    @Test
+    public void migrateEmptyDatabase() throws SQLException {
+        execute("DROP ALL OBJECTS");
+
+        new DatabaseTableManager(this.plugin);
+
+        Assertions.assertEquals(LATEST_VERSION, queryInt("SELECT MAX(version) FROM legend.schema_version"));
+        Assertions.assertEquals(LATEST_VERSION, queryInt("SELECT COUNT(*) FROM legend.schema_version"));
+        Assertions.assertEquals(0, queryInt("SELECT COUNT(*) FROM legend.schema_migration_step"));
+        Assertions.assertEquals(0, queryInt("SELECT COUNT(*) FROM legend.groups"));
+        Assertions.assertEquals(0, queryInt("SELECT COUNT(*) FROM legend.player_profile"));
+    }
+
+    /**
+     * Tests that the migrations can run again on a database which already has all tables, without losing data.
+     */
+    @Test
+    public void migrateAgain() throws SQLException {
+        execute("DROP ALL OBJECTS");
+        new DatabaseTableManager(this.plugin);
+        execute("INSERT INTO legend.groups (name, weight, prefix) VALUES ('again', 1, 'Again')");
+
+        // Without versions, every script runs again on the existing tables.
+        execute("DELETE FROM legend.schema_version");
+        new DatabaseTableManager(this.plugin);
+
+        Assertions.assertEquals(LATEST_VERSION, queryInt("SELECT COUNT(*) FROM legend.schema_version"));
+        Assertions.assertEquals(1, queryInt("SELECT COUNT(*) FROM legend.groups WHERE name = 'again'"));
+    }
+
+    /**
+     * Tests that a failed migration is continued with the statement after the last recorded one.
+     */
+    @Test
+    public void continueFailedMigration() throws SQLException {
+        execute("DROP ALL OBJECTS");
+        new DatabaseTableManager(this.plugin);
+
+        // The table of migration 4 was created, but the index was not.
+        execute("DELETE FROM legend.schema_version WHERE version = " + LATEST_VERSION);
+        execute("DROP INDEX legend.idx_player_profile_name_key");
+        execute("INSERT INTO legend.schema_migration_step (version, step) VALUES (" + LATEST_VERSION + ", 0)");
+        new DatabaseTableManager(this.plugin);
+
+        Assertions.assertEquals(LATEST_VERSION, queryInt("SELECT MAX(version) FROM legend.schema_version"));
+        Assertions.assertEquals(0, queryInt("SELECT COUNT(*) FROM legend.schema_migration_step"));
+        Assertions.assertEquals(1, queryInt("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES " +
+                "WHERE LOWER(TABLE_SCHEMA) = 'legend' AND LOWER(INDEX_NAME) = 'idx_player_profile_name_key'"));
+    }
+
+    private void execute(String query) throws SQLException {
+        try (Connection connection = Objects.requireNonNull(this.plugin.getConnectionManager().getConnection());
+             Statement statement = connection.createStatement()) {
+            statement.execute(query);
+        }
+    }
+
+    private int queryInt(String query) throws SQLException {
+        try (Connection connection = Objects.requireNonNull(this.plugin.getConnectionManager().getConnection());
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            Assertions.assertTrue(resultSet.next());
+            return resultSet.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package service;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.manager.GroupMemberManager;
+import io.github.rysefoxx.metrics.MetricsWriter;
+import io.github.rysefoxx.model.GroupMemberModel;
+import io.github.rysefoxx.model.GroupModel;
+import io.github.rysefoxx.scheduler.ExpiryScheduler;
+import org.bukkit.Bukkit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class tests the {@link ExpiryScheduler} and how the {@link GroupMemberManager} handles expired members.
+ */
+class ExpirySchedulerTest {
+
+    private static final long TIMEOUT_MILLIS = 5000L;
+
+    private ServerMock server;
+    private PlayLegendPermission plugin;
+    private GroupMemberManager groupMemberManager;
+    private String groupName;
+
+    @BeforeEach
+    public void setUp() {
+        this.server = MockBukkit.mock();
+        this.plugin = MockBukkit.load(PlayLegendPermission.class);
+        this.groupMemberManager = this.plugin.getGroupMemberManager();
+
+        this.groupName = UUID.randomUUID().toString().substring(0, 5);
+        this.plugin.getGroupManager().save(new GroupModel(this.groupName, this.groupName + "Prefix"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests that a member with a short expiration is passed to the handler on the main thread.
+     */
+    @Test
+    public void expireOnMainThread() throws InterruptedException {
+        List<GroupMemberModel> expired = new CopyOnWriteArrayList<>();
+        List<Boolean> onMainThread = new CopyOnWriteArrayList<>();
+        ExpiryScheduler expiryScheduler = new ExpiryScheduler(this.plugin, member -> {
+            expired.add(member);
+            onMainThread.add(Bukkit.isPrimaryThread());
+        });
+        expiryScheduler.start();
+
+        try {
+            GroupModel groupModel = this.plugin.getGroupManager().findByName(this.groupName).orElseThrow();
+            GroupMemberModel member = new GroupMemberModel(UUID.randomUUID(), LocalDateTime.now().plusNanos(100_000_000L), groupModel);
+            expiryScheduler.schedule(member);
+            Assertions.assertEquals(1, expiryScheduler.size());
+
+            awaitOnMainThread(() -> !expired.isEmpty());
+
+            Assertions.assertEquals(List.of(member), expired);
+            Assertions.assertEquals(List.of(true), onMainThread);
+            Assertions.assertEquals(1, expiryScheduler.getHandledMembers());
+            Assertions.assertEquals(0, expiryScheduler.size());
+        } finally {
+            expiryScheduler.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a queued member which was removed before it expired is ignored, so the player is not placed in the default group.
+     */
+    @Test
+    public void ignoreRemovedMember() throws InterruptedException {
+        UUID uuid = UUID.randomUUID();
+        LocalDateTime shortExpiration = LocalDateTime.now().plusNanos(100_000_000L);
+        long handled = handledMembers();
+        this.groupMemberManager.addMember(uuid, this.groupName, shortExpiration);
+        this.groupMemberManager.removeMember(uuid, this.groupName);
+
+        awaitExpired(shortExpiration, handled);
+
+        Assertions.assertFalse(this.groupMemberManager.hasGroup(uuid));
+    }
+
+    /**
+     * Tests that a queued member which was added again with a new expiration is ignored, so the new membership is kept.
+     */
+    @Test
+    public void ignoreReplacedMember() throws InterruptedException {
+        UUID uuid = UUID.randomUUID();
+        LocalDateTime expiration = LocalDateTime.now().plusHours(1);
+        LocalDateTime shortExpiration = LocalDateTime.now().plusNanos(100_000_000L);
+        long handled = handledMembers();
+        this.groupMemberManager.addMember(uuid, this.groupName, shortExpiration);
+        this.groupMemberManager.addMember(uuid, this.groupName, expiration);
+
+        awaitExpired(shortExpiration, handled);
+
+        Assertions.assertTrue(this.groupMemberManager.inGroup(uuid, this.groupName));
+        Assertions.assertEquals(expiration, Objects.requireNonNull(this.groupMemberManager.getGroup(uuid)).getExpiration());
+        this.groupMemberManager.removeMember(uuid, this.groupName);
+    }
+
+    /**
+     * Waits until the expiration has passed and the {@link GroupMemberManager} handled another member. Expired members of older tests may be handled as well,
+     * so the expiration has to pass, too.
+     */
+    private void awaitExpired(LocalDateTime expiration, long handled) throws InterruptedException {
+        LocalDateTime handledAfter = expiration.plusNanos(200_000_000L);
+        awaitOnMainThread(() -> LocalDateTime.now().isAfter(handledAfter) && handledMembers() > handled);
+    }
+
+    /**
+     * Runs the ticks of the main thread until the condition is met, so the tasks of the expiry thread are run.
+     */
+    private void awaitOnMainThread(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "The member did not expire in time!");
+            Thread.sleep(10L);
+            this.server.getScheduler().performOneTick();
+        }
+    }
+
+    /**
+     * @return The amount of expired members the {@link GroupMemberManager} has handled, including stale ones.
+     */
+    private long handledMembers() {
+        MetricsWriter writer = new MetricsWriter();
+        this.groupMemberManager.collect(writer);
+        return writer.render().lines()
+                .filter(line -> line.startsWith("legend_expiry_handled_total "))
+                .mapToLong(line -> (long) Double.parseDouble(line.substring(line.indexOf(' ') + 1)))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -1,26 +1,41 @@
 package service;
 
 import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
 import io.github.rysefoxx.PlayLegendPermission;
 import io.github.rysefoxx.manager.GroupManager;
 import io.github.rysefoxx.model.GroupModel;
+import io.github.rysefoxx.model.GroupPermissionModel;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 class GroupManagerTest {
 
+    private ServerMock server;
+    private PlayLegendPermission plugin;
     private GroupManager groupService;
 
     @BeforeEach
     public void setUp() {
-        MockBukkit.mock();
-        PlayLegendPermission plugin = MockBukkit.load(PlayLegendPermission.class);
-        this.groupService = plugin.getGroupManager();
+        this.server = MockBukkit.mock();
+        this.plugin = MockBukkit.load(PlayLegendPermission.class);
+        this.groupService = this.plugin.getGroupManager();
     }
 
     @AfterEach
@@ -75,4 +90,140 @@ class GroupManagerTest {
         Assertions.assertTrue(exists);
     }
 
-}
\ No newline at end of file
+    /**
+     * Tests that groups are found case-insensitively and that the group cache is an immutable snapshot sorted by weight.
+     */
+    @Test
+    public void findByNameIgnoresCase() {
+        String groupName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel groupModel = new GroupModel(groupName, groupName + "Prefix", 1000);
+        this.groupService.save(groupModel);
+
+        Optional<GroupModel> optional = this.groupService.findByName(groupName.toUpperCase(Locale.ROOT));
+        Assertions.assertTrue(optional.isPresent());
+        Assertions.assertSame(groupModel, optional.get());
+
+        List<GroupModel> groupCache = this.groupService.getGroupCache();
+        Assertions.assertTrue(groupCache.contains(groupModel));
+        for (int i = 1; i < groupCache.size(); i++) {
+            Assertions.assertTrue(groupCache.get(i - 1).getWeight() >= groupCache.get(i).getWeight());
+        }
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> groupCache.add(groupModel));
+    }
+
+    /**
+     * Tests that the group cache and the permissions of a group can be read from other threads while they are modified.
+     */
+    @Test
+    public void concurrentReadsDuringWrites() throws InterruptedException {
+        String groupName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel groupModel = new GroupModel(groupName, groupName + "Prefix");
+        this.groupService.save(groupModel);
+        List<GroupModel> before = this.groupService.getGroupCache();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        for (GroupModel cached : this.groupService.getGroupCache()) {
+                            cached.getPermissions().forEach(GroupPermissionModel::getPermission);
+                        }
+                        this.groupService.findByName(groupName);
+                    }
+                } catch (Throwable throwable) {
+                    failure.set(throwable);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            groupModel.addPermission(new GroupPermissionModel("test.permission." + i, groupModel));
+            String otherName = UUID.randomUUID().toString().substring(0, 5);
+            GroupModel other = new GroupModel(otherName, otherName + "Prefix");
+            this.groupService.save(other);
+            this.groupService.delete(other);
+        }
+        Assertions.assertTrue(groupModel.removePermissions(permission -> permission.getPermission().startsWith("test.permission.")));
+
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        Assertions.assertNull(failure.get());
+        Assertions.assertTrue(groupModel.getPermissions().isEmpty());
+        Assertions.assertEquals(before, this.groupService.getGroupCache());
+    }
+
+    /**
+     * Tests that a group which is created, changed and deleted by another server is applied to the cache.
+     */
+    @Test
+    public void reloadGroupAppliesRemoteChanges() throws SQLException {
+        String groupName = UUID.randomUUID().toString().substring(0, 5);
+        execute("INSERT INTO legend.groups (name, prefix, weight) VALUES ('" + groupName + "', 'Remote', 7)");
+        execute("INSERT INTO legend.group_permission (permission, group_id) SELECT 'remote.permission', id FROM legend.groups WHERE name = '" + groupName + "'");
+        await(this.groupService.reloadGroup(groupName));
+
+        Optional<GroupModel> optional = this.groupService.findByName(groupName);
+        Assertions.assertTrue(optional.isPresent());
+        Assertions.assertEquals(7, optional.get().getWeight());
+        Assertions.assertTrue(optional.get().getPermissionTrie().isGranted("remote.permission"));
+
+        execute("UPDATE legend.groups SET weight = 8 WHERE name = '" + groupName + "'");
+        await(this.groupService.reloadGroup(groupName));
+        Assertions.assertSame(optional.get(), this.groupService.findByName(groupName).orElse(null));
+        Assertions.assertEquals(8, optional.get().getWeight());
+
+        execute("DELETE FROM legend.groups WHERE name = '" + groupName + "'");
+        await(this.groupService.reloadGroup(groupName));
+        Assertions.assertTrue(this.groupService.findByName(groupName).isEmpty());
+    }
+
+    /**
+     * Executes a statement directly, as another server would.
+     *
+     * @param query The statement to execute.
+     */
+    private void execute(String query) throws SQLException {
+        try (Connection connection = this.plugin.getConnectionManager().getConnection();
+             Statement statement = Objects.requireNonNull(connection).createStatement()) {
+            statement.executeUpdate(query);
+        }
+    }
+
+    /**
+     * Runs ticks until the future is completed, because the cache is updated on the main thread.
+     *
+     * @param future The future to wait for.
+     */
+    private void await(CompletableFuture<Void> future) {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (!future.isDone() && System.currentTimeMillis() < deadline) {
+            this.server.getScheduler().performOneTick();
+        }
+        Assertions.assertDoesNotThrow(() -> future.get(0, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Tests that a failed load is propagated instead of continuing without groups, which would put every player into a new default group.
+     */
+    @Test
+    public void loadFailure() throws SQLException {
+        try (Connection connection = Objects.requireNonNull(this.plugin.getConnectionManager().getConnection());
+             Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE legend.group_parent RENAME TO group_parent_broken");
+            try {
+                IllegalStateException exception = Assertions.assertThrows(IllegalStateException.class, () -> new GroupManager(this.plugin));
+                Assertions.assertInstanceOf(SQLException.class, exception.getCause().getCause());
+            } finally {
+                statement.execute("ALTER TABLE legend.group_parent_broken RENAME TO group_parent");
+            }
+        }
+    }
+}
@@ -6,20 +6,28 @@ import be.seeseemelk.mockbukkit.entity.PlayerMock;
 import io.github.rysefoxx.PlayLegendPermission;
 import io.github.rysefoxx.manager.GroupManager;
 import io.github.rysefoxx.manager.GroupMemberManager;
+import io.github.rysefoxx.manager.GroupPermissionManager;
 import io.github.rysefoxx.model.GroupMemberModel;
 import io.github.rysefoxx.model.GroupModel;
+import io.github.rysefoxx.permission.EffectivePermissions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
 import java.util.UUID;
 
 class GroupMemberManagerTest {
 
     private GroupMemberManager groupMemberManager;
     private GroupManager groupManager;
+    private GroupPermissionManager groupPermissionManager;
     private PlayerMock player;
 
     @BeforeEach
@@ -29,6 +37,7 @@ class GroupMemberManagerTest {
         this.player = server.addPlayer();
         this.groupMemberManager = plugin.getGroupMemberManager();
         this.groupManager = plugin.getGroupManager();
+        this.groupPermissionManager = plugin.getGroupPermissionManager();
     }
 
     @AfterEach
@@ -76,4 +85,120 @@ class GroupMemberManagerTest {
         Assertions.assertFalse(inGroup);
     }
 
-}
\ No newline at end of file
+    /**
+     * Tests that the member index agrees with the member lists of the groups after a random sequence of operations.
+     */
+    @Test
+    public void indexMatchesGroupLists() {
+        Random random = new Random(42);
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+
+        List<String> groupNames = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String groupName = UUID.randomUUID().toString().substring(0, 5);
+            this.groupManager.save(new GroupModel(groupName, groupName + "Prefix"));
+            groupNames.add(groupName);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            UUID uuid = uuids.get(random.nextInt(uuids.size()));
+            String groupName = groupNames.get(random.nextInt(groupNames.size()));
+
+            switch (random.nextInt(4)) {
+                case 0, 1 -> this.groupMemberManager.addMember(uuid, groupName, null);
+                case 2 -> this.groupMemberManager.removeMember(uuid, groupName);
+                case 3 -> {
+                    Optional<GroupModel> optional = this.groupManager.findByName(groupName);
+                    optional.ifPresent(this.groupManager::delete);
+                    this.groupManager.save(new GroupModel(groupName, groupName + "Prefix"));
+                }
+            }
+        }
+
+        for (UUID uuid : uuids) {
+            GroupMemberModel expected = this.groupManager.getGroupCache().stream()
+                    .flatMap(groupModel -> groupModel.getMembers().stream())
+                    .filter(member -> member.getUuid().equals(uuid))
+                    .findFirst()
+                    .orElse(null);
+
+            Assertions.assertSame(expected, this.groupMemberManager.getGroup(uuid));
+            Assertions.assertEquals(expected != null, this.groupMemberManager.hasGroup(uuid));
+        }
+    }
+
+    /**
+     * Tests that a player can be in several groups, that the group with the highest weight is the primary group and that the permissions are merged.
+     */
+    @Test
+    public void multipleMemberships() {
+        String lowName = UUID.randomUUID().toString().substring(0, 5);
+        String highName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel low = new GroupModel(lowName, lowName + "Prefix", 5);
+        GroupModel high = new GroupModel(highName, highName + "Prefix", 10);
+        this.groupManager.save(low);
+        this.groupManager.save(high);
+        this.groupPermissionManager.addPermission("low.permission", low);
+        this.groupPermissionManager.addPermission("high.permission", high);
+
+        UUID uuid = this.player.getUniqueId();
+        this.groupMemberManager.addMember(uuid, lowName, null);
+        this.groupMemberManager.addMember(uuid, highName, null);
+        this.groupPermissionManager.loadEffectivePermissions(uuid, this.groupMemberManager.getGroupModels(uuid));
+
+        Assertions.assertEquals(2, this.groupMemberManager.getGroups(uuid).size());
+        Assertions.assertFalse(this.groupMemberManager.inGroup(uuid, "default"));
+        Assertions.assertSame(high, Objects.requireNonNull(this.groupMemberManager.getGroup(uuid)).getGroup());
+
+        EffectivePermissions effectivePermissions = this.groupPermissionManager.getEffectivePermissions(uuid);
+        Assertions.assertTrue(effectivePermissions.isGranted("low.permission"));
+        Assertions.assertTrue(effectivePermissions.isGranted("high.permission"));
+
+        this.groupMemberManager.removeMember(uuid, highName);
+        Assertions.assertSame(low, Objects.requireNonNull(this.groupMemberManager.getGroup(uuid)).getGroup());
+        Assertions.assertFalse(effectivePermissions.isGranted("high.permission"));
+        Assertions.assertTrue(effectivePermissions.isGranted("low.permission"));
+
+        this.groupPermissionManager.unloadEffectivePermissions(uuid);
+    }
+
+    /**
+     * Tests that many users are added to and removed from a group at once, and that users without another group are placed in the default group.
+     */
+    @Test
+    public void bulkAddAndRemove() {
+        String groupName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel groupModel = new GroupModel(groupName, groupName + "Prefix");
+        this.groupManager.save(groupModel);
+
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = UUID.randomUUID();
+            this.groupMemberManager.addToDefaultGroup(uuid);
+            uuids.add(uuid);
+        }
+        uuids.add(this.player.getUniqueId());
+
+        Assertions.assertEquals(uuids.size(), this.groupMemberManager.addMembers(uuids, groupName, null));
+        Assertions.assertEquals(uuids.size(), groupModel.getMembers().size());
+        for (UUID uuid : uuids) {
+            Assertions.assertTrue(this.groupMemberManager.inGroup(uuid, groupName));
+            Assertions.assertFalse(this.groupMemberManager.inGroup(uuid, "default"));
+            Assertions.assertEquals(1, this.groupMemberManager.getGroups(uuid).size());
+        }
+
+        // Adding again replaces the memberships instead of duplicating them.
+        Assertions.assertEquals(uuids.size(), this.groupMemberManager.addMembers(uuids, groupName, null));
+        Assertions.assertEquals(uuids.size(), groupModel.getMembers().size());
+
+        Assertions.assertEquals(uuids.size(), this.groupMemberManager.removeMembers(uuids, groupName));
+        Assertions.assertTrue(groupModel.getMembers().isEmpty());
+        for (UUID uuid : uuids) {
+            Assertions.assertFalse(this.groupMemberManager.inGroup(uuid, groupName));
+            Assertions.assertTrue(this.groupMemberManager.inGroup(uuid, "default"));
+        }
+    }
+}
@@ -1,21 +1,28 @@
 package service;
 
 import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
 import io.github.rysefoxx.PlayLegendPermission;
 import io.github.rysefoxx.manager.GroupManager;
+import io.github.rysefoxx.manager.GroupMemberManager;
 import io.github.rysefoxx.manager.GroupPermissionManager;
+import io.github.rysefoxx.metrics.MetricsWriter;
 import io.github.rysefoxx.model.GroupModel;
+import io.github.rysefoxx.permission.EffectivePermissions;
+import io.github.rysefoxx.permission.PermissionTrie;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.UUID;
 
 class GroupPermissionManagerTest {
 
     private GroupPermissionManager groupPermissionManager;
     private GroupManager groupManager;
+    private GroupMemberManager groupMemberManager;
 
     @BeforeEach
     public void setUp() {
@@ -23,6 +30,7 @@ class GroupPermissionManagerTest {
         PlayLegendPermission plugin = MockBukkit.load(PlayLegendPermission.class);
         this.groupPermissionManager = plugin.getGroupPermissionManager();
         this.groupManager = plugin.getGroupManager();
+        this.groupMemberManager = plugin.getGroupMemberManager();
     }
 
     @AfterEach
@@ -71,4 +79,175 @@ class GroupPermissionManagerTest {
         this.groupPermissionManager.addPermission("test.permission", groupModel);
         Assertions.assertTrue(this.groupPermissionManager.hasPermission("test.permission", groupModel));
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that wildcard nodes grant every permission below them, ignoring the case.
+     */
+    @Test
+    public void wildcardPermission() {
+        String groupName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel groupModel = new GroupModel(groupName, groupName + "Prefix");
+        this.groupManager.save(groupModel);
+
+        this.groupPermissionManager.addPermission("essentials.*", groupModel);
+        Assertions.assertTrue(this.groupPermissionManager.isGranted("essentials.fly", groupModel));
+        Assertions.assertTrue(this.groupPermissionManager.isGranted("Essentials.Fly.Other", groupModel));
+        Assertions.assertFalse(this.groupPermissionManager.isGranted("essentials", groupModel));
+        Assertions.assertFalse(this.groupPermissionManager.isGranted("worldedit.wand", groupModel));
+        Assertions.assertFalse(this.groupPermissionManager.hasPermission("essentials.fly", groupModel));
+
+        this.groupPermissionManager.addPermission("*", groupModel);
+        Assertions.assertTrue(this.groupPermissionManager.isGranted("worldedit.wand", groupModel));
+
+        this.groupPermissionManager.removePermission("*", groupModel);
+        Assertions.assertFalse(this.groupPermissionManager.isGranted("worldedit.wand", groupModel));
+    }
+
+    /**
+     * Tests that the effective permissions of a player follow the permissions of the group and the group of the player.
+     */
+    @Test
+    public void effectivePermissions() {
+        String groupName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel groupModel = new GroupModel(groupName, groupName + "Prefix");
+        this.groupManager.save(groupModel);
+
+        UUID uuid = UUID.randomUUID();
+        this.groupMemberManager.addMember(uuid, groupName, null);
+        this.groupPermissionManager.loadEffectivePermissions(uuid, List.of(groupModel));
+        EffectivePermissions effectivePermissions = this.groupPermissionManager.getEffectivePermissions(uuid);
+        Assertions.assertFalse(effectivePermissions.isGranted("test.permission"));
+
+        this.groupPermissionManager.addPermission("test.permission", groupModel);
+        Assertions.assertTrue(effectivePermissions.isGranted("test.permission"));
+
+        this.groupMemberManager.removeMember(uuid, groupName);
+        this.groupMemberManager.addToDefaultGroup(uuid);
+        Assertions.assertFalse(effectivePermissions.isGranted("test.permission"));
+
+        this.groupPermissionManager.unloadEffectivePermissions(uuid);
+        this.groupMemberManager.removeMember(uuid, "default");
+    }
+
+    /**
+     * Tests that reading or refreshing the permissions of a player who left does not cache them again.
+     */
+    @Test
+    public void unloadedEffectivePermissions() {
+        String groupName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel groupModel = new GroupModel(groupName, groupName + "Prefix");
+        this.groupManager.save(groupModel);
+        this.groupPermissionManager.addPermission("test.permission", groupModel);
+
+        UUID uuid = UUID.randomUUID();
+        this.groupPermissionManager.loadEffectivePermissions(uuid, List.of(groupModel));
+        Assertions.assertTrue(this.groupPermissionManager.getEffectivePermissions(uuid).isGranted("test.permission"));
+
+        this.groupPermissionManager.unloadEffectivePermissions(uuid);
+        Assertions.assertSame(EffectivePermissions.EMPTY, this.groupPermissionManager.getEffectivePermissions(uuid));
+
+        this.groupPermissionManager.refreshEffectivePermissions(uuid, List.of(groupModel));
+        Assertions.assertSame(EffectivePermissions.EMPTY, this.groupPermissionManager.getEffectivePermissions(uuid));
+        Assertions.assertFalse(EffectivePermissions.EMPTY.isGranted("test.permission"));
+    }
+
+    /**
+     * Tests that groups inherit the permissions of their parents and that denied nodes override inherited and wildcard nodes.
+     */
+    @Test
+    public void inheritedAndDeniedPermissions() {
+        String parentName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel parent = new GroupModel(parentName, parentName + "Prefix", 1);
+        this.groupManager.save(parent);
+
+        String groupName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel groupModel = new GroupModel(groupName, groupName + "Prefix", 2);
+        this.groupManager.save(groupModel);
+        this.groupManager.addParent(groupModel, parent);
+
+        this.groupPermissionManager.addPermission("essentials.*", parent);
+        Assertions.assertTrue(this.groupPermissionManager.isGranted("essentials.fly", groupModel));
+        Assertions.assertFalse(this.groupPermissionManager.hasPermission("essentials.*", groupModel));
+
+        this.groupPermissionManager.addPermission("-essentials.fly", groupModel);
+        Assertions.assertFalse(this.groupPermissionManager.isGranted("essentials.fly", groupModel));
+        Assertions.assertTrue(this.groupPermissionManager.isGranted("essentials.home", groupModel));
+        Assertions.assertTrue(this.groupPermissionManager.isGranted("essentials.fly", parent));
+
+        this.groupManager.removeParent(groupModel, parent);
+        Assertions.assertFalse(this.groupPermissionManager.isGranted("essentials.home", groupModel));
+
+        // An own wildcard deny beats an inherited specific grant.
+        this.groupManager.addParent(groupModel, parent);
+        this.groupPermissionManager.addPermission("essentials.fly", parent);
+        this.groupPermissionManager.removePermission("-essentials.fly", groupModel);
+        this.groupPermissionManager.addPermission("-essentials.*", groupModel);
+        Assertions.assertFalse(this.groupPermissionManager.isGranted("essentials.fly", groupModel));
+        Assertions.assertFalse(this.groupPermissionManager.isGranted("essentials.home", groupModel));
+        Assertions.assertTrue(this.groupPermissionManager.isGranted("essentials.fly", parent));
+
+        this.groupManager.delete(groupModel);
+        this.groupManager.delete(parent);
+    }
+
+    /**
+     * Tests that the heaviest group of a player with a matching node decides, even if a lighter group has a more specific node.
+     */
+    @Test
+    public void wildcardDenyAcrossGroups() {
+        String lightName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel light = new GroupModel(lightName, lightName + "Prefix", 1);
+        this.groupManager.save(light);
+
+        String heavyName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel heavy = new GroupModel(heavyName, heavyName + "Prefix", 2);
+        this.groupManager.save(heavy);
+
+        this.groupPermissionManager.addPermission("essentials.fly", light);
+        this.groupPermissionManager.addPermission("-essentials.*", heavy);
+
+        UUID uuid = UUID.randomUUID();
+        this.groupPermissionManager.loadEffectivePermissions(uuid, List.of(light, heavy));
+        EffectivePermissions effectivePermissions = this.groupPermissionManager.getEffectivePermissions(uuid);
+        Assertions.assertFalse(effectivePermissions.isGranted("essentials.fly"));
+        Assertions.assertFalse(effectivePermissions.isGranted("essentials.home"));
+
+        // The other way around, the exact grant of the heavier group beats the wildcard deny of the lighter group.
+        this.groupPermissionManager.removePermission("essentials.fly", light);
+        this.groupPermissionManager.removePermission("-essentials.*", heavy);
+        this.groupPermissionManager.addPermission("-essentials.*", light);
+        this.groupPermissionManager.addPermission("essentials.fly", heavy);
+        this.groupPermissionManager.refreshEffectivePermissions(uuid, List.of(light, heavy));
+        Assertions.assertTrue(effectivePermissions.isGranted("essentials.fly"));
+        Assertions.assertFalse(effectivePermissions.isGranted("essentials.home"));
+        Assertions.assertEquals(PermissionTrie.Decision.DENIED, effectivePermissions.decide("essentials.home"));
+
+        this.groupPermissionManager.unloadEffectivePermissions(uuid);
+        this.groupManager.delete(heavy);
+        this.groupManager.delete(light);
+    }
+
+    /**
+     * Tests that the attachment of a player who left is removed, so the player is not kept in memory.
+     */
+    @Test
+    public void unloadAttachment() {
+        PlayerMock player = MockBukkit.getMock().addPlayer();
+        String groupName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel groupModel = new GroupModel(groupName, groupName + "Prefix");
+        this.groupManager.save(groupModel);
+        this.groupPermissionManager.addPermission("test.attachment", groupModel);
+
+        this.groupPermissionManager.reloadPlayerPermissions(groupModel, player, true);
+        Assertions.assertTrue(player.hasPermission("test.attachment"));
+
+        this.groupPermissionManager.unloadAttachment(player);
+        Assertions.assertFalse(player.hasPermission("test.attachment"));
+
+        MetricsWriter writer = new MetricsWriter();
+        this.groupPermissionManager.collect(writer);
+        Assertions.assertTrue(writer.render().contains("legend_cache_entries{cache=\"attachments\"} 0\n"));
+
+        this.groupManager.delete(groupModel);
+    }
+}
@@ -0,0 +1,69 @@
+package service;
+
+import io.github.rysefoxx.database.dialect.H2Dialect;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This class tests the queries and the uuid conversion of the {@link H2Dialect}.
+ */
+class H2DialectTest {
+
+    private final H2Dialect dialect = new H2Dialect();
+
+    /**
+     * Tests that an upsert is a merge on the key columns.
+     */
+    @Test
+    public void upsert() {
+        Assertions.assertEquals("MERGE INTO legend.groups (name, prefix, weight) KEY (name) VALUES (?, ?, ?)",
+                this.dialect.upsert("legend.groups", List.of("name", "prefix", "weight"), "?, ?, ?", List.of("name")));
+    }
+
+    /**
+     * Tests that an insert which ignores existing rows merges on all columns, so an existing row is not changed.
+     */
+    @Test
+    public void insertIgnore() {
+        Assertions.assertEquals("MERGE INTO legend.group_parent (group_id, parent_id) KEY (group_id, parent_id) VALUES (?, ?)",
+                this.dialect.insertIgnore("legend.group_parent", List.of("group_id", "parent_id"), "?, ?"));
+    }
+
+    @Test
+    public void buildJdbcUrl() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("h2.file", "legend-test");
+        File dataFolder = new File("plugins");
+
+        Assertions.assertEquals("jdbc:h2:file:" + new File(dataFolder, "legend-test").getAbsolutePath() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=GROUPS",
+                this.dialect.buildJdbcUrl(config, dataFolder));
+    }
+
+    /**
+     * Tests that a uuid is stored in the native uuid type and read back.
+     */
+    @Test
+    public void uuid() throws SQLException {
+        UUID uuid = UUID.randomUUID();
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:h2_dialect");
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT CAST(? AS UUID) AS uuid, CAST(? AS UUID) AS missing")) {
+            this.dialect.setUUID(preparedStatement, 1, uuid);
+            this.dialect.setUUID(preparedStatement, 2, null);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                Assertions.assertTrue(resultSet.next());
+                Assertions.assertEquals(uuid, this.dialect.getUUID(resultSet, "uuid"));
+                Assertions.assertNull(this.dialect.getUUID(resultSet, "missing"));
+            }
+        }
+    }
+}
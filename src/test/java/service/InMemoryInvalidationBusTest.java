@@ -0,0 +1,84 @@
+package service;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.database.InMemoryInvalidationBus;
+import io.github.rysefoxx.database.InvalidationEvent;
+import io.github.rysefoxx.database.PendingWrite;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class tests the delivery of the {@link InMemoryInvalidationBus} between two linked buses.
+ */
+class InMemoryInvalidationBusTest {
+
+    private PlayLegendPermission plugin;
+    private InMemoryInvalidationBus publisher;
+    private InMemoryInvalidationBus receiver;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        MockBukkit.mock();
+        this.plugin = MockBukkit.load(PlayLegendPermission.class);
+        this.publisher = new InMemoryInvalidationBus(this.plugin);
+        this.receiver = new InMemoryInvalidationBus(this.plugin);
+        this.publisher.link(this.receiver);
+
+        try (Connection connection = Objects.requireNonNull(this.plugin.getConnectionManager().getConnection());
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS invalidation_test");
+            statement.execute("CREATE TABLE invalidation_test (name VARCHAR(16) PRIMARY KEY)");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.publisher.shutdown();
+        this.receiver.shutdown();
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests that an event is delivered after the change it describes has been written, like with the change_log of the database bus.
+     */
+    @Test
+    public void deliverAfterFlush() throws Exception {
+        List<Boolean> written = new CopyOnWriteArrayList<>();
+        this.receiver.subscribe(event -> {
+            written.add(exists(event.group()));
+            return CompletableFuture.completedFuture(null);
+        });
+
+        this.plugin.getWriteBehindQueue().enqueue(new PendingWrite("invalidation:test", "invalidation_test_insert",
+                "INSERT INTO invalidation_test (name) VALUES (?)", false, statement -> statement.setString(1, "test")));
+        this.publisher.publish(InvalidationEvent.group("test"));
+
+        Assertions.assertEquals(1, this.receiver.synchronize().get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(List.of(true), written);
+        Assertions.assertEquals(1, this.receiver.getRevision());
+        Assertions.assertEquals(0, this.publisher.getRevision());
+    }
+
+    private boolean exists(String name) {
+        try (Connection connection = Objects.requireNonNull(this.plugin.getConnectionManager().getConnection());
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM invalidation_test WHERE name = '" + name + "'")) {
+            return resultSet.next() && resultSet.getInt(1) == 1;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package service;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.listener.ConnectionListener;
+import io.github.rysefoxx.manager.GroupManager;
+import io.github.rysefoxx.manager.GroupMemberManager;
+import io.github.rysefoxx.model.GroupModel;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class tests the {@link GroupMemberManager} with lazy members, where only the memberships of online players are cached.
+ */
+class LazyMembersTest {
+
+    private static final long EVICTION_DELAY_TICKS = 300L * 20L;
+
+    private ServerMock server;
+    private PlayLegendPermission plugin;
+    private GroupMemberManager groupMemberManager;
+    private ConnectionListener connectionListener;
+    private String groupName;
+
+    @BeforeEach
+    public void setUp() throws ReflectiveOperationException {
+        this.server = MockBukkit.mock();
+        this.plugin = MockBukkit.load(PlayLegendPermission.class);
+        this.groupMemberManager = this.plugin.getGroupMemberManager();
+        this.connectionListener = new ConnectionListener(this.plugin);
+
+        // The tests share one database.yml, so lazy members are enabled on the loaded plugin.
+        Field lazyMembers = GroupManager.class.getDeclaredField("lazyMembers");
+        lazyMembers.setAccessible(true);
+        lazyMembers.setBoolean(this.plugin.getGroupManager(), true);
+
+        this.groupName = UUID.randomUUID().toString().substring(0, 5);
+        this.plugin.getGroupManager().save(new GroupModel(this.groupName, this.groupName + "Prefix"));
+        this.plugin.getWriteBehindQueue().flush();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests that the memberships of a player who is not cached are loaded before the player joins.
+     */
+    @Test
+    public void loadOnPreLogin() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        insertMembership(uuid);
+        Assertions.assertFalse(this.groupMemberManager.inGroup(uuid, this.groupName));
+
+        AsyncPlayerPreLoginEvent event = preLogin(uuid);
+
+        Assertions.assertEquals(AsyncPlayerPreLoginEvent.Result.ALLOWED, event.getLoginResult());
+        Assertions.assertTrue(this.groupMemberManager.inGroup(uuid, this.groupName));
+    }
+
+    /**
+     * Tests that the memberships of a player who left are removed from the cache after the delay, but stay in the database.
+     */
+    @Test
+    public void evictOnQuit() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        insertMembership(uuid);
+        preLogin(uuid);
+        Assertions.assertTrue(this.groupMemberManager.inGroup(uuid, this.groupName));
+
+        this.groupMemberManager.evictLater(uuid);
+        this.server.getScheduler().performTicks(EVICTION_DELAY_TICKS - 1);
+        Assertions.assertTrue(this.groupMemberManager.inGroup(uuid, this.groupName));
+
+        this.server.getScheduler().performTicks(1);
+        Assertions.assertFalse(this.groupMemberManager.inGroup(uuid, this.groupName));
+
+        preLogin(uuid);
+        Assertions.assertTrue(this.groupMemberManager.inGroup(uuid, this.groupName));
+    }
+
+    /**
+     * Tests that a player who logs in again while the eviction is pending keeps the memberships, because the login cancels the eviction.
+     */
+    @Test
+    public void reloginCancelsEviction() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        insertMembership(uuid);
+        preLogin(uuid);
+
+        this.groupMemberManager.evictLater(uuid);
+        this.server.getScheduler().performTicks(EVICTION_DELAY_TICKS / 2);
+        preLogin(uuid);
+
+        this.server.getScheduler().performTicks(EVICTION_DELAY_TICKS);
+        Assertions.assertTrue(this.groupMemberManager.inGroup(uuid, this.groupName));
+    }
+
+    /**
+     * Tests that a player whose memberships could not be loaded is kicked instead of being placed in the default group.
+     */
+    @Test
+    public void loadFailureKicks() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        execute("ALTER TABLE legend.group_member RENAME TO group_member_broken");
+        try {
+            AsyncPlayerPreLoginEvent event = preLogin(uuid);
+
+            Assertions.assertEquals(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, event.getLoginResult());
+            Assertions.assertFalse(this.groupMemberManager.hasGroup(uuid));
+        } finally {
+            execute("ALTER TABLE legend.group_member_broken RENAME TO group_member");
+        }
+    }
+
+    /**
+     * Calls the pre-login of the listener on another thread, like the server does, and runs the ticks it waits for.
+     */
+    private AsyncPlayerPreLoginEvent preLogin(UUID uuid) throws Exception {
+        AsyncPlayerPreLoginEvent event = new AsyncPlayerPreLoginEvent("Lazy", InetAddress.getLoopbackAddress(), uuid);
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> this.connectionListener.onPreLogin(event));
+        while (!future.isDone()) {
+            this.server.getScheduler().performOneTick();
+        }
+        future.get(0, TimeUnit.MILLISECONDS);
+        return event;
+    }
+
+    private void insertMembership(UUID uuid) throws SQLException {
+        try (Connection connection = Objects.requireNonNull(this.plugin.getConnectionManager().getConnection());
+             PreparedStatement preparedStatement = connection.prepareStatement(
+                     "INSERT INTO legend.group_member (uuid, group_id, expiration) VALUES (?, " + GroupManager.GROUP_ID_QUERY + ", NULL)")) {
+            this.plugin.getConnectionManager().getDialect().setUUID(preparedStatement, 1, uuid);
+            preparedStatement.setString(2, this.groupName);
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    private void execute(String query) throws SQLException {
+        try (Connection connection = Objects.requireNonNull(this.plugin.getConnectionManager().getConnection());
+             Statement statement = connection.createStatement()) {
+            statement.execute(query);
+        }
+    }
+}
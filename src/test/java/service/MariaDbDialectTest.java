@@ -0,0 +1,68 @@
+package service;
+
+import io.github.rysefoxx.database.dialect.MariaDbDialect;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This class tests the queries and the uuid conversion of the {@link MariaDbDialect}.
+ */
+class MariaDbDialectTest {
+
+    private final MariaDbDialect dialect = new MariaDbDialect();
+
+    /**
+     * Tests that an upsert updates every column except the key columns.
+     */
+    @Test
+    public void upsert() {
+        Assertions.assertEquals("INSERT INTO legend.groups (name, prefix, weight) VALUES (?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE prefix = VALUES(prefix), weight = VALUES(weight)",
+                this.dialect.upsert("legend.groups", List.of("name", "prefix", "weight"), "?, ?, ?", List.of("name")));
+    }
+
+    @Test
+    public void insertIgnore() {
+        Assertions.assertEquals("INSERT IGNORE INTO legend.group_parent (group_id, parent_id) VALUES (?, ?)",
+                this.dialect.insertIgnore("legend.group_parent", List.of("group_id", "parent_id"), "?, ?"));
+    }
+
+    @Test
+    public void buildJdbcUrl() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("host", "localhost");
+        config.set("port", 3306);
+        config.set("database", "legend");
+
+        Assertions.assertEquals("jdbc:mariadb://localhost:3306/legend?useSSL=false", this.dialect.buildJdbcUrl(config, new File(".")));
+    }
+
+    /**
+     * Tests that a uuid is read back from its 16 bytes.
+     */
+    @Test
+    public void uuid() throws SQLException {
+        UUID uuid = UUID.randomUUID();
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:mariadb_dialect");
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT CAST(? AS VARBINARY(16)) AS uuid, CAST(? AS VARBINARY(16)) AS missing")) {
+            this.dialect.setUUID(preparedStatement, 1, uuid);
+            this.dialect.setUUID(preparedStatement, 2, null);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                Assertions.assertTrue(resultSet.next());
+                Assertions.assertEquals(16, resultSet.getBytes("uuid").length);
+                Assertions.assertEquals(uuid, this.dialect.getUUID(resultSet, "uuid"));
+                Assertions.assertNull(this.dialect.getUUID(resultSet, "missing"));
+            }
+        }
+    }
+}
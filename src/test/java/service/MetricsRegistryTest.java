@@ -0,0 +1,81 @@
+package service;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.metrics.LatencyHistogram;
+import io.github.rysefoxx.metrics.MetricsRegistry;
+import io.github.rysefoxx.metrics.MetricsWriter;
+import io.github.rysefoxx.model.GroupModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class tests the {@link MetricsRegistry} and the Prometheus text format of the {@link MetricsWriter}.
+ */
+class MetricsRegistryTest {
+
+    private PlayLegendPermission plugin;
+
+    @BeforeEach
+    public void setUp() {
+        MockBukkit.mock();
+        this.plugin = MockBukkit.load(PlayLegendPermission.class);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests that the sources of the managers are registered and that written rows are counted per operation.
+     */
+    @Test
+    public void scrapeManagers() {
+        String groupName = UUID.randomUUID().toString().substring(0, 5);
+        this.plugin.getGroupManager().save(new GroupModel(groupName, groupName + "Prefix"));
+        this.plugin.getWriteBehindQueue().flush();
+
+        String metrics = this.plugin.getMetricsRegistry().scrape();
+        Assertions.assertTrue(metrics.contains("# TYPE legend_cache_entries gauge\n"), metrics);
+        Assertions.assertTrue(metrics.contains("legend_cache_entries{cache=\"groups\"} "), metrics);
+        Assertions.assertTrue(metrics.contains("legend_cache_entries{cache=\"members\"} "), metrics);
+        Assertions.assertTrue(metrics.contains("legend_async_queue_depth "), metrics);
+        Assertions.assertTrue(metrics.contains("legend_db_pool_connections{state=\"active\"} "), metrics);
+        Assertions.assertTrue(metrics.contains("legend_db_statement_seconds_count{operation=\"group_save\"} "), metrics);
+        Assertions.assertTrue(metrics.contains("legend_scoreboard_updates_total "), metrics);
+
+        // Every metric has exactly one header, even if several sources write it.
+        Assertions.assertEquals(1, metrics.split("# TYPE legend_cache_entries ", -1).length - 1);
+    }
+
+    /**
+     * Tests that the buckets of a histogram are cumulative, in seconds and end with +Inf.
+     */
+    @Test
+    public void histogramFormat() {
+        LatencyHistogram histogram = new LatencyHistogram(1, 10);
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+
+        MetricsWriter writer = new MetricsWriter();
+        writer.histogram("test_seconds", "A test.", histogram, "operation", "a\"b");
+        List<String> lines = writer.render().lines().toList();
+
+        Assertions.assertEquals(List.of(
+                "# HELP test_seconds A test.",
+                "# TYPE test_seconds histogram",
+                "test_seconds_bucket{operation=\"a\\\"b\",le=\"0.001\"} 1",
+                "test_seconds_bucket{operation=\"a\\\"b\",le=\"0.01\"} 2",
+                "test_seconds_bucket{operation=\"a\\\"b\",le=\"+Inf\"} 3",
+                "test_seconds_sum{operation=\"a\\\"b\"} 0.0555",
+                "test_seconds_count{operation=\"a\\\"b\"} 3"), lines);
+    }
+}
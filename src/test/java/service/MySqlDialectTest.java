@@ -0,0 +1,68 @@
+package service;
+
+import io.github.rysefoxx.database.dialect.MySqlDialect;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This class tests the queries and the uuid conversion of the {@link MySqlDialect}.
+ */
+class MySqlDialectTest {
+
+    private final MySqlDialect dialect = new MySqlDialect();
+
+    /**
+     * Tests that an upsert refers to the new row by an alias instead of the deprecated VALUES() function.
+     */
+    @Test
+    public void upsert() {
+        Assertions.assertEquals("INSERT INTO legend.groups (name, prefix, weight) VALUES (?, ?, ?) AS new " +
+                        "ON DUPLICATE KEY UPDATE prefix = new.prefix, weight = new.weight",
+                this.dialect.upsert("legend.groups", List.of("name", "prefix", "weight"), "?, ?, ?", List.of("name")));
+    }
+
+    @Test
+    public void insertIgnore() {
+        Assertions.assertEquals("INSERT IGNORE INTO legend.group_parent (group_id, parent_id) VALUES (?, ?)",
+                this.dialect.insertIgnore("legend.group_parent", List.of("group_id", "parent_id"), "?, ?"));
+    }
+
+    /**
+     * Tests that cursor fetching is enabled, because Connector/J ignores the fetch size of streaming statements otherwise.
+     */
+    @Test
+    public void buildJdbcUrl() {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("host", "localhost");
+        config.set("port", 3306);
+        config.set("database", "legend");
+
+        Assertions.assertEquals("jdbc:mysql://localhost:3306/legend?useSSL=false&useCursorFetch=true", this.dialect.buildJdbcUrl(config, new File(".")));
+    }
+
+    /**
+     * Tests that a uuid is read back from its 16 bytes.
+     */
+    @Test
+    public void uuid() throws SQLException {
+        UUID uuid = UUID.randomUUID();
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:mysql_dialect");
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT CAST(? AS VARBINARY(16)) AS uuid")) {
+            this.dialect.setUUID(preparedStatement, 1, uuid);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                Assertions.assertTrue(resultSet.next());
+                Assertions.assertEquals(uuid, this.dialect.getUUID(resultSet, "uuid"));
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package service;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.manager.ProfileManager;
+import io.github.rysefoxx.profile.ProfileResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class tests the {@link ProfileManager}. The Mojang API is replaced by a local stub.
+ */
+class ProfileManagerTest {
+
+    private ProfileManager profileManager;
+    private PlayLegendPermission plugin;
+    private PlayerMock player;
+    private StubResolver resolver;
+
+    @BeforeEach
+    public void setUp() {
+        ServerMock server = MockBukkit.mock();
+        this.plugin = MockBukkit.load(PlayLegendPermission.class);
+        this.player = server.addPlayer();
+        this.profileManager = this.plugin.getProfileManager();
+        this.resolver = new StubResolver();
+        this.profileManager.setRemoteResolver(this.resolver);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests that a remote lookup is cached and that names are case-insensitive.
+     */
+    @Test
+    public void resolveUUIDIsCached() {
+        String name = randomName();
+        UUID uuid = this.resolver.resolve(name);
+
+        Assertions.assertEquals(uuid, this.profileManager.resolveUUID(name).join());
+        Assertions.assertEquals(uuid, this.profileManager.resolveUUID(name.toUpperCase()).join());
+        Assertions.assertEquals(name, this.profileManager.resolveName(uuid).join());
+        Assertions.assertEquals(1, this.resolver.uuidCalls.get());
+    }
+
+    /**
+     * Tests that an unknown player is cached as well, so the remote resolver is not asked again.
+     */
+    @Test
+    public void resolveUnknownUUIDIsCached() {
+        String name = randomName();
+
+        Assertions.assertNull(this.profileManager.resolveUUID(name).join());
+        Assertions.assertNull(this.profileManager.resolveUUID(name).join());
+        Assertions.assertEquals(1, this.resolver.uuidCalls.get());
+    }
+
+    /**
+     * Tests that concurrent lookups of the same name share one remote lookup.
+     */
+    @Test
+    public void concurrentLookupsAreDeduplicated() throws InterruptedException {
+        String name = randomName();
+        UUID uuid = this.resolver.resolve(name);
+        this.resolver.blocked = new CountDownLatch(1);
+
+        List<CompletableFuture<UUID>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(this.profileManager.resolveUUID(name));
+        }
+        Assertions.assertTrue(this.resolver.entered.await(5, TimeUnit.SECONDS));
+        this.resolver.blocked.countDown();
+
+        for (CompletableFuture<UUID> future : futures) {
+            Assertions.assertEquals(uuid, future.join());
+        }
+        Assertions.assertEquals(1, this.resolver.uuidCalls.get());
+    }
+
+    /**
+     * Tests that the remote resolver does not run on a database thread, so a slow service cannot hold the threads the database needs.
+     */
+    @Test
+    public void remoteLookupRunsOnOwnThreads() {
+        String name = randomName();
+        this.resolver.resolve(name);
+
+        this.profileManager.resolveUUID(name).join();
+        Assertions.assertTrue(this.resolver.thread.startsWith("PlayLegendPermission-Profile-"), this.resolver.thread);
+    }
+
+    /**
+     * Tests that a player who joined is resolved from the player_profile table, without the remote resolver.
+     */
+    @Test
+    public void joinedPlayerIsResolvedLocally() {
+        this.plugin.getWriteBehindQueue().flush();
+        this.profileManager.clearCache();
+
+        Assertions.assertEquals(this.player.getUniqueId(), this.profileManager.resolveUUID(this.player.getName()).join());
+        Assertions.assertEquals(0, this.resolver.uuidCalls.get());
+    }
+
+    private String randomName() {
+        return "p" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+    }
+
+    /**
+     * Resolves the names which have been registered with {@link #resolve(String)} and counts the calls.
+     */
+    private static class StubResolver implements ProfileResolver {
+
+        private final List<String> names = new ArrayList<>();
+        private final List<UUID> uuids = new ArrayList<>();
+        private final AtomicInteger uuidCalls = new AtomicInteger();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private volatile CountDownLatch blocked;
+        private volatile String thread;
+
+        private UUID resolve(String name) {
+            UUID uuid = UUID.randomUUID();
+            this.names.add(name);
+            this.uuids.add(uuid);
+            return uuid;
+        }
+
+        @Override
+        public @Nullable UUID resolveUUID(@NotNull String name) {
+            this.uuidCalls.incrementAndGet();
+            this.thread = Thread.currentThread().getName();
+            this.entered.countDown();
+            if (this.blocked != null) {
+                try {
+                    this.blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            int index = this.names.indexOf(name);
+            return index < 0 ? null : this.uuids.get(index);
+        }
+
+        @Override
+        public @Nullable String resolveName(@NotNull UUID uuid) {
+            int index = this.uuids.indexOf(uuid);
+            return index < 0 ? null : this.names.get(index);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package service;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.database.QueryProfiler;
+import io.github.rysefoxx.metrics.MetricsWriter;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This class tests the {@link QueryProfiler}.
+ */
+class QueryProfilerTest {
+
+    private PlayLegendPermission plugin;
+    private QueryProfiler queryProfiler;
+
+    @BeforeEach
+    public void setUp() {
+        MockBukkit.mock();
+        this.plugin = MockBukkit.load(PlayLegendPermission.class);
+
+        // Every statement is slow, so it is kept in the history.
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("enabled", true);
+        config.set("slow-threshold-millis", 0);
+        this.queryProfiler = new QueryProfiler(this.plugin.getLogger(), config);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests that slow statements are kept by their template, without the values of their parameters.
+     */
+    @Test
+    public void slowQueryRedacted() throws SQLException {
+        try (Connection connection = this.queryProfiler.wrap(Objects.requireNonNull(this.plugin.getConnectionManager().getConnection()), 0L);
+             PreparedStatement statement = connection.prepareStatement("SELECT   ?\n    AS secret")) {
+            statement.setString(1, "hunter2");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Assertions.assertTrue(resultSet.next());
+                Assertions.assertEquals("hunter2", resultSet.getString("secret"));
+            }
+        }
+
+        List<QueryProfiler.SlowQuery> slowQueries = this.queryProfiler.getSlowQueries();
+        Assertions.assertEquals(2, slowQueries.size(), slowQueries.toString());
+        Assertions.assertEquals("SELECT ? AS secret", slowQueries.get(0).template());
+        Assertions.assertEquals(1, slowQueries.get(0).rows());
+        Assertions.assertEquals(1, slowQueries.get(0).parameters());
+        Assertions.assertEquals("<connection acquire>", slowQueries.get(1).template());
+        Assertions.assertFalse(slowQueries.toString().contains("hunter2"));
+    }
+
+    /**
+     * Tests that long lists of placeholders are collapsed and the read rows are counted per template.
+     */
+    @Test
+    public void placeholderListCollapsed() throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(12, "?"));
+        try (Connection connection = this.queryProfiler.wrap(Objects.requireNonNull(this.plugin.getConnectionManager().getConnection()), 0L);
+             PreparedStatement statement = connection.prepareStatement("SELECT X FROM SYSTEM_RANGE(1, 20) WHERE X IN (" + placeholders + ")")) {
+            for (int i = 1; i <= 12; i++) {
+                statement.setInt(i, i);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    resultSet.getInt(1);
+                }
+            }
+        }
+
+        MetricsWriter writer = new MetricsWriter();
+        this.queryProfiler.collect(writer);
+        String metrics = writer.render();
+        Assertions.assertTrue(metrics.contains("legend_db_query_rows_total{query=\"SELECT X FROM SYSTEM_RANGE(1, 20) WHERE X IN (?, ...)\"} 12"), metrics);
+        Assertions.assertTrue(metrics.contains("legend_db_acquire_seconds_count 1"), metrics);
+    }
+}
@@ -0,0 +1,168 @@
+package service;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.manager.GroupManager;
+import io.github.rysefoxx.manager.GroupMemberManager;
+import io.github.rysefoxx.manager.ScoreboardManager;
+import io.github.rysefoxx.metrics.MetricsWriter;
+import io.github.rysefoxx.model.GroupModel;
+import org.bukkit.scoreboard.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * This class tests the shared teams and the per-tick updates of the {@link ScoreboardManager}.
+ */
+class ScoreboardManagerTest {
+
+    private static final int UPDATES_PER_TICK = 20;
+
+    private ServerMock server;
+    private ScoreboardManager scoreboardManager;
+    private GroupManager groupManager;
+    private GroupMemberManager groupMemberManager;
+
+    @BeforeEach
+    public void setUp() throws ReflectiveOperationException {
+        this.server = MockBukkit.mock();
+        PlayLegendPermission plugin = MockBukkit.load(PlayLegendPermission.class);
+        this.scoreboardManager = plugin.getScoreboardManager();
+        this.groupManager = plugin.getGroupManager();
+        this.groupMemberManager = plugin.getGroupMemberManager();
+
+        // The scoreboards are disabled in unit tests, so they are enabled on the loaded plugin.
+        Field enabled = ScoreboardManager.class.getDeclaredField("enabled");
+        enabled.setAccessible(true);
+        enabled.setBoolean(this.scoreboardManager, true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests that the members of a group share one team, which every scoreboard shows.
+     */
+    @Test
+    public void shareTeam() {
+        GroupModel groupModel = saveGroup(5);
+        PlayerMock first = this.server.addPlayer();
+        PlayerMock second = this.server.addPlayer();
+        this.groupMemberManager.addMember(first.getUniqueId(), groupModel.getName(), null);
+        this.groupMemberManager.addMember(second.getUniqueId(), groupModel.getName(), null);
+
+        this.scoreboardManager.create(first);
+        this.scoreboardManager.create(second);
+
+        for (PlayerMock viewer : List.of(first, second)) {
+            Team team = viewer.getScoreboard().getTeam(teamName(groupModel));
+            Assertions.assertNotNull(team);
+            Assertions.assertEquals(Set.of(first.getName(), second.getName()), team.getEntries());
+            Assertions.assertEquals(1, viewer.getScoreboard().getTeams().stream().filter(t -> t.hasEntry(first.getName())).count());
+        }
+
+        this.scoreboardManager.destroy(second);
+        Assertions.assertEquals(Set.of(first.getName()), Objects.requireNonNull(first.getScoreboard().getTeam(teamName(groupModel))).getEntries());
+    }
+
+    /**
+     * Tests that the team of a heavier group is sorted in front of the team of a lighter group, and that a player moves to the team of the new group.
+     */
+    @Test
+    public void orderTeamsByWeight() {
+        GroupModel light = saveGroup(1);
+        GroupModel heavy = saveGroup(100);
+        PlayerMock lightPlayer = this.server.addPlayer();
+        PlayerMock heavyPlayer = this.server.addPlayer();
+        this.groupMemberManager.addMember(lightPlayer.getUniqueId(), light.getName(), null);
+        this.groupMemberManager.addMember(heavyPlayer.getUniqueId(), heavy.getName(), null);
+
+        this.scoreboardManager.create(lightPlayer);
+        this.scoreboardManager.create(heavyPlayer);
+
+        List<String> teams = new ArrayList<>();
+        for (Team team : lightPlayer.getScoreboard().getTeams()) {
+            if (team.hasEntry(lightPlayer.getName()) || team.hasEntry(heavyPlayer.getName())) teams.add(team.getName());
+        }
+        teams.sort(null);
+        Assertions.assertEquals(List.of(teamName(heavy), teamName(light)), teams);
+
+        // The player is moved to the team of the new group and the empty team is removed.
+        this.groupMemberManager.removeMember(lightPlayer.getUniqueId(), light.getName());
+        this.groupMemberManager.addMember(lightPlayer.getUniqueId(), heavy.getName(), null);
+        this.scoreboardManager.markDirty(lightPlayer);
+        this.server.getScheduler().performOneTick();
+
+        for (PlayerMock viewer : List.of(lightPlayer, heavyPlayer)) {
+            Assertions.assertEquals(Set.of(lightPlayer.getName(), heavyPlayer.getName()),
+                    Objects.requireNonNull(viewer.getScoreboard().getTeam(teamName(heavy))).getEntries());
+            Assertions.assertNull(viewer.getScoreboard().getTeam(teamName(light)));
+        }
+    }
+
+    /**
+     * Tests that at most the configured amount of players is updated per tick and the remaining players are updated in the next tick.
+     */
+    @Test
+    public void carryOverBudget() {
+        List<PlayerMock> players = new ArrayList<>();
+        for (int i = 0; i < UPDATES_PER_TICK + 5; i++) {
+            PlayerMock player = this.server.addPlayer();
+            this.scoreboardManager.create(player);
+            players.add(player);
+        }
+        // Joining the default group may already mark the players as dirty.
+        this.server.getScheduler().performTicks(5);
+        Assertions.assertEquals(0, metric("legend_scoreboard_dirty"));
+        long updates = metric("legend_scoreboard_updates_total");
+
+        players.forEach(this.scoreboardManager::markDirty);
+        Assertions.assertEquals(UPDATES_PER_TICK + 5, metric("legend_scoreboard_dirty"));
+
+        this.server.getScheduler().performOneTick();
+        Assertions.assertEquals(5, metric("legend_scoreboard_dirty"));
+        Assertions.assertEquals(updates + UPDATES_PER_TICK, metric("legend_scoreboard_updates_total"));
+
+        this.server.getScheduler().performOneTick();
+        Assertions.assertEquals(0, metric("legend_scoreboard_dirty"));
+        Assertions.assertEquals(updates + UPDATES_PER_TICK + 5, metric("legend_scoreboard_updates_total"));
+    }
+
+    private GroupModel saveGroup(int weight) {
+        String groupName = UUID.randomUUID().toString().substring(0, 5);
+        GroupModel groupModel = new GroupModel(groupName, groupName + "Prefix", weight);
+        this.groupManager.save(groupModel);
+        return groupModel;
+    }
+
+    /**
+     * @return The name of the team of the group, which is sorted by the inverted weight.
+     */
+    private String teamName(GroupModel groupModel) {
+        return String.format(Locale.ROOT, "%010d", (long) Integer.MAX_VALUE - groupModel.getWeight()) + groupModel.getName().toLowerCase(Locale.ROOT);
+    }
+
+    private long metric(String name) {
+        MetricsWriter writer = new MetricsWriter();
+        this.scoreboardManager.collect(writer);
+        return writer.render().lines()
+                .filter(line -> line.startsWith(name + " "))
+                .mapToLong(line -> (long) Double.parseDouble(line.substring(line.indexOf(' ') + 1)))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,122 @@
+package service;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import io.github.rysefoxx.PlayLegendPermission;
+import io.github.rysefoxx.database.PendingWrite;
+import io.github.rysefoxx.database.WriteBehindQueue;
+import io.github.rysefoxx.metrics.MetricsWriter;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This class tests the coalescing, the ordering and the error handling of the {@link WriteBehindQueue}.
+ */
+class WriteBehindQueueTest {
+
+    private static final String UPSERT = "MERGE INTO write_behind_test KEY(id) VALUES (?, ?)";
+    private static final String INSERT = "INSERT INTO write_behind_test (id, amount) VALUES (?, ?)";
+    private static final String DELETE_ALL = "DELETE FROM write_behind_test";
+
+    private PlayLegendPermission plugin;
+    private WriteBehindQueue writeBehindQueue;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        MockBukkit.mock();
+        this.plugin = MockBukkit.load(PlayLegendPermission.class);
+        this.writeBehindQueue = this.plugin.getWriteBehindQueue();
+
+        try (Connection connection = Objects.requireNonNull(this.plugin.getConnectionManager().getConnection());
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS write_behind_test");
+            statement.execute("CREATE TABLE write_behind_test (id VARCHAR(16) PRIMARY KEY, amount INT NOT NULL)");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Tests that a write replaces the queued write with the same key and query, so only the latest state is written.
+     */
+    @Test
+    public void coalesce() throws SQLException {
+        this.writeBehindQueue.enqueueAll(List.of(
+                write("row:a", "test_coalesce", UPSERT, false, "a", 1),
+                write("row:a", "test_coalesce", UPSERT, false, "a", 2),
+                write("row:b", "test_coalesce", UPSERT, false, "b", 3)));
+        this.writeBehindQueue.flush();
+
+        Assertions.assertEquals(2, amount("a"));
+        Assertions.assertEquals(3, amount("b"));
+        Assertions.assertTrue(metrics().contains("legend_db_statement_rows_total{operation=\"test_coalesce\"} 2\n"));
+    }
+
+    /**
+     * Tests that a write is not coalesced with a write in front of a barrier, because the barrier would remove it.
+     */
+    @Test
+    public void barrierOrdering() throws SQLException {
+        this.writeBehindQueue.enqueueAll(List.of(
+                write("row:a", "test_barrier", UPSERT, false, "a", 1),
+                new PendingWrite("all", "test_barrier_delete", DELETE_ALL, true, statement -> {
+                }),
+                write("row:a", "test_barrier", UPSERT, false, "a", 2)));
+        this.writeBehindQueue.flush();
+
+        Assertions.assertEquals(2, amount("a"));
+        Assertions.assertTrue(metrics().contains("legend_db_statement_rows_total{operation=\"test_barrier\"} 2\n"));
+    }
+
+    /**
+     * Tests that the writes are retried one by one if the batch fails, so only the invalid write is lost.
+     */
+    @Test
+    public void retryIndividually() throws SQLException {
+        this.writeBehindQueue.enqueueAll(List.of(
+                write("row:a", "test_retry", INSERT, false, "a", 1),
+                write("row:duplicate", "test_retry", INSERT, false, "a", 2),
+                write("row:b", "test_retry", INSERT, false, "b", 3)));
+        this.writeBehindQueue.flush();
+
+        Assertions.assertEquals(1, amount("a"));
+        Assertions.assertEquals(3, amount("b"));
+        Assertions.assertTrue(metrics().contains("legend_db_failed_writes_total 1\n"));
+    }
+
+    private @NotNull PendingWrite write(String key, String operation, String query, boolean barrier, String id, int amount) {
+        return new PendingWrite(key, operation, query, barrier, statement -> {
+            statement.setString(1, id);
+            statement.setInt(2, amount);
+        });
+    }
+
+    private int amount(String id) throws SQLException {
+        try (Connection connection = Objects.requireNonNull(this.plugin.getConnectionManager().getConnection());
+             PreparedStatement statement = connection.prepareStatement("SELECT amount FROM write_behind_test WHERE id = ?")) {
+            statement.setString(1, id);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : -1;
+            }
+        }
+    }
+
+    private String metrics() {
+        MetricsWriter writer = new MetricsWriter();
+        this.writeBehindQueue.collect(writer);
+        return writer.render();
+    }
+}